@@ -1,8 +1,11 @@
 package com.yaps.petstore.common.delegate;
 
 import com.yaps.petstore.common.dto.CategoryDTO;
+import com.yaps.petstore.common.dto.FacetFilterDTO;
+import com.yaps.petstore.common.dto.FacetResultDTO;
 import com.yaps.petstore.common.dto.ItemDTO;
 import com.yaps.petstore.common.dto.ProductDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.exception.*;
 import com.yaps.petstore.common.locator.ServiceLocator;
 import com.yaps.petstore.server.service.catalog.CatalogServiceHome;
@@ -10,6 +13,8 @@ import com.yaps.petstore.server.service.catalog.CatalogService;
 
 import java.rmi.RemoteException;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This class follows the Delegate design pattern. It's a one to one method
@@ -60,6 +65,13 @@ public final class CatalogDelegate {
         return getCatalogService().findCategories();
     }
 
+    /**
+     * Delegates the call to the {@link CatalogService#findCategoriesPage(String, int) CatalogService().findCategoriesPage} method.
+     */
+    public static Collection findCategoriesPage(final String afterId, final int limit) throws FinderException, CheckException, RemoteException {
+        return getCatalogService().findCategoriesPage(afterId, limit);
+    }
+
     // ======================================
     // =      Product Business methods     =
     // ======================================
@@ -105,6 +117,13 @@ public final class CatalogDelegate {
         return getCatalogService().findProducts(categoryId);
     }
 
+    /**
+     * Delegates the call to the {@link CatalogService#findProductsPage(String, int) CatalogService().findProductsPage} method.
+     */
+    public static Collection findProductsPage(final String afterId, final int limit) throws FinderException, CheckException, RemoteException {
+        return getCatalogService().findProductsPage(afterId, limit);
+    }
+
     // ======================================
     // =        Item Business methods       =
     // ======================================
@@ -150,6 +169,13 @@ public final class CatalogDelegate {
         return getCatalogService().findItems(productId);
     }
 
+    /**
+     * Delegates the call to the {@link CatalogService#findItemsPage(String, int) CatalogService().findItemsPage} method.
+     */
+    public static Collection findItemsPage(final String afterId, final int limit) throws FinderException, CheckException, RemoteException {
+        return getCatalogService().findItemsPage(afterId, limit);
+    }
+
     /**
      * Delegates the call to the {@link CatalogService#searchItems(String) CatalogService().searchItems} method.
      */
@@ -157,6 +183,41 @@ public final class CatalogDelegate {
         return getCatalogService().searchItems(keyword);
     }
 
+    /**
+     * Delegates the call to the {@link CatalogService#searchItems(String, int, int) CatalogService().searchItems} method.
+     */
+    public static Collection searchItems(final String keyword, final int offset, final int limit) throws FinderException, CheckException, RemoteException {
+        return getCatalogService().searchItems(keyword, offset, limit);
+    }
+
+    /**
+     * Delegates the call to the {@link CatalogService#suggestKeywords(String, int) CatalogService().suggestKeywords} method.
+     */
+    public static List suggestKeywords(final String prefix, final int limit) throws CheckException, RemoteException {
+        return getCatalogService().suggestKeywords(prefix, limit);
+    }
+
+    /**
+     * Delegates the call to the {@link CatalogService#browseItems(FacetFilterDTO) CatalogService().browseItems} method.
+     */
+    public static FacetResultDTO browseItems(final FacetFilterDTO filter) throws CheckException, RemoteException {
+        return getCatalogService().browseItems(filter);
+    }
+
+    /**
+     * Delegates the call to the {@link CatalogService#findShoppingCartItems(ShoppingCartDTO) CatalogService().findShoppingCartItems} method.
+     */
+    public static Collection findShoppingCartItems(final ShoppingCartDTO shoppingCart) throws CheckException, RemoteException {
+        return getCatalogService().findShoppingCartItems(shoppingCart);
+    }
+
+    /**
+     * Delegates the call to the {@link CatalogService#getCacheStatistics() CatalogService().getCacheStatistics} method.
+     */
+    public static Map getCacheStatistics() throws RemoteException {
+        return getCatalogService().getCacheStatistics();
+    }
+
     // ======================================
     // =            Private methods         =
     // ======================================
@@ -65,6 +65,13 @@ public final class CustomerDelegate {
         return getCustomerService().findCustomers();
     }
 
+    /**
+     * Delegates the call to the {@link CustomerService#findCustomersPage(String, int) CustomerService().findCustomersPage} method.
+     */
+    public static Collection findCustomersPage(final String afterId, final int limit) throws FinderException, CheckException, RemoteException {
+        return getCustomerService().findCustomersPage(afterId, limit);
+    }
+
     // ======================================
     // =            Private methods         =
     // ======================================
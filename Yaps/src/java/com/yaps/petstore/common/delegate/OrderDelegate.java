@@ -1,6 +1,7 @@
 package com.yaps.petstore.common.delegate;
 
 import com.yaps.petstore.common.dto.OrderDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.common.exception.CreateException;
 import com.yaps.petstore.common.exception.FinderException;
@@ -10,6 +11,7 @@ import com.yaps.petstore.server.service.order.OrderService;
 import com.yaps.petstore.server.service.order.OrderServiceHome;
 
 import java.rmi.RemoteException;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -33,6 +35,13 @@ public final class OrderDelegate {
         return getOrderService().createOrder(customerId, shoppingCart);
     }
 
+    /**
+     * Delegates the call to the {@link OrderService#createOrder(String, ShoppingCartDTO) OrderService().createOrder} method.
+     */
+    public static String createOrder(final String customerId, final ShoppingCartDTO shoppingCart) throws CreateException, CheckException, RemoteException {
+        return getOrderService().createOrder(customerId, shoppingCart);
+    }
+
     /**
      * Delegates the call to the {@link OrderService#createOrder(OrderDTO) OrderService().createOrder} method.
      */
@@ -54,6 +63,13 @@ public final class OrderDelegate {
         getOrderService().deleteOrder(orderId);
     }
 
+    /**
+     * Delegates the call to the {@link OrderService#findOrdersPage(String, int) OrderService().findOrdersPage} method.
+     */
+    public static Collection findOrdersPage(final String afterId, final int limit) throws FinderException, CheckException, RemoteException {
+        return getOrderService().findOrdersPage(afterId, limit);
+    }
+
     // ======================================
     // =            Private methods         =
     // ======================================
@@ -1,5 +1,6 @@
 package com.yaps.petstore.common.delegate;
 
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.locator.ServiceLocator;
 import com.yaps.petstore.server.cart.ShoppingCart;
 
@@ -7,25 +8,62 @@ import com.yaps.petstore.server.cart.ShoppingCartHome;
 import java.rmi.RemoteException;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * This class gives the web tier the shopping cart of an HTTP session. The
+ * stateful ShoppingCartBean of every session is kept in a registry shared by
+ * all the threads (see ShoppingCartRegistry). An entry is removed, and its
+ * bean released, when the session is destroyed (see
+ * ShoppingCartSessionListener), when it has not been used for
+ * petstore.cart.idleTimeout minutes (30 by default) or, the least recently
+ * used first, when there are more than petstore.cart.maxSessions carts (10000
+ * by default). The idle and surplus carts are released by a background
+ * thread, not by the request that finds them.
+ * <p/>
+ * The content of a cart is journaled under a durable cart id (see CartJournal
+ * and CartIdCookie), not under the id of the HTTP session which doesn't
+ * survive a restart of the node.
+ */
 public final class ShoppingCartDelegate {
     // ======================================
     // =             Attributes             =
     // ======================================
-    /**(sessionId, shoppingCart) associations */
-    private static HashMap<String, ShoppingCart> _shoppingCarts = new HashMap<String, ShoppingCart>();
-    
+    private static final long IDLE_TIMEOUT = Long.getLong("petstore.cart.idleTimeout", 30).longValue() * 60000L;
+    private static final int MAX_SESSIONS = Integer.getInteger("petstore.cart.maxSessions", 10000).intValue();
+    // The idle carts are looked for at most once per SWEEP_INTERVAL
+    private static final long SWEEP_INTERVAL = 60000L;
+
+    private static final ShoppingCartRegistry _shoppingCarts = new ShoppingCartRegistry(IDLE_TIMEOUT, MAX_SESSIONS, SWEEP_INTERVAL,
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "ShoppingCart sweeper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }));
+
+    // Creates the stateful bean of a new cart
+    private static final ShoppingCartRegistry.CartFactory FACTORY = new ShoppingCartRegistry.CartFactory() {
+        public ShoppingCart create() throws RemoteException {
+            return (ShoppingCart) ServiceLocator.getInstance().getHome(ShoppingCartHome.JNDI_NAME, false);
+        }
+    };
+
     /** sessionId of the session which has created this delegate */
     private String _sessionId;
+    /** durable id the content of the cart is journaled under */
+    private String _cartId;
 
     // ======================================
     // =            Constructors            =
     // ======================================
-    public ShoppingCartDelegate(String sessionId)
+    public ShoppingCartDelegate(String sessionId, String cartId)
     {
        this._sessionId = sessionId;
+       this._cartId = cartId;
     }
 
     // ======================================
@@ -34,11 +72,19 @@ public final class ShoppingCartDelegate {
     public Map getCart() throws RemoteException {
         return getShoppingCart().getCart();     
     }
+
+    public ShoppingCartDTO getCartDTO() throws RemoteException {
+        return getShoppingCart().getCartDTO();
+    }
     
 	public String getSessionId() {
 		return _sessionId;
 	}
 
+	public String getCartId() {
+		return _cartId;
+	}
+
 	public Collection getItems() throws RemoteException {
         return getShoppingCart().getItems();
     }
@@ -62,17 +108,39 @@ public final class ShoppingCartDelegate {
         getShoppingCart().empty();
     }
     
+    /**
+     * This method removes the shopping cart of a session from the registry and
+     * releases its stateful bean. It is called when the session is destroyed :
+     * the content of the cart stays on the disk (see CartJournal), the next
+     * session of the same browser gets it back.
+     *
+     * @param sessionId id of the HTTP session
+     */
+    public static void release(final String sessionId) {
+        _shoppingCarts.release(sessionId);
+    }
+
+    /**
+     * This method empties the shopping cart of a session, not to be kept on
+     * the disk, then releases it. It is called when the customer signs off.
+     *
+     * @param sessionId id of the HTTP session
+     */
+    public static void discard(final String sessionId) {
+        _shoppingCarts.discard(sessionId);
+    }
+
+    /**
+     * @return number of shopping carts in the registry
+     */
+    public static int getSize() {
+        return _shoppingCarts.size();
+    }
+
     // ======================================
     // =            Private methods         =
     // ======================================
     private ShoppingCart getShoppingCart() throws RemoteException {
-        if (_shoppingCarts.get(_sessionId) == null)
-        {
-          ShoppingCart shoppingCart = (ShoppingCart)ServiceLocator.getInstance().getHome(ShoppingCartHome.JNDI_NAME, false);
-          _shoppingCarts.put(_sessionId, shoppingCart);
-        }
-        ShoppingCart result = _shoppingCarts.get(_sessionId);
-        return result;
+        return _shoppingCarts.get(_sessionId, _cartId, FACTORY);
     }
-
 }
@@ -0,0 +1,311 @@
+package com.yaps.petstore.common.delegate;
+
+import com.yaps.petstore.common.logging.Trace;
+import com.yaps.petstore.server.cart.ShoppingCart;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class keeps the stateful ShoppingCartBean of every HTTP session, for
+ * the ShoppingCartDelegate. An entry is removed, and its bean released, when
+ * the session is over, when it has not been used for a given time or, the
+ * least recently used first, when there are more carts than a given maximum.
+ * In the latter case the carts are released down to 90% of the maximum, so
+ * that the carts are not sorted again for every new session.
+ * <p/>
+ * The sweeps run on an executor, not on the request that finds them due :
+ * that request would otherwise pay for all the remote calls releasing the
+ * beans. A cart released by a sweep while a request of its session was
+ * getting it is never used : the request gets a new cart instead.
+ */
+final class ShoppingCartRegistry {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    /**(sessionId, shoppingCart) associations */
+    private final ConcurrentMap<String, CartEntry> _shoppingCarts = new ConcurrentHashMap<String, CartEntry>();
+
+    private final long _idleTimeout;
+    private final int _maxSessions;
+    // Number of carts left by a sweep over _maxSessions
+    private final int _targetSessions;
+    // The idle carts are looked for at most once per _sweepInterval
+    private final long _sweepInterval;
+    private final Executor _sweeper;
+
+    private volatile long _lastSweep = System.currentTimeMillis();
+    // Only one sweep is submitted at a time
+    private final AtomicBoolean _sweeping = new AtomicBoolean(false);
+
+    // Used for logging
+    private static final String _cname = ShoppingCartRegistry.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * @param idleTimeout   time in milliseconds after which a cart not used is released
+     * @param maxSessions   maximum number of carts
+     * @param sweepInterval time in milliseconds between two looks for the idle carts
+     * @param sweeper       executor running the sweeps
+     */
+    ShoppingCartRegistry(final long idleTimeout, final int maxSessions, final long sweepInterval, final Executor sweeper) {
+        _idleTimeout = idleTimeout;
+        _maxSessions = maxSessions;
+        _targetSessions = maxSessions - maxSessions / 10;
+        _sweepInterval = sweepInterval;
+        _sweeper = sweeper;
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the shopping cart of a session, creating it if the
+     * session has none yet.
+     *
+     * @param sessionId id of the HTTP session
+     * @param cartId    durable id the content of the cart is journaled under
+     * @param factory   creates the stateful bean of a new cart
+     * @return the shopping cart
+     * @throws RemoteException is thrown if the bean cannot be created
+     */
+    ShoppingCart get(final String sessionId, final String cartId, final CartFactory factory) throws RemoteException {
+        CartEntry entry = _shoppingCarts.get(sessionId);
+        // A cart released by a sweep can't be touched any more : it is replaced
+        while (entry == null || !entry.touch()) {
+            if (entry != null) {
+                _shoppingCarts.remove(sessionId, entry);
+            }
+            final ShoppingCart shoppingCart = factory.create();
+            // The content of the cart is loaded before the bean is published, so no change can be overwritten
+            shoppingCart.load(cartId);
+            entry = new CartEntry(shoppingCart);
+            final CartEntry existing = _shoppingCarts.putIfAbsent(sessionId, entry);
+            if (existing != null) {
+                // Another thread of the same session has been quicker
+                entry.release();
+                entry = existing;
+            } else {
+                evict();
+            }
+        }
+        return entry.getShoppingCart();
+    }
+
+    /**
+     * This method removes the shopping cart of a session and releases its
+     * stateful bean.
+     *
+     * @param sessionId id of the HTTP session
+     */
+    void release(final String sessionId) {
+        final CartEntry entry = _shoppingCarts.remove(sessionId);
+        if (entry != null) {
+            entry.expire();
+            entry.release();
+        }
+    }
+
+    /**
+     * This method empties the shopping cart of a session, then releases it.
+     *
+     * @param sessionId id of the HTTP session
+     */
+    void discard(final String sessionId) {
+        final CartEntry entry = _shoppingCarts.remove(sessionId);
+        if (entry != null) {
+            entry.expire();
+            entry.empty();
+            entry.release();
+        }
+    }
+
+    /**
+     * @return number of shopping carts in the registry
+     */
+    int size() {
+        return _shoppingCarts.size();
+    }
+
+    /**
+     * @param sessionId id of the HTTP session
+     * @return the entry of the session, null if there is none
+     */
+    CartEntry getEntry(final String sessionId) {
+        return _shoppingCarts.get(sessionId);
+    }
+
+    /**
+     * This method releases the idle carts and, if there are still too many,
+     * the least recently used ones. It is run by the sweeper.
+     *
+     * @param now time of the sweep
+     */
+    void sweep(final long now) {
+        _lastSweep = now;
+        // The last accesses are read once, the sort must not see them change
+        final List<CartAccess> accesses = new ArrayList<CartAccess>();
+        for (Iterator<Map.Entry<String, CartEntry>> iterator = _shoppingCarts.entrySet().iterator(); iterator.hasNext();) {
+            final Map.Entry<String, CartEntry> entry = iterator.next();
+            final CartAccess access = new CartAccess(entry.getKey(), entry.getValue());
+            if (now - access._lastAccess > _idleTimeout) {
+                release(access);
+            } else {
+                accesses.add(access);
+            }
+        }
+
+        if (accesses.size() > _maxSessions) {
+            Collections.sort(accesses, new Comparator<CartAccess>() {
+                public int compare(final CartAccess access1, final CartAccess access2) {
+                    return (access1._lastAccess < access2._lastAccess) ? -1 : ((access1._lastAccess == access2._lastAccess) ? 0 : 1);
+                }
+            });
+            for (int i = 0; i < accesses.size() - _targetSessions; i++) {
+                release(accesses.get(i));
+            }
+        }
+        Trace.finest(_cname, "sweep", _shoppingCarts.size() + " shopping carts");
+    }
+
+    // ======================================
+    // =            Private methods         =
+    // ======================================
+    // Submits a sweep if one is due and none is running
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        if (now - _lastSweep < _sweepInterval && _shoppingCarts.size() <= _maxSessions) {
+            return;
+        }
+        if (!_sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            _sweeper.execute(new Runnable() {
+                public void run() {
+                    try {
+                        sweep(System.currentTimeMillis());
+                    } finally {
+                        _sweeping.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // The sweep is tried again by the next new cart
+            _sweeping.set(false);
+            Trace.throwing(_cname, "evict", e);
+        }
+    }
+
+    // Releases a cart unless it has been used since its last access was read
+    private void release(final CartAccess access) {
+        if (access._entry.expire(access._lastAccess)) {
+            _shoppingCarts.remove(access._sessionId, access._entry);
+            access._entry.release();
+        }
+    }
+
+    // ======================================
+    // =            Inner classes           =
+    // ======================================
+    /**
+     * Creates the stateful bean of a new cart.
+     */
+    interface CartFactory {
+
+        ShoppingCart create() throws RemoteException;
+    }
+
+    static final class CartEntry {
+
+        private final ShoppingCart _shoppingCart;
+        // Strictly increasing, so that a sweep can tell whether the cart has been used since it read it
+        private volatile long _lastAccess = System.currentTimeMillis();
+        // Set once the cart is to be released, guarded by this
+        private boolean _expired = false;
+
+        private CartEntry(final ShoppingCart shoppingCart) {
+            _shoppingCart = shoppingCart;
+        }
+
+        private ShoppingCart getShoppingCart() {
+            return _shoppingCart;
+        }
+
+        long getLastAccess() {
+            return _lastAccess;
+        }
+
+        /**
+         * @return false if the cart has been released and can't be used any more
+         */
+        synchronized boolean touch() {
+            if (_expired) {
+                return false;
+            }
+            _lastAccess = Math.max(System.currentTimeMillis(), _lastAccess + 1);
+            return true;
+        }
+
+        /**
+         * @param lastAccess last access read by the sweep
+         * @return true if the cart has not been used since, it can then be released
+         */
+        synchronized boolean expire(final long lastAccess) {
+            if (_expired || _lastAccess != lastAccess) {
+                return false;
+            }
+            _expired = true;
+            return true;
+        }
+
+        synchronized void expire() {
+            _expired = true;
+        }
+
+        private void empty() {
+            try {
+                _shoppingCart.empty();
+            } catch (RuntimeException e) {
+                // The bean may already have been removed by the container
+                Trace.throwing(_cname, "empty", e);
+            }
+        }
+
+        // Removes the stateful bean from the EJB container
+        private void release() {
+            try {
+                _shoppingCart.remove();
+            } catch (RuntimeException e) {
+                // The bean may already have been removed by the container
+                Trace.throwing(_cname, "release", e);
+            }
+        }
+    }
+
+    // A cart and its last access, as read by a sweep
+    private static final class CartAccess {
+
+        private final String _sessionId;
+        private final CartEntry _entry;
+        private final long _lastAccess;
+
+        private CartAccess(final String sessionId, final CartEntry entry) {
+            _sessionId = sessionId;
+            _entry = entry;
+            _lastAccess = entry.getLastAccess();
+        }
+    }
+}
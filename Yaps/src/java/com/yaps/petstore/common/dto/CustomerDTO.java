@@ -32,6 +32,27 @@ public final class CustomerDTO implements DataTransfertObject {
         setLastname(lastname);
     }
 
+    // Used by the Customer listing query (select new CustomerDTO(...))
+    public CustomerDTO(final String id, final String firstname, final String lastname, final String password,
+                       final String telephone, final String email,
+                       final String street1, final String street2, final String city, final String state,
+                       final String zipcode, final String country,
+                       final String creditCardNumber, final String creditCardType, final String creditCardExpiryDate) {
+        this(id, firstname, lastname);
+        setPassword(password);
+        setTelephone(telephone);
+        setEmail(email);
+        setStreet1(street1);
+        setStreet2(street2);
+        setCity(city);
+        setState(state);
+        setZipcode(zipcode);
+        setCountry(country);
+        setCreditCardNumber(creditCardNumber);
+        setCreditCardType(creditCardType);
+        setCreditCardExpiryDate(creditCardExpiryDate);
+    }
+
     // ======================================
     // =         Getters and Setters        =
     // ======================================
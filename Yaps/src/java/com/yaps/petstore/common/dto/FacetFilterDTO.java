@@ -0,0 +1,99 @@
+package com.yaps.petstore.common.dto;
+
+/**
+ * This class follows the Data Transfert Object design pattern and for that implements the
+ * markup interface DataTransfertObject. It holds the filters of a faceted browse of the
+ * items : a category, a product and a range of unit costs, each of them being optional,
+ * and the page of items to return.
+ */
+public final class FacetFilterDTO implements DataTransfertObject {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private String _categoryId;
+    private String _productId;
+    // Lowest unit cost included, null for no lower bound
+    private Double _minUnitCost;
+    // Highest unit cost excluded, null for no upper bound
+    private Double _maxUnitCost;
+    private int _offset = 0;
+    private int _limit = 20;
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    public FacetFilterDTO() {
+    }
+
+    public FacetFilterDTO(final String categoryId, final String productId, final Double minUnitCost, final Double maxUnitCost) {
+        _categoryId = categoryId;
+        _productId = productId;
+        _minUnitCost = minUnitCost;
+        _maxUnitCost = maxUnitCost;
+    }
+
+    // ======================================
+    // =         Getters and Setters        =
+    // ======================================
+    public String getCategoryId() {
+        return _categoryId;
+    }
+
+    public void setCategoryId(final String categoryId) {
+        _categoryId = categoryId;
+    }
+
+    public String getProductId() {
+        return _productId;
+    }
+
+    public void setProductId(final String productId) {
+        _productId = productId;
+    }
+
+    public Double getMinUnitCost() {
+        return _minUnitCost;
+    }
+
+    public void setMinUnitCost(final Double minUnitCost) {
+        _minUnitCost = minUnitCost;
+    }
+
+    public Double getMaxUnitCost() {
+        return _maxUnitCost;
+    }
+
+    public void setMaxUnitCost(final Double maxUnitCost) {
+        _maxUnitCost = maxUnitCost;
+    }
+
+    public int getOffset() {
+        return _offset;
+    }
+
+    public void setOffset(final int offset) {
+        _offset = offset;
+    }
+
+    public int getLimit() {
+        return _limit;
+    }
+
+    public void setLimit(final int limit) {
+        _limit = limit;
+    }
+
+    public String toString() {
+        final StringBuffer buf = new StringBuffer();
+        buf.append("FacetFilterDTO{");
+        buf.append("categoryId=").append(getCategoryId());
+        buf.append(",productId=").append(getProductId());
+        buf.append(",minUnitCost=").append(getMinUnitCost());
+        buf.append(",maxUnitCost=").append(getMaxUnitCost());
+        buf.append(",offset=").append(getOffset());
+        buf.append(",limit=").append(getLimit());
+        buf.append('}');
+        return buf.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.yaps.petstore.common.dto;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * This class follows the Data Transfert Object design pattern and for that implements the
+ * markup interface DataTransfertObject. It is the result of a faceted browse of the items :
+ * one page of the matching items, their total number and, for every facet, the number of
+ * matching items per value (category id, product id or unit cost range such as "10-50").
+ */
+public final class FacetResultDTO implements DataTransfertObject {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private Collection _itemsDTO;
+    private int _total;
+    // (categoryId, number of items) associations
+    private Map _categoryCounts;
+    // (productId, number of items) associations
+    private Map _productCounts;
+    // (unit cost range, number of items) associations, in increasing unit costs
+    private Map _unitCostCounts;
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    public FacetResultDTO() {
+    }
+
+    public FacetResultDTO(final Collection itemsDTO, final int total, final Map categoryCounts, final Map productCounts, final Map unitCostCounts) {
+        _itemsDTO = itemsDTO;
+        _total = total;
+        _categoryCounts = categoryCounts;
+        _productCounts = productCounts;
+        _unitCostCounts = unitCostCounts;
+    }
+
+    // ======================================
+    // =         Getters and Setters        =
+    // ======================================
+    public Collection getItemsDTO() {
+        return _itemsDTO;
+    }
+
+    public void setItemsDTO(final Collection itemsDTO) {
+        _itemsDTO = itemsDTO;
+    }
+
+    public int getTotal() {
+        return _total;
+    }
+
+    public void setTotal(final int total) {
+        _total = total;
+    }
+
+    public Map getCategoryCounts() {
+        return _categoryCounts;
+    }
+
+    public void setCategoryCounts(final Map categoryCounts) {
+        _categoryCounts = categoryCounts;
+    }
+
+    public Map getProductCounts() {
+        return _productCounts;
+    }
+
+    public void setProductCounts(final Map productCounts) {
+        _productCounts = productCounts;
+    }
+
+    public Map getUnitCostCounts() {
+        return _unitCostCounts;
+    }
+
+    public void setUnitCostCounts(final Map unitCostCounts) {
+        _unitCostCounts = unitCostCounts;
+    }
+
+    public String toString() {
+        final StringBuffer buf = new StringBuffer();
+        buf.append("FacetResultDTO{");
+        buf.append("total=").append(getTotal());
+        buf.append(",categoryCounts=").append(getCategoryCounts());
+        buf.append(",productCounts=").append(getProductCounts());
+        buf.append(",unitCostCounts=").append(getUnitCostCounts());
+        buf.append('}');
+        return buf.toString();
+    }
+}
@@ -30,6 +30,16 @@ public final class ItemDTO implements DataTransfertObject {
         setUnitCost(unitCost);
     }
 
+    // Used by the Item listing queries (select new ItemDTO(...))
+    public ItemDTO(final String id, final String name, final double unitCost, final String imagePath,
+                   final String productId, final String productName, final String productDescription) {
+        this(id, name, unitCost);
+        setImagePath(imagePath);
+        setProductId(productId);
+        setProductName(productName);
+        setProductDescription(productDescription);
+    }
+
     // ======================================
     // =         Getters and Setters        =
     // ======================================
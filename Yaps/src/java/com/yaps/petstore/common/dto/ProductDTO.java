@@ -29,6 +29,14 @@ public final class ProductDTO implements DataTransfertObject {
         setDescription(description);
     }
 
+    // Used by the Product listing queries (select new ProductDTO(...))
+    public ProductDTO(final String id, final String name, final String description,
+                      final String categoryId, final String categoryName) {
+        this(id, name, description);
+        setCategoryId(categoryId);
+        setCategoryName(categoryName);
+    }
+
     // ======================================
     // =         Getters and Setters        =
     // ======================================
@@ -0,0 +1,237 @@
+package com.yaps.petstore.common.dto;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class follows the Data Transfert Object design pattern and for that implements the
+ * markup interface DataTransfertObject. It is the content of a Shopping Cart : the item ids
+ * and their quantities, in the order the items were added.
+ * <p/>
+ * The ids and quantities are kept in two parallel arrays, the quantities as int, so that a
+ * cart costs two small arrays instead of a HashMap node and a boxed Integer per line. A cart
+ * only has a few lines, an item is then found by a linear search. Only the used part of the
+ * arrays is serialized.
+ */
+public class ShoppingCartDTO implements DataTransfertObject {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private static final int INITIAL_CAPACITY = 4;
+
+    private transient String[] _itemIds;
+    private transient int[] _quantities;
+    private transient int _size;
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    public ShoppingCartDTO() {
+        _itemIds = new String[INITIAL_CAPACITY];
+        _quantities = new int[INITIAL_CAPACITY];
+    }
+
+    public ShoppingCartDTO(final ShoppingCartDTO shoppingCart) {
+        _size = shoppingCart._size;
+        _itemIds = new String[Math.max(_size, INITIAL_CAPACITY)];
+        _quantities = new int[_itemIds.length];
+        System.arraycopy(shoppingCart._itemIds, 0, _itemIds, 0, _size);
+        System.arraycopy(shoppingCart._quantities, 0, _quantities, 0, _size);
+    }
+
+    /**
+     * This method builds a cart from the (itemId, Integer quantity) associations
+     * of the Map representation of a cart.
+     *
+     * @param shoppingCart (itemId, quantity) associations
+     * @return the cart
+     */
+    public static ShoppingCartDTO fromMap(final Map shoppingCart) {
+        final ShoppingCartDTO result = new ShoppingCartDTO();
+        for (Iterator iterator = shoppingCart.entrySet().iterator(); iterator.hasNext();) {
+            final Map.Entry keyValue = (Map.Entry) iterator.next();
+            result.setQuantity((String) keyValue.getKey(), ((Integer) keyValue.getValue()).intValue());
+        }
+        return result;
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the quantity of an item.
+     *
+     * @param itemId id of the item
+     * @return the quantity, 0 if the item is not in the cart
+     */
+    public int getQuantity(final String itemId) {
+        final int index = indexOf(itemId);
+        return (index < 0) ? 0 : _quantities[index];
+    }
+
+    /**
+     * This method sets the quantity of an item, adding the item at the end of
+     * the cart if it is not there yet. A quantity of zero or less removes the item.
+     *
+     * @param itemId   id of the item
+     * @param quantity new quantity
+     */
+    public void setQuantity(final String itemId, final int quantity) {
+        if (quantity <= 0) {
+            remove(itemId);
+            return;
+        }
+        final int index = indexOf(itemId);
+        if (index >= 0) {
+            _quantities[index] = quantity;
+            return;
+        }
+        if (_size == _itemIds.length) {
+            final String[] itemIds = new String[_size * 2];
+            final int[] quantities = new int[_size * 2];
+            System.arraycopy(_itemIds, 0, itemIds, 0, _size);
+            System.arraycopy(_quantities, 0, quantities, 0, _size);
+            _itemIds = itemIds;
+            _quantities = quantities;
+        }
+        _itemIds[_size] = itemId;
+        _quantities[_size] = quantity;
+        _size++;
+    }
+
+    /**
+     * This method removes an item from the cart, the next items keeping their order.
+     *
+     * @param itemId id of the item
+     */
+    public void remove(final String itemId) {
+        final int index = indexOf(itemId);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(_itemIds, index + 1, _itemIds, index, _size - index - 1);
+        System.arraycopy(_quantities, index + 1, _quantities, index, _size - index - 1);
+        _size--;
+        _itemIds[_size] = null;
+    }
+
+    public void clear() {
+        for (int i = 0; i < _size; i++) {
+            _itemIds[i] = null;
+        }
+        _size = 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * @param index position of the line, from 0 to size() - 1
+     * @return the item id of the line
+     */
+    public String getItemIdAt(final int index) {
+        checkIndex(index);
+        return _itemIds[index];
+    }
+
+    /**
+     * @param index position of the line, from 0 to size() - 1
+     * @return the quantity of the line
+     */
+    public int getQuantityAt(final int index) {
+        checkIndex(index);
+        return _quantities[index];
+    }
+
+    /**
+     * @return the item ids, in the order they were added
+     */
+    public List<String> getItemIds() {
+        final List<String> itemIds = new ArrayList<String>(_size);
+        for (int i = 0; i < _size; i++) {
+            itemIds.add(_itemIds[i]);
+        }
+        return itemIds;
+    }
+
+    /**
+     * This method returns the Map representation of the cart.
+     *
+     * @return a new map of (itemId, Integer quantity) associations
+     */
+    public Map toMap() {
+        final Map shoppingCart = new HashMap(_size * 2);
+        for (int i = 0; i < _size; i++) {
+            shoppingCart.put(_itemIds[i], new Integer(_quantities[i]));
+        }
+        return shoppingCart;
+    }
+
+    public String toString() {
+        final StringBuffer buf = new StringBuffer();
+        buf.append("ShoppingCartDTO{");
+        for (int i = 0; i < _size; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append(_itemIds[i]).append('=').append(_quantities[i]);
+        }
+        buf.append('}');
+        return buf.toString();
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private int indexOf(final String itemId) {
+        for (int i = 0; i < _size; i++) {
+            if (_itemIds[i].equals(itemId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+    }
+
+    // Writes the number of lines, then the id and quantity of every line
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(_size);
+        for (int i = 0; i < _size; i++) {
+            out.writeUTF(_itemIds[i]);
+            out.writeInt(_quantities[i]);
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _size = in.readInt();
+        if (_size < 0) {
+            throw new InvalidObjectException("Negative size: " + _size);
+        }
+        _itemIds = new String[Math.max(_size, INITIAL_CAPACITY)];
+        _quantities = new int[_itemIds.length];
+        for (int i = 0; i < _size; i++) {
+            _itemIds[i] = in.readUTF();
+            _quantities[i] = in.readInt();
+        }
+    }
+}
@@ -0,0 +1,639 @@
+package com.yaps.petstore.server.cart;
+
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.common.logging.Trace;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * This class keeps the shopping carts on the local disk so that they survive
+ * a restart of the node. It is enabled by giving a directory in the system
+ * property petstore.cart.journal.
+ * <p/>
+ * Every change of a cart is appended to a journal by a background thread :
+ * the ShoppingCartBean only puts the change in a queue and never waits for
+ * the disk. The thread writes all the changes queued while the previous
+ * batch was being written, then forces them to the disk once (group fsync).
+ * Every record has its length and a CRC32, so that a record half written by
+ * a crash is found and cut off.
+ * <p/>
+ * When the journal grows over petstore.cart.journal.compactSize bytes (16 MB
+ * by default), the snapshot and the journal are folded into a new snapshot
+ * holding the last content of every cart, and the journal starts again
+ * empty. The empty carts and the carts not changed for
+ * petstore.cart.journal.maxAge days (30 by default) are left out.
+ * <p/>
+ * The content of the carts is not kept in memory : the journal is opened on
+ * first use and only indexes where every cart is on the disk (its entry in
+ * the snapshot and its records in the journal). A cart is rebuilt from the
+ * disk each time a ShoppingCartBean loads it, so that every session of a
+ * browser gets back the last content of its cart.
+ */
+public final class CartJournal {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    public static final long DEFAULT_COMPACT_SIZE = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE = 30L * 24 * 3600 * 1000;
+
+    private static final String JOURNAL = "carts.journal";
+    private static final String SNAPSHOT = "carts.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x43415254;
+    // A record longer than that can only be a torn one
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    // Kinds of records
+    private static final byte SET_QUANTITY = 1;
+    private static final byte EMPTY = 2;
+    // Queued last by close() : the writer stops once the records before it are written
+    private static final byte[] CLOSE = new byte[0];
+
+    private static CartJournal _instance;
+    private static boolean _initialized = false;
+
+    private final File _journalFile;
+    private final File _snapshotFile;
+    private final long _compactSize;
+    private final long _maxAge;
+
+    // Where the carts are on the disk, guarded by itself : the files are not changed while it is held
+    private final Map<String, CartIndex> _index = new HashMap<String, CartIndex>();
+    // Records waiting to be written, guarded by itself with _appended and _closed
+    private final BlockingQueue<byte[]> _queue = new LinkedBlockingQueue<byte[]>();
+    private long _appended = 0;
+    private boolean _closed = false;
+    // Number of records on the disk, guarded by _queue
+    private long _written = 0;
+
+    // Only used by the writer thread once the journal is open
+    private final RandomAccessFile _journal;
+    private final Thread _writer;
+
+    // Used for logging
+    private static final String _cname = CartJournal.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * This constructor indexes the carts kept in a directory and starts the
+     * thread that writes the journal.
+     *
+     * @param directory   directory of the snapshot and the journal, created if needed
+     * @param compactSize size in bytes of the journal above which it is folded into a snapshot
+     * @param maxAge      time in milliseconds after which a cart not changed is forgotten
+     * @throws IOException is thrown if the directory cannot be read or written
+     */
+    public CartJournal(final File directory, final long compactSize, final long maxAge) throws IOException {
+        final String mname = "CartJournal";
+        Trace.entering(_cname, mname, directory);
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        _journalFile = new File(directory, JOURNAL);
+        _snapshotFile = new File(directory, SNAPSHOT);
+        _compactSize = compactSize;
+        _maxAge = maxAge;
+
+        // Indexes the carts and cuts off a record torn by a crash
+        final long length;
+        synchronized (_index) {
+            indexSnapshot();
+            length = indexJournal();
+        }
+        _journal = new RandomAccessFile(_journalFile, "rw");
+        if (_journal.length() > length) {
+            Trace.warning(_cname, mname, "Journal cut off at " + length + " bytes instead of " + _journal.length());
+            _journal.setLength(length);
+        }
+        _journal.seek(length);
+        Trace.info(_cname, mname, getSize() + " shopping carts found in " + directory);
+
+        _writer = new Thread("CartJournal writer") {
+            public void run() {
+                write();
+            }
+        };
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /**
+     * This method returns the journal of the node, opened on first use.
+     *
+     * @return the journal, null if petstore.cart.journal is not set or the journal cannot be opened
+     */
+    public static synchronized CartJournal getInstance() {
+        if (!_initialized) {
+            _initialized = true;
+            final String directory = System.getProperty("petstore.cart.journal");
+            if (directory != null && directory.length() > 0) {
+                try {
+                    _instance = new CartJournal(new File(directory),
+                            Long.getLong("petstore.cart.journal.compactSize", DEFAULT_COMPACT_SIZE).longValue(),
+                            Long.getLong("petstore.cart.journal.maxAge", DEFAULT_MAX_AGE / (24 * 3600 * 1000)).longValue() * 24 * 3600 * 1000);
+                    final CartJournal journal = _instance;
+                    Runtime.getRuntime().addShutdownHook(new Thread() {
+                        public void run() {
+                            journal.close();
+                        }
+                    });
+                } catch (IOException e) {
+                    Trace.severe(_cname, "getInstance", "The shopping carts will not be kept : " + e);
+                }
+            }
+        }
+        return _instance;
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the last content of a cart, rebuilt from the disk.
+     * The changes recorded so far are written first, so that a new session
+     * gets the cart as the previous session of the browser left it.
+     *
+     * @param cartId id of the cart
+     * @return the content of the cart, null if it is empty or has not been changed for too long
+     */
+    public ShoppingCartDTO load(final String cartId) {
+        final String mname = "load";
+        flush();
+
+        final CartState cart;
+        synchronized (_index) {
+            final CartIndex index = _index.get(cartId);
+            if (index == null || index.getTime() < System.currentTimeMillis() - _maxAge) {
+                return null;
+            }
+            final RandomAccessFile snapshot = index.getSnapshotOffset() < 0 ? null : open(_snapshotFile);
+            final RandomAccessFile journal = index.getJournalOffsets().isEmpty() ? null : open(_journalFile);
+            try {
+                cart = read(index, snapshot, journal);
+            } catch (IOException e) {
+                Trace.severe(_cname, mname, "The shopping cart " + cartId + " cannot be read : " + e);
+                return null;
+            } finally {
+                close(snapshot);
+                close(journal);
+            }
+        }
+        return cart.getShoppingCart().isEmpty() ? null : cart.getShoppingCart();
+    }
+
+    /**
+     * This method records the new quantity of an item.
+     *
+     * @param cartId   id of the cart
+     * @param itemId   id of the item
+     * @param quantity new quantity, zero if the item has been removed
+     */
+    public void setQuantity(final String cartId, final String itemId, final int quantity) {
+        append(encode(SET_QUANTITY, System.currentTimeMillis(), cartId, itemId, quantity));
+    }
+
+    /**
+     * This method records that a cart has been emptied.
+     *
+     * @param cartId id of the cart
+     */
+    public void empty(final String cartId) {
+        append(encode(EMPTY, System.currentTimeMillis(), cartId, null, 0));
+    }
+
+    /**
+     * This method waits until all the changes recorded so far are on the disk.
+     */
+    public void flush() {
+        synchronized (_queue) {
+            final long target = _appended;
+            while (_written < target && _writer.isAlive()) {
+                try {
+                    _queue.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method writes the changes still queued and closes the journal. The
+     * changes recorded afterwards are ignored.
+     */
+    public void close() {
+        synchronized (_queue) {
+            if (_closed) {
+                return;
+            }
+            // Nothing can be queued after the pill, the writer is never interrupted in the middle of a write
+            _closed = true;
+            _queue.add(CLOSE);
+        }
+        try {
+            _writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of carts on the disk, the emptied ones left out
+     */
+    public int getSize() {
+        synchronized (_index) {
+            return _index.size();
+        }
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private void append(final byte[] record) {
+        synchronized (_queue) {
+            if (_closed) {
+                return;
+            }
+            _appended++;
+            _queue.add(record);
+        }
+    }
+
+    // Loop of the writer thread
+    private void write() {
+        final String mname = "write";
+        final List<byte[]> batch = new ArrayList<byte[]>();
+        boolean closed = false;
+        while (!closed) {
+            try {
+                batch.add(_queue.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer
+                continue;
+            }
+            // Everything queued while the previous batch was forced goes in this one
+            _queue.drainTo(batch);
+            // The pill, if any, is the last record of the batch
+            if (batch.get(batch.size() - 1) == CLOSE) {
+                batch.remove(batch.size() - 1);
+                closed = true;
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Iterator<byte[]> iterator = batch.iterator(); iterator.hasNext();) {
+                final byte[] record = iterator.next();
+                bytes.write(record, 0, record.length);
+            }
+            try {
+                final long offset = _journal.getFilePointer();
+                _journal.write(bytes.toByteArray());
+                _journal.getChannel().force(false);
+                synchronized (_index) {
+                    index(bytes.toByteArray(), offset);
+                }
+                if (_journal.length() > _compactSize) {
+                    compact();
+                }
+            } catch (IOException e) {
+                Trace.severe(_cname, mname, batch.size() + " shopping cart changes lost : " + e);
+            }
+
+            synchronized (_queue) {
+                _written += batch.size();
+                _queue.notifyAll();
+            }
+            batch.clear();
+        }
+        try {
+            _journal.close();
+        } catch (IOException e) {
+            Trace.throwing(_cname, mname, e);
+        }
+    }
+
+    // Folds the snapshot and the journal into a new snapshot and empties the journal
+    private void compact() throws IOException {
+        final String mname = "compact";
+        Trace.entering(_cname, mname, new Long(_journal.length()));
+
+        synchronized (_index) {
+            final Map<String, CartState> carts = new HashMap<String, CartState>();
+            final long oldest = System.currentTimeMillis() - _maxAge;
+            final RandomAccessFile snapshot = open(_snapshotFile);
+            final RandomAccessFile journal = open(_journalFile);
+            try {
+                for (Map.Entry<String, CartIndex> entry : _index.entrySet()) {
+                    final CartState cart = read(entry.getValue(), snapshot, journal);
+                    if (!cart.getShoppingCart().isEmpty() && cart.getTime() >= oldest) {
+                        carts.put(entry.getKey(), cart);
+                    }
+                }
+            } finally {
+                close(snapshot);
+                close(journal);
+            }
+            final Map<String, Long> offsets = writeSnapshot(carts);
+
+            // If the node stops before, the journal is read again over the new snapshot, which changes nothing
+            _journal.setLength(0);
+            _journal.seek(0);
+            _journal.getChannel().force(true);
+
+            _index.clear();
+            for (Map.Entry<String, CartState> entry : carts.entrySet()) {
+                _index.put(entry.getKey(), new CartIndex(offsets.get(entry.getKey()).longValue(), entry.getValue().getTime()));
+            }
+        }
+
+        Trace.exiting(_cname, mname, new Integer(getSize()));
+    }
+
+    // Indexes the carts of the snapshot, if any, the ones not changed for too long being left out
+    private void indexSnapshot() throws IOException {
+        if (!_snapshotFile.exists()) {
+            return;
+        }
+        final byte[] bytes = new byte[(int) _snapshotFile.length()];
+        final DataInputStream file = new DataInputStream(new FileInputStream(_snapshotFile));
+        try {
+            file.readFully(bytes);
+        } finally {
+            file.close();
+        }
+
+        // The last 8 bytes are the CRC32 of the others
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 8));
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final DataInputStream in = new DataInputStream(input);
+        if (bytes.length < 16 || in.readInt() != SNAPSHOT_MAGIC
+                || new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - 8, 8)).readLong() != crc.getValue())
+            throw new IOException("Corrupted snapshot " + _snapshotFile);
+
+        final long oldest = System.currentTimeMillis() - _maxAge;
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final long offset = bytes.length - input.available();
+            final String cartId = in.readUTF();
+            final long time = in.readLong();
+            final int size = in.readInt();
+            for (int j = 0; j < size; j++) {
+                in.readUTF();
+                in.readInt();
+            }
+            if (time >= oldest) {
+                _index.put(cartId, new CartIndex(offset, time));
+            }
+        }
+    }
+
+    // Writes the carts into a new file that then replaces the snapshot, and returns the offset of every cart
+    private Map<String, Long> writeSnapshot(final Map<String, CartState> carts) throws IOException {
+        final Map<String, Long> offsets = new HashMap<String, Long>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(carts.size());
+        for (Map.Entry<String, CartState> entry : carts.entrySet()) {
+            final ShoppingCartDTO shoppingCart = entry.getValue().getShoppingCart();
+            offsets.put(entry.getKey(), new Long(bytes.size()));
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().getTime());
+            out.writeInt(shoppingCart.size());
+            for (int i = 0; i < shoppingCart.size(); i++) {
+                out.writeUTF(shoppingCart.getItemIdAt(i));
+                out.writeInt(shoppingCart.getQuantityAt(i));
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+
+        final File temporary = new File(_snapshotFile.getPath() + ".tmp");
+        final FileOutputStream file = new FileOutputStream(temporary);
+        try {
+            bytes.writeTo(file);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!temporary.renameTo(_snapshotFile) && !(_snapshotFile.delete() && temporary.renameTo(_snapshotFile)))
+            throw new IOException("Cannot replace " + _snapshotFile);
+        return offsets;
+    }
+
+    // Indexes the records of the journal and returns the length of the valid ones
+    private long indexJournal() throws IOException {
+        if (!_journalFile.exists()) {
+            return 0;
+        }
+        long length = 0;
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_journalFile)));
+        try {
+            while (true) {
+                final int recordLength;
+                final byte[] record;
+                final int checksum;
+                try {
+                    recordLength = in.readInt();
+                    if (recordLength <= 0 || recordLength > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    record = new byte[recordLength];
+                    in.readFully(record);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                index(new DataInputStream(new ByteArrayInputStream(record)), length);
+                length += 4 + recordLength + 4;
+            }
+        } finally {
+            in.close();
+        }
+        return length;
+    }
+
+    // Indexes the records written one after the other from an offset of the journal
+    private void index(final byte[] records, final long offset) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(records));
+        long position = offset;
+        while (position < offset + records.length) {
+            final int recordLength = in.readInt();
+            index(in, position);
+            in.readInt();
+            position += 4 + recordLength + 4;
+        }
+    }
+
+    // Indexes a change found at an offset of the journal : an emptied cart is forgotten
+    private void index(final DataInputStream change, final long offset) throws IOException {
+        final byte kind = change.readByte();
+        final long time = change.readLong();
+        final String cartId = change.readUTF();
+        if (kind == SET_QUANTITY) {
+            change.readUTF();
+            change.readInt();
+            CartIndex index = _index.get(cartId);
+            if (index == null) {
+                index = new CartIndex(-1, time);
+                _index.put(cartId, index);
+            }
+            index.getJournalOffsets().add(new Long(offset));
+            index.setTime(time);
+        } else {
+            _index.remove(cartId);
+        }
+    }
+
+    // Rebuilds a cart from its entry in the snapshot and its records in the journal
+    private static CartState read(final CartIndex index, final RandomAccessFile snapshot, final RandomAccessFile journal) throws IOException {
+        final CartState cart = new CartState(index.getTime());
+        if (index.getSnapshotOffset() >= 0) {
+            snapshot.seek(index.getSnapshotOffset());
+            snapshot.readUTF();
+            snapshot.readLong();
+            final int size = snapshot.readInt();
+            for (int i = 0; i < size; i++) {
+                cart.getShoppingCart().setQuantity(snapshot.readUTF(), snapshot.readInt());
+            }
+        }
+        for (Iterator<Long> iterator = index.getJournalOffsets().iterator(); iterator.hasNext();) {
+            journal.seek(iterator.next().longValue());
+            journal.readInt();
+            // The kind, the time and the id of the cart
+            journal.readByte();
+            journal.readLong();
+            journal.readUTF();
+            cart.getShoppingCart().setQuantity(journal.readUTF(), journal.readInt());
+        }
+        return cart;
+    }
+
+    // Opens a file for reading, null if it doesn't exist
+    private static RandomAccessFile open(final File file) {
+        try {
+            return new RandomAccessFile(file, "r");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void close(final RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            Trace.throwing(_cname, "close", e);
+        }
+    }
+
+    // A record is its length, the change and the CRC32 of the change
+    private static byte[] encode(final byte kind, final long time, final String cartId, final String itemId, final int quantity) {
+        try {
+            final ByteArrayOutputStream change = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(change);
+            out.writeByte(kind);
+            out.writeLong(time);
+            out.writeUTF(cartId);
+            if (kind == SET_QUANTITY) {
+                out.writeUTF(itemId);
+                out.writeInt(quantity);
+            }
+            final CRC32 crc = new CRC32();
+            crc.update(change.toByteArray());
+
+            final ByteArrayOutputStream record = new ByteArrayOutputStream(change.size() + 8);
+            final DataOutputStream framed = new DataOutputStream(record);
+            framed.writeInt(change.size());
+            change.writeTo(framed);
+            framed.writeInt((int) crc.getValue());
+            return record.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen in memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ======================================
+    // =            Inner classes           =
+    // ======================================
+    // Content of a cart rebuilt from the disk
+    private static final class CartState {
+
+        private final ShoppingCartDTO _shoppingCart = new ShoppingCartDTO();
+        private final long _time;
+
+        private CartState(final long time) {
+            _time = time;
+        }
+
+        private ShoppingCartDTO getShoppingCart() {
+            return _shoppingCart;
+        }
+
+        private long getTime() {
+            return _time;
+        }
+    }
+
+    // Where a cart is on the disk : its entry in the snapshot, if any, and its records in the journal since
+    private static final class CartIndex {
+
+        private final long _snapshotOffset;
+        private final List<Long> _journalOffsets = new ArrayList<Long>();
+        private long _time;
+
+        private CartIndex(final long snapshotOffset, final long time) {
+            _snapshotOffset = snapshotOffset;
+            _time = time;
+        }
+
+        private long getSnapshotOffset() {
+            return _snapshotOffset;
+        }
+
+        private List<Long> getJournalOffsets() {
+            return _journalOffsets;
+        }
+
+        private long getTime() {
+            return _time;
+        }
+
+        private void setTime(final long time) {
+            _time = time;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.yaps.petstore.server.cart;
 
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+
 import java.util.Collection;
 import java.util.Map;
 import javax.ejb.Remote;
@@ -15,6 +17,15 @@ public interface ShoppingCart  {
     // =           Business methods         =
     // ======================================
 
+    /**
+     * This method gives the shopping cart its id. If the carts are kept on the
+     * disk (see CartJournal), the cart gets back the content it had under this
+     * id before the node restarted. It is called once, before any other method.
+     *
+     * @param cartId durable id of the cart, which outlives the HTTP sessions of the browser
+     */
+    void load(String cartId);
+
     /**
      * This method returns the shopping cart. The shopping cart is represented as a Map (key, value)
      * where item ids and quantities are stored.
@@ -23,6 +34,14 @@ public interface ShoppingCart  {
      */
     Map getCart();
 
+    /**
+     * This method returns the content of the shopping cart, the item ids and
+     * quantities being kept in a compact form.
+     *
+     * @return a copy of the shopping cart
+     */
+    ShoppingCartDTO getCartDTO();
+
     /**
      * This method returns a collection of ShoppingCartDTO. It uses the item id that is stored
      * in the shopping cart to get all item information (id, name, product, quantity, cost).
@@ -68,4 +87,10 @@ public interface ShoppingCart  {
      *
      */
     void empty();
+
+    /**
+     * This method removes the shopping cart from the EJB container. It is
+     * called when the HTTP session of the cart is over.
+     */
+    void remove();
 }
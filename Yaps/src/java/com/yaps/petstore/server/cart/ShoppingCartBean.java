@@ -1,10 +1,12 @@
 package com.yaps.petstore.server.cart;
 
 import com.yaps.petstore.server.service.AbstractRemoteService;
+import com.yaps.petstore.server.service.EntityManagerInterceptor;
 
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.dto.ShoppingCartItemDTO;
 
-import com.yaps.petstore.common.exception.ObjectNotFoundException;
+import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.server.domain.item.Item;
 import com.yaps.petstore.server.domain.item.ItemDAO;
 
@@ -16,15 +18,22 @@ import java.util.Map;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.ejb.Remove;
 import javax.ejb.Stateful;
+import javax.interceptor.Interceptors;
 
 // @Stateful (name="ShoppingCartSB", mappedName=ShoppingCartHome.JNDI_NAME)
 @Stateful (name="ShoppingCartSB")
+@Interceptors(EntityManagerInterceptor.class)
 public class ShoppingCartBean extends AbstractRemoteService implements ShoppingCart {
     // ======================================
     // =             Attributes             =
     // ======================================
-    private Map _shoppingCart;
+    private ShoppingCartDTO _shoppingCart;
+    // Id under which the changes of the cart are journaled, null if the cart is not journaled
+    private String _cartId;
+    // Total of the cart as read by the last getItems, null once the cart has changed
+    private Double _total;
 
     private static final ItemDAO _itemDAO = new ItemDAO();
     // ======================================
@@ -39,7 +48,7 @@ public class ShoppingCartBean extends AbstractRemoteService implements ShoppingC
 
     @PostConstruct
     public void initialize() {
-        _shoppingCart = new HashMap();
+        _shoppingCart = new ShoppingCartDTO();
     }
 
     @PreDestroy
@@ -47,59 +56,102 @@ public class ShoppingCartBean extends AbstractRemoteService implements ShoppingC
         _shoppingCart = null;
     }
 
+    public void load(String cartId) {
+        final CartJournal journal = CartJournal.getInstance();
+        if (journal == null) {
+            return;
+        }
+        _cartId = cartId;
+        final ShoppingCartDTO shoppingCart = journal.load(cartId);
+        if (shoppingCart != null) {
+            _total = null;
+            _shoppingCart = shoppingCart;
+        }
+    }
+
     public Map getCart() {
-        return _shoppingCart;
+        return _shoppingCart.toMap();
+    }
+
+    public ShoppingCartDTO getCartDTO() {
+        return new ShoppingCartDTO(_shoppingCart);
     }
 
     public Collection getItems() {
         final Collection items = new ArrayList();
+        if (_shoppingCart.isEmpty()) {
+            _total = new Double(0);
+            return items;
+        }
+
+        // Reads all the items of the cart in one query
+        final Map itemsById = new HashMap();
+        for (Iterator iterator = _itemDAO.findByIds(_shoppingCart.getItemIds()).iterator(); iterator.hasNext();) {
+            final Item item = (Item) iterator.next();
+            itemsById.put(item.getId(), item);
+        }
 
-        Iterator it = _shoppingCart.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry keyValue = (Map.Entry)it.next();
-            String itemId = (String)keyValue.getKey();
-            int quantity = (Integer)keyValue.getValue();
-            final Item item;
-            try {
-                item = (Item)_itemDAO.findByPrimaryKey(itemId);
+        double total = 0.0;
+        for (int i = 0; i < _shoppingCart.size(); i++) {
+            final String itemId = _shoppingCart.getItemIdAt(i);
+            final Item item = (Item) itemsById.get(itemId);
+            if (item != null) {
                 ShoppingCartItemDTO shoppingCartItemDTO = new ShoppingCartItemDTO(itemId, item.getName(),
-                    item.getProduct().getDescription(), quantity, item.getUnitCost());
+                    item.getProduct().getDescription(), _shoppingCart.getQuantityAt(i), item.getUnitCost());
                 items.add(shoppingCartItemDTO);
-            } catch (ObjectNotFoundException e) {
-                // TODO
-            	System.out.println("ShoppingCartBean.getItems() " + e + ": " + itemId);
+                total += shoppingCartItemDTO.getTotalCost();
+            } else {
+                Trace.warning(getCname(), "getItems", "Item not found : " + itemId);
             }
         }
+        // The total of the items just read is kept for getTotal
+        _total = new Double(total);
         return items;
     }
 
     public void addItem(String itemId) {
-        _shoppingCart.put(itemId, 1);
+        _total = null;
+        _shoppingCart.setQuantity(itemId, 1);
+        if (_cartId != null) {
+            CartJournal.getInstance().setQuantity(_cartId, itemId, 1);
+        }
     }
 
     public void removeItem(String itemId) {
+        _total = null;
         _shoppingCart.remove(itemId);
+        if (_cartId != null) {
+            CartJournal.getInstance().setQuantity(_cartId, itemId, 0);
+        }
     }
 
     public void updateItemQuantity(String itemId, int newQty) {
-        removeItem(itemId);
-        if (newQty > 0) {
-            _shoppingCart.put(itemId, newQty);
+        // The item keeps its place in the cart, a quantity of zero removes it
+        _total = null;
+        _shoppingCart.setQuantity(itemId, newQty);
+        if (_cartId != null) {
+            CartJournal.getInstance().setQuantity(_cartId, itemId, newQty);
         }
     }
 
     public Double getTotal() {
-        double total = 0.0;
-        Collection cartItems = getItems();
-        Iterator it = cartItems.iterator();
-        while(it.hasNext()) {
-            ShoppingCartItemDTO shoppingCartItemDTO = (ShoppingCartItemDTO)it.next();
-            total += shoppingCartItemDTO.getTotalCost();
+        // The total is computed again only if the cart has changed since getItems
+        if (_total == null) {
+            getItems();
         }
-        return total;
+        return _total;
     }
 
     public void empty() {
+        _total = null;
         _shoppingCart.clear();
+        if (_cartId != null) {
+            CartJournal.getInstance().empty(_cartId);
+        }
+    }
+
+    @Remove
+    public void remove() {
+        // The container then calls clear() and discards the bean
     }
 }
@@ -3,6 +3,7 @@ package com.yaps.petstore.server.domain.category;
 import java.io.Serializable;
 import java.util.Collection;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -10,17 +11,24 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.server.domain.DomainObject;
 import com.yaps.petstore.server.domain.product.Product;
 
 @Entity
-@NamedQuery(name = "Category.findAll", query="select c from Category c")
+@Cacheable
+@NamedQueries( {
+	@NamedQuery(name = "Category.findAll", query="select c from Category c"),
+	@NamedQuery(name = "Category.findPage", query="select c from Category c where c._id > :afterId order by c._id"),
+	@NamedQuery(name = "Category.findAllDTO", query="select new com.yaps.petstore.common.dto.CategoryDTO(c._id, c._name, c._description) from Category c")
+} )
 @Table(name = "T_CATEGORY")
 public class Category extends DomainObject implements Serializable{
 	 // ======================================
@@ -33,11 +41,14 @@ public class Category extends DomainObject implements Serializable{
         valueColumnName="value", pkColumnValue="Category")
     @GeneratedValue(strategy=GenerationType.TABLE, generator="TABLE_GEN_CATEGORY") 
 	private String _id;
+	@Version
+	@Column(name = "version")
+	private int _version;
 	@Column(name = "name", nullable = false, length = 50)
     private String _name;
 	@Column(name = "description", nullable = false, length = 255)
     private String _description;
-	@OneToMany (mappedBy ="_category", fetch =FetchType.EAGER, cascade =CascadeType.ALL)
+	@OneToMany (mappedBy ="_category", fetch =FetchType.LAZY, cascade =CascadeType.ALL)
     private Collection<Product> _products;
 
     // ======================================
@@ -114,4 +125,8 @@ public class Category extends DomainObject implements Serializable{
 		_id=id;
 	}
 
+	public int getVersion() {
+		return _version;
+	}
+
 }
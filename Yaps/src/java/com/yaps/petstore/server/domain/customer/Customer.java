@@ -8,9 +8,11 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.server.domain.Address;
@@ -18,7 +20,13 @@ import com.yaps.petstore.server.domain.CreditCard;
 import com.yaps.petstore.server.domain.DomainObject;
 
 @Entity
-@NamedQuery(name="Customer.findAll", query="select c from Customer c")
+@NamedQueries( {
+	@NamedQuery(name="Customer.findAll", query="select c from Customer c"),
+	@NamedQuery(name = "Customer.findPage", query="select c from Customer c where c._id > :afterId order by c._id"),
+	@NamedQuery(name = "Customer.findAllDTO", query="select new com.yaps.petstore.common.dto.CustomerDTO(c._id, c._firstname, c._lastname, c._password, c._telephone, c._email, "
+			+ "c._address._street1, c._address._street2, c._address._city, c._address._state, c._address._zipcode, c._address._country, "
+			+ "c._creditCard._creditCardNumber, c._creditCard._creditCardType, c._creditCard._creditCardExpiryDate) from Customer c")
+} )
 @Table(name="T_CUSTOMER")
 public class Customer extends DomainObject implements Serializable{
 	// ======================================
@@ -30,6 +38,9 @@ public class Customer extends DomainObject implements Serializable{
     valueColumnName="value", pkColumnValue="Customer")
     @GeneratedValue(strategy=GenerationType.TABLE, generator="TABLE_GEN_CUSTOMER")
 	private String _id;
+	@Version
+	@Column(name = "version")
+	private int _version;
     
     @Column(name = "firstname", nullable = false, length = 50)
 	private String _firstname;
@@ -244,4 +255,8 @@ public class Customer extends DomainObject implements Serializable{
 		// TODO Auto-generated method stub
 		_id=id;
 	}
+
+	public int getVersion() {
+		return _version;
+	}
 }
@@ -2,6 +2,7 @@ package com.yaps.petstore.server.domain.item;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -12,20 +13,38 @@ import javax.persistence.JoinColumn;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToOne;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Version;
 
 import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.server.domain.DomainObject;
 import com.yaps.petstore.server.domain.product.Product;
 @Entity
+@Cacheable
 @NamedQuery(name = "Item.findAll", query="select i from Item i")
 @NamedQueries( {
 	@NamedQuery(name = "Item.findAll", query="select i from Item i"),
 	@NamedQuery(name = "Item.findAllInProduct", query="select i from Item i where i._product._id = :productId"),
-	@NamedQuery(name = "Item.search", query="select i from Item i where i._id like :keyword or i._name like :keyword")
+	@NamedQuery(name = "Item.search", query="select i from Item i where i._id like :keyword or i._name like :keyword"),
+	@NamedQuery(name = "Item.findPage", query="select i from Item i where i._id > :afterId order by i._id"),
+	@NamedQuery(name = "Item.findAllDTO", query="select new com.yaps.petstore.common.dto.ItemDTO(i._id, i._name, i._unitCost, i._imagePath, p._id, p._name, p._description) from Item i join i._product p"),
+	@NamedQuery(name = "Item.findAllDTOInProduct", query="select new com.yaps.petstore.common.dto.ItemDTO(i._id, i._name, i._unitCost, i._imagePath, p._id, p._name, p._description) from Item i join i._product p where p._id = :productId"),
+	@NamedQuery(name = "Item.searchDTO", query="select new com.yaps.petstore.common.dto.ItemDTO(i._id, i._name, i._unitCost, i._imagePath, p._id, p._name, p._description) from Item i join i._product p where i._id like :keyword or i._name like :keyword"),
+	// Everything the search index needs : the item DTO, the category id and name
+	@NamedQuery(name = "Item.findAllForIndex", query="select new com.yaps.petstore.common.dto.ItemDTO(i._id, i._name, i._unitCost, i._imagePath, p._id, p._name, p._description), c._id, c._name from Item i join i._product p join p._category c"),
+	// Fetch plan : the items of a list of ids with their product (e.g. the lines of a shopping cart)
+	@NamedQuery(name = "Item.findByIds", query="select i from Item i where i._id in :ids", hints = {
+		@QueryHint(name = "eclipselink.join-fetch", value = "i._product")
+	} ),
+	// Fetch plan : an item with its product, from the shared cache if the item is there
+	@NamedQuery(name = "Item.findWithProduct", query="select i from Item i where i._id = :id", hints = {
+		@QueryHint(name = "eclipselink.cache-usage", value = "CheckCacheByPrimaryKey"),
+		@QueryHint(name = "eclipselink.join-fetch", value = "i._product")
+	} )
 } )
 @Table(name = "T_ITEM")
 public class Item extends DomainObject implements Serializable{
@@ -38,13 +57,16 @@ public class Item extends DomainObject implements Serializable{
         valueColumnName="value", pkColumnValue="Item")
     @GeneratedValue(strategy=GenerationType.TABLE, generator="TABLE_GEN_ITEM") 
 	private String _id;
+	@Version
+	@Column(name = "version")
+	private int _version;
 	@Column(name = "name", nullable = false, length = 50)
     private String _name;
 	@Column(name = "unitCost", nullable = false)
     private double _unitCost;
 	@Column(name = "imagePath", length = 255)
     private String _imagePath;
-	@OneToOne(fetch =FetchType.EAGER)
+	@OneToOne(fetch =FetchType.LAZY)
 	@JoinColumn(name ="product_fk", nullable = false)
     private Product _product;
 
@@ -132,4 +154,8 @@ public class Item extends DomainObject implements Serializable{
 	public void setId(String id) {
 		_id = id;
 	}
+
+	public int getVersion() {
+		return _version;
+	}
 }
@@ -1,10 +1,13 @@
 package com.yaps.petstore.server.domain.item;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.persistence.Query;
 
+import com.yaps.petstore.common.dto.ItemDTO;
 import com.yaps.petstore.common.exception.ObjectNotFoundException;
 import com.yaps.petstore.server.domain.orderline.OrderLine;
 import com.yaps.petstore.server.util.persistence.AbstractDataAccessObject;
@@ -15,6 +18,8 @@ public final class ItemDAO extends AbstractDataAccessObject<String, Item>{
     // ======================================
     // Used to get a unique id with the UniqueIdGenerator
     private static final String COUNTER_NAME = "Item";
+    // Maximum number of ids in the in (...) list of one query
+    public static final int MAX_IDS = 500;
 	protected String getCounterName() {
 		return COUNTER_NAME;
 	}
@@ -32,10 +37,20 @@ public final class ItemDAO extends AbstractDataAccessObject<String, Item>{
     // ======================================
     // =           Business methods         =
     // ======================================
+	/**
+	 * This method finds an item with its product in one query, or in the
+	 * shared cache when the item is there.
+	 *
+	 * @param itemId identifier of the item
+	 * @return the item and its product
+	 * @throws ObjectNotFoundException is thrown if the item is not found
+	 */
+	public Item findItemWithProduct(String itemId) throws ObjectNotFoundException {
+		return selectWithFetchPlan("Item.findWithProduct", itemId);
+	}
+
 	public Collection<Item> findAllInProduct(String productId) throws ObjectNotFoundException {
-    	Query query = _em.createNamedQuery("Item.findAllInProduct");
-    	query.setParameter("productId", productId);
-    	List<Item> entities = query.getResultList();
+    	List<Item> entities = selectCached("Item.findAllInProduct", "productId", productId);
         if (entities.isEmpty())
             throw new ObjectNotFoundException();
 		return entities;
@@ -43,7 +58,7 @@ public final class ItemDAO extends AbstractDataAccessObject<String, Item>{
 
 	public Collection search(String keyword) throws ObjectNotFoundException{
 		// TODO Auto-generated method stub
-		Query query = _em.createNamedQuery("Item.search");
+		Query query = getEntityManager().createNamedQuery("Item.search");
     	query.setParameter("keyword", keyword);
     	List<Item> entities = query.getResultList();
         if (entities.isEmpty())
@@ -51,4 +66,53 @@ public final class ItemDAO extends AbstractDataAccessObject<String, Item>{
 		return entities;
 	}
 
+	public Collection<ItemDTO> findAllDTOsInProduct(String productId) throws ObjectNotFoundException {
+    	List<ItemDTO> dtos = selectDTOsCached("Item.findAllDTOInProduct", "productId", productId);
+        if (dtos.isEmpty())
+            throw new ObjectNotFoundException();
+		return dtos;
+	}
+
+	public Collection<ItemDTO> searchDTOs(String keyword) throws ObjectNotFoundException {
+		Query query = getEntityManager().createNamedQuery("Item.searchDTO");
+    	query.setParameter("keyword", keyword);
+    	List<ItemDTO> dtos = query.getResultList();
+        if (dtos.isEmpty())
+            throw new ObjectNotFoundException();
+		return dtos;
+	}
+
+	/**
+	 * This method reads what the search index needs to know about all the items,
+	 * in one query.
+	 *
+	 * @return rows made of an ItemDTO, the category id and the category name
+	 */
+	public List<Object[]> findAllForIndex() {
+		Query query = getEntityManager().createNamedQuery("Item.findAllForIndex");
+		return query.getResultList();
+	}
+
+	/**
+	 * This method finds the items of a list of ids, with their product, in one
+	 * query per MAX_IDS ids. The ids that are not found are ignored.
+	 *
+	 * @param ids identifiers of the items
+	 * @return the items found, in no particular order
+	 */
+	public Collection<Item> findByIds(Collection<String> ids) {
+		final List<Item> entities = new ArrayList<Item>(ids.size());
+		final List<String> batch = new ArrayList<String>(Math.min(ids.size(), MAX_IDS));
+		for (Iterator<String> iterator = ids.iterator(); iterator.hasNext();) {
+			batch.add(iterator.next());
+			if (batch.size() == MAX_IDS || !iterator.hasNext()) {
+				Query query = getEntityManager().createNamedQuery("Item.findByIds");
+				query.setParameter("ids", batch);
+				entities.addAll(query.getResultList());
+				batch.clear();
+			}
+		}
+		return entities;
+	}
+
 }
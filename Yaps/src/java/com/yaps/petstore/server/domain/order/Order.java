@@ -16,17 +16,17 @@ import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
-import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Version;
 
 /**
  * An order represents the items that a customer buys. This order has several
@@ -38,7 +38,22 @@ import javax.persistence.TemporalType;
  * @see Customer
  */
 @Entity
-@NamedQuery(name = "Order.findAll", query="select o from Order o")
+@NamedQueries( {
+	@NamedQuery(name = "Order.findAll", query="select o from Order o"),
+	@NamedQuery(name = "Order.findPage", query="select o from Order o where o._id > :afterId order by o._id"),
+	// Fetch plans : the customer and the order lines with their items are read with the order
+	@NamedQuery(name = "Order.findWithLines", query="select o from Order o where o._id = :id", hints = {
+		@QueryHint(name = "eclipselink.join-fetch", value = "o._customer"),
+		@QueryHint(name = "eclipselink.left-join-fetch", value = "o._orderLines"),
+		@QueryHint(name = "eclipselink.left-join-fetch", value = "o._orderLines._item")
+	} ),
+	@NamedQuery(name = "Order.findPageWithLines", query="select o from Order o where o._id > :afterId order by o._id", hints = {
+		@QueryHint(name = "eclipselink.batch.type", value = "IN"),
+		@QueryHint(name = "eclipselink.batch", value = "o._customer"),
+		@QueryHint(name = "eclipselink.batch", value = "o._orderLines"),
+		@QueryHint(name = "eclipselink.batch", value = "o._orderLines._item")
+	} )
+} )
 @Table(name = "T_ORDER")
 public class Order extends DomainObject implements Serializable {
 
@@ -47,11 +62,11 @@ public class Order extends DomainObject implements Serializable {
     // ======================================
 	@Id
     @Column(name = "id", length = 10)
-    @TableGenerator(name="TABLE_GEN_ORDER", table="T_COUNTER", pkColumnName="name",
-        valueColumnName="value", pkColumnValue="Order")
-    @GeneratedValue(strategy=GenerationType.TABLE, generator="TABLE_GEN_ORDER") 
-    // see http://en.wikibooks.org/wiki/Java_Persistence/Identity_and_Sequencing#Table_sequencing
+    // Given by the striped UniqueIdGenerator counter "Order", see OrderDAO
     private String _id;
+    @Version
+    @Column(name = "version")
+    private int _version;
 
 	@Column(name = "orderdate", updatable =false)
 	@Temporal(TemporalType.DATE)
@@ -64,10 +79,10 @@ public class Order extends DomainObject implements Serializable {
     private final Address _address = new Address();
     @Embedded
     private final CreditCard _creditCard = new CreditCard();
-	@OneToOne(fetch =FetchType.EAGER)
+	@OneToOne(fetch =FetchType.LAZY)
 	@JoinColumn(name ="customer_fk", nullable = false)
     private Customer _customer;
-	@OneToMany (mappedBy ="_order", fetch =FetchType.EAGER, cascade =CascadeType.ALL)
+	@OneToMany (mappedBy ="_order", fetch =FetchType.LAZY, cascade =CascadeType.ALL)
     private Collection<OrderLine> _orderLines;
 
     // ======================================
@@ -120,6 +135,10 @@ public class Order extends DomainObject implements Serializable {
 		_id = id;
 	}
 
+	public int getVersion() {
+		return _version;
+	}
+
     public Date getOrderDate() {
         return _orderDate;
     }
@@ -1,7 +1,13 @@
 package com.yaps.petstore.server.domain.order;
 
+import com.yaps.petstore.common.exception.ObjectNotFoundException;
+import com.yaps.petstore.server.domain.DomainObject;
+import com.yaps.petstore.server.domain.orderline.OrderLine;
 import com.yaps.petstore.server.util.persistence.AbstractDataAccessObject;
 
+import java.util.Collection;
+import java.util.Iterator;
+
 /**
  * This class does all the database access for the class Order.
  *
@@ -31,5 +37,50 @@ public final class OrderDAO extends AbstractDataAccessObject<String, Order>  {
     // ======================================
     // =           Business methods         =
     // ======================================
+    /**
+     * This method finds an order with its customer and its order lines, and
+     * the item of each line, in one query.
+     *
+     * @param orderId identifier of the order
+     * @return the order and its graph
+     * @throws ObjectNotFoundException is thrown if the order is not found
+     */
+    public Order findOrderWithLines(final String orderId) throws ObjectNotFoundException {
+        return selectWithFetchPlan("Order.findWithLines", orderId);
+    }
+
+    /**
+     * This method returns one page of orders with their customers, order lines
+     * and items. The associations are read with one query each for the whole page.
+     *
+     * @param afterId last identifier of the previous page, null for the first page
+     * @param limit maximum number of orders to return
+     * @return collection of Order, empty when there are no more orders
+     */
+    public Collection<Order> findPageWithLines(final String afterId, final int limit) {
+        return selectPageWithFetchPlan("Order.findPageWithLines", afterId, limit);
+    }
+
+    // ======================================
+    // =         Protected Methods          =
+    // ======================================
+    /**
+     * The order and the order lines persisted with it (cascade) are numbered
+     * by the UniqueIdGenerator before persist.
+     */
+    protected void assignId(final DomainObject entity) {
+        if (entity.getId() == null) {
+            entity.setId(getUniqueId());
+        }
+        final Collection orderLines = ((Order) entity).getOrderLines();
+        if (orderLines != null) {
+            for (Iterator iterator = orderLines.iterator(); iterator.hasNext();) {
+                final OrderLine orderLine = (OrderLine) iterator.next();
+                if (orderLine.getId() == null) {
+                    orderLine.setId(getUniqueId("OrderLine"));
+                }
+            }
+        }
+    }
 
 }
@@ -10,8 +10,6 @@ import java.io.Serializable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -21,14 +19,15 @@ import javax.persistence.OneToOne;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
 import javax.persistence.Table;
-import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 /**
  * An Order has several order lines. This class represent one order line.
  */
 @Entity
 @NamedQueries( {
 	@NamedQuery(name = "OrderLine.findAll", query="select o from OrderLine o"),
-	@NamedQuery(name = "OrderLine.findAllInOrder", query="select ol from OrderLine ol where ol._order._id = :orderId")
+	@NamedQuery(name = "OrderLine.findAllInOrder", query="select ol from OrderLine ol where ol._order._id = :orderId"),
+	@NamedQuery(name = "OrderLine.findPage", query="select ol from OrderLine ol where ol._id > :afterId order by ol._id")
 } )
 @Table(name = "T_ORDER_LINE")
 public class OrderLine extends DomainObject implements Serializable {
@@ -38,19 +37,20 @@ public class OrderLine extends DomainObject implements Serializable {
     // ======================================
 	@Id
     @Column(name = "id", length = 10)
-    @TableGenerator(name="TABLE_GEN_ORDERLINE", table="T_COUNTER", pkColumnName="name",
-        valueColumnName="value", pkColumnValue="OrderLine")
-    @GeneratedValue(strategy=GenerationType.TABLE, generator="TABLE_GEN_ORDERLINE") 
+    // Given by the UniqueIdGenerator counter "OrderLine" (time mode), see OrderLineDAO
     private String _id;
+    @Version
+    @Column(name = "version")
+    private int _version;
 	
 	@Column(name = "quantity", nullable = false)
     private int _quantity;
 	@Column(name = "unitCost", nullable = false)
     private double _unitCost;
-	@OneToOne(fetch = FetchType.EAGER)
+	@OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name ="item_fk", nullable = false)
     private Item _item;
-	@ManyToOne (fetch =FetchType.EAGER)
+	@ManyToOne (fetch =FetchType.LAZY)
 	@JoinColumn(name ="order_fk", nullable = false)
     private Order _order;
 
@@ -106,6 +106,10 @@ public class OrderLine extends DomainObject implements Serializable {
 		_id = id;
 	}
 
+	public int getVersion() {
+		return _version;
+	}
+
     public int getQuantity() {
         return _quantity;
     }
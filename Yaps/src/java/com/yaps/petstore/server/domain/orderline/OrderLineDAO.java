@@ -6,6 +6,7 @@ import java.util.List;
 import javax.persistence.Query;
 
 import com.yaps.petstore.common.exception.ObjectNotFoundException;
+import com.yaps.petstore.server.domain.DomainObject;
 import com.yaps.petstore.server.util.persistence.AbstractDataAccessObject;
 
 public final class OrderLineDAO extends AbstractDataAccessObject<String, OrderLine>  {
@@ -40,7 +41,7 @@ public final class OrderLineDAO extends AbstractDataAccessObject<String, OrderLi
      * @throws ObjectNotFoundException is thrown if the collection is empty
      */
 	public Collection<OrderLine> findAllInOrder(String orderId) throws ObjectNotFoundException {
-    	Query query = _em.createNamedQuery("OrderLine.findAllInOrder");
+    	Query query = getEntityManager().createNamedQuery("OrderLine.findAllInOrder");
     	query.setParameter("orderId", orderId);
     	List<OrderLine> entities = query.getResultList();
         if (entities.isEmpty())
@@ -48,5 +49,16 @@ public final class OrderLineDAO extends AbstractDataAccessObject<String, OrderLi
 		return entities;
 	}
 
+    // ======================================
+    // =         Protected Methods          =
+    // ======================================
+    /**
+     * The order lines are numbered by the UniqueIdGenerator before persist.
+     */
+    protected void assignId(final DomainObject entity) {
+        if (entity.getId() == null) {
+            entity.setId(getUniqueId());
+        }
+    }
 
 }
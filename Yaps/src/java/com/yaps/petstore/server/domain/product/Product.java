@@ -3,6 +3,7 @@ package com.yaps.petstore.server.domain.product;
 import java.io.Serializable;
 import java.util.Collection;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -13,19 +14,30 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.server.domain.DomainObject;
 import com.yaps.petstore.server.domain.category.Category;
 import com.yaps.petstore.server.domain.item.Item;
 @Entity
+@Cacheable
 @NamedQueries( {
 	@NamedQuery(name = "Product.findAll", query="select p from Product p"),
-	@NamedQuery(name = "Product.findAllInCategory", query="select p from Product p where p._category._id = :categoryId")
+	@NamedQuery(name = "Product.findAllInCategory", query="select p from Product p where p._category._id = :categoryId"),
+	@NamedQuery(name = "Product.findPage", query="select p from Product p where p._id > :afterId order by p._id"),
+	@NamedQuery(name = "Product.findAllDTO", query="select new com.yaps.petstore.common.dto.ProductDTO(p._id, p._name, p._description, c._id, c._name) from Product p join p._category c"),
+	@NamedQuery(name = "Product.findAllDTOInCategory", query="select new com.yaps.petstore.common.dto.ProductDTO(p._id, p._name, p._description, c._id, c._name) from Product p join p._category c where c._id = :categoryId"),
+	// Fetch plan : a product with its category, from the shared cache if the product is there
+	@NamedQuery(name = "Product.findWithCategory", query="select p from Product p where p._id = :id", hints = {
+		@QueryHint(name = "eclipselink.cache-usage", value = "CheckCacheByPrimaryKey"),
+		@QueryHint(name = "eclipselink.join-fetch", value = "p._category")
+	} )
 } )
 @Table(name = "T_PRODUCT")
 public class Product extends DomainObject implements Serializable{
@@ -38,14 +50,17 @@ public class Product extends DomainObject implements Serializable{
         valueColumnName="value", pkColumnValue="Product")
     @GeneratedValue(strategy=GenerationType.TABLE, generator="TABLE_GEN_PRODUCT")
 	private String _id;
+	@Version
+	@Column(name = "version")
+	private int _version;
 	@Column(name = "name", nullable = false, length = 50)
     private String _name;
 	@Column(name = "description", nullable = false, length = 50)
     private String _description;
-	@OneToOne(fetch =FetchType.EAGER)
+	@OneToOne(fetch =FetchType.LAZY)
     @JoinColumn(name ="category_fk", nullable = false)
     private Category _category;
-	@OneToMany (mappedBy ="_product", fetch =FetchType.EAGER, cascade =CascadeType.ALL)
+	@OneToMany (mappedBy ="_product", fetch =FetchType.LAZY, cascade =CascadeType.ALL)
     private Collection<Item> _items;
 
     // ======================================
@@ -131,4 +146,8 @@ public class Product extends DomainObject implements Serializable{
 	public void setId(String id) {
 		_id = id;
 	}
+
+	public int getVersion() {
+		return _version;
+	}
 }
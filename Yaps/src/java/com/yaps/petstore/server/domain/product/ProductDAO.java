@@ -3,8 +3,8 @@ package com.yaps.petstore.server.domain.product;
 import java.util.Collection;
 import java.util.List;
 
-import javax.persistence.Query;
 
+import com.yaps.petstore.common.dto.ProductDTO;
 import com.yaps.petstore.common.exception.ObjectNotFoundException;
 import com.yaps.petstore.server.domain.item.Item;
 import com.yaps.petstore.server.util.persistence.AbstractDataAccessObject;
@@ -32,12 +32,29 @@ public final class ProductDAO extends AbstractDataAccessObject<String, Product>{
     // ======================================
     // =           Business methods         =
     // ======================================
+	/**
+	 * This method finds a product with its category in one query, or in the
+	 * shared cache when the product is there.
+	 *
+	 * @param productId identifier of the product
+	 * @return the product and its category
+	 * @throws ObjectNotFoundException is thrown if the product is not found
+	 */
+	public Product findProductWithCategory(String productId) throws ObjectNotFoundException {
+		return selectWithFetchPlan("Product.findWithCategory", productId);
+	}
+
 	public Collection<Product> findAllInCategory(String categoryId) throws ObjectNotFoundException {
-    	Query query = _em.createNamedQuery("Product.findAllInCategory");
-    	query.setParameter("categoryId", categoryId);
-    	List<Product> entities = query.getResultList();
+    	List<Product> entities = selectCached("Product.findAllInCategory", "categoryId", categoryId);
         if (entities.isEmpty())
             throw new ObjectNotFoundException();
 		return entities;
 	}
+
+	public Collection<ProductDTO> findAllDTOsInCategory(String categoryId) throws ObjectNotFoundException {
+    	List<ProductDTO> dtos = selectDTOsCached("Product.findAllDTOInCategory", "categoryId", categoryId);
+        if (dtos.isEmpty())
+            throw new ObjectNotFoundException();
+		return dtos;
+	}
 }
@@ -21,6 +21,11 @@ public abstract class AbstractRemoteService {
     	if ( id == null || id.equals("") )
     		throw new CheckException("Id should not be null or empty");    	
     }
+
+    protected void checkPageSize(final int limit) throws CheckException {
+    	if ( limit <= 0 )
+    		throw new CheckException("Page size should be positive");
+    }
     // ======================================
     // =         Getters and Setters        =
     // ======================================
@@ -0,0 +1,38 @@
+package com.yaps.petstore.server.service;
+
+import com.yaps.petstore.common.logging.Trace;
+import com.yaps.petstore.server.util.persistence.EntityManagerFactoryRegistry;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+/**
+ * This bean closes the EntityManagerFactory instances shared by the DAOs
+ * (see EntityManagerFactoryRegistry) when the application is undeployed, so
+ * that their connection pools don't outlive it. It is started with the
+ * application so that the container destroys it when the application stops.
+ */
+@Singleton
+@Startup
+public class EntityManagerFactoryCloser {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // Used for logging
+    private final transient String _cname = this.getClass().getName();
+
+    // ======================================
+    // =     Lifecycle Callback methods     =
+    // ======================================
+    @PreDestroy
+    public void close() {
+        final String mname = "close";
+        Trace.entering(_cname, mname);
+
+        EntityManagerFactoryRegistry.closeAll();
+
+        Trace.exiting(_cname, mname);
+    }
+}
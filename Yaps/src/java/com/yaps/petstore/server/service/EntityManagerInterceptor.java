@@ -0,0 +1,37 @@
+package com.yaps.petstore.server.service;
+
+import com.yaps.petstore.server.util.persistence.EntityManagerContext;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+
+/**
+ * This interceptor binds the container-managed EntityManager to the thread that
+ * runs a business method, and unbinds it when the method returns. The DAOs used
+ * by the session beans therefore always work with the persistence context of the
+ * current transaction, whichever bean instance of the pool is serving the call.
+ */
+public class EntityManagerInterceptor {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    @PersistenceContext(unitName = "petstorePU", type = PersistenceContextType.TRANSACTION)
+    private EntityManager _injectedEntityManager;
+
+    // ======================================
+    // =         Interceptor methods        =
+    // ======================================
+    @AroundInvoke
+    public Object bindEntityManager(final InvocationContext context) throws Exception {
+        final EntityManager previous = EntityManagerContext.bind(_injectedEntityManager);
+        try {
+            return context.proceed();
+        } finally {
+            EntityManagerContext.bind(previous);
+        }
+    }
+}
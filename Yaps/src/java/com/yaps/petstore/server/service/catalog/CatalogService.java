@@ -1,12 +1,17 @@
 package com.yaps.petstore.server.service.catalog;
 
 import com.yaps.petstore.common.dto.CategoryDTO;
+import com.yaps.petstore.common.dto.FacetFilterDTO;
+import com.yaps.petstore.common.dto.FacetResultDTO;
 import com.yaps.petstore.common.dto.ItemDTO;
 import com.yaps.petstore.common.dto.ProductDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.exception.*;
 
 import javax.ejb.EJBObject;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import javax.ejb.Remote;
 
 /**
@@ -82,6 +87,20 @@ public interface CatalogService {
      */
     Collection findCategories() throws FinderException;
 
+    /**
+     * This method returns one page of categories ordered by identifier. It uses keyset
+     * pagination : the page starts right after the identifier given, so the cost of a
+     * call depends on the page size and not on the number of categories in the system.
+     *
+     * @param afterId last identifier of the previous page, null or empty for the first page
+     * @param limit   maximum number of categories to return, must be positive
+     * @return a collection of CategoryDTO, empty when there are no more categories
+     * @throws FinderException is thrown if a DomainException is caught
+     *                         or a system failure is occurs
+     * @throws CheckException  is thrown if the page size is invalid
+     */
+    Collection findCategoriesPage(String afterId, int limit) throws FinderException, CheckException;
+
     // ======================================
     // =      Product Business methods     =
     // ======================================
@@ -164,6 +183,20 @@ public interface CatalogService {
      */
     Collection findProducts(String categoryId) throws FinderException, CheckException;
 
+    /**
+     * This method returns one page of products ordered by identifier. It uses keyset
+     * pagination : the page starts right after the identifier given, so the cost of a
+     * call depends on the page size and not on the number of products in the system.
+     *
+     * @param afterId last identifier of the previous page, null or empty for the first page
+     * @param limit   maximum number of products to return, must be positive
+     * @return a collection of ProductDTO, empty when there are no more products
+     * @throws FinderException is thrown if a DomainException is caught
+     *                         or a system failure is occurs
+     * @throws CheckException  is thrown if the page size is invalid
+     */
+    Collection findProductsPage(String afterId, int limit) throws FinderException, CheckException;
+
     // ======================================
     // =        Item Business methods       =
     // ======================================
@@ -246,6 +279,20 @@ public interface CatalogService {
      */
     Collection findItems(String productId) throws FinderException, CheckException;
 
+    /**
+     * This method returns one page of items ordered by identifier. It uses keyset
+     * pagination : the page starts right after the identifier given, so the cost of a
+     * call depends on the page size and not on the number of items in the system.
+     *
+     * @param afterId last identifier of the previous page, null or empty for the first page
+     * @param limit   maximum number of items to return, must be positive
+     * @return a collection of ItemDTO, empty when there are no more items
+     * @throws FinderException is thrown if a DomainException is caught
+     *                         or a system failure is occurs
+     * @throws CheckException  is thrown if the page size is invalid
+     */
+    Collection findItemsPage(String afterId, int limit) throws FinderException, CheckException;
+
     /**
      * This method return all the items that match a given keyword. It uses the Item domain object
      * to get the data. It then transforms this collection of Item object into a
@@ -259,6 +306,65 @@ public interface CatalogService {
      */
     Collection searchItems(String keyword) throws FinderException;
 
+    /**
+     * This method returns one page of the items that match a given keyword, the
+     * most relevant first. Only the items of the page are ranked and transferred,
+     * whatever the number of items matching the keyword.
+     *
+     * @param keyword words to look for, separated by OR for alternatives
+     * @param offset  number of items to skip, must not be negative
+     * @param limit   maximum number of items to return, must be positive
+     * @return a collection of ItemDTO
+     * @throws ObjectNotFoundException is thrown if the collection is empty
+     * @throws FinderException         is thrown if a DomainException is caught
+     *                                 or a system failure is occurs
+     * @throws CheckException          is thrown if the offset or the page size is invalid
+     */
+    Collection searchItems(String keyword, int offset, int limit) throws FinderException, CheckException;
+
+    /**
+     * This method completes the beginning of a word typed in the search box with
+     * the most frequent words of the item, product and category names. It is
+     * answered from memory, without any database access.
+     *
+     * @param prefix beginning of a word
+     * @param limit  maximum number of words to return, between 1 and 10
+     * @return a list of words, the most frequent first, empty if there is none
+     * @throws CheckException is thrown if the limit is invalid
+     */
+    List suggestKeywords(String prefix, int limit) throws CheckException;
+
+    /**
+     * This method reads all the items into the in-memory search index, unless
+     * it is already built. It is called when the application starts (see
+     * SearchIndexLoader), so that the first searches don't wait for it.
+     */
+    void buildSearchIndex();
+
+    /**
+     * This method returns the items of a category, a product and a range of unit
+     * costs, the filters being optional, with the number of matching items per
+     * category, product and unit cost range. It is answered from memory by
+     * intersecting bitsets, instead of one query per browsing step.
+     *
+     * @param filter the filters and the page of items to return
+     * @return one page of ItemDTO, in the order of their ids, the total number
+     * of matching items and the counts per facet value
+     * @throws CheckException is thrown if the filter or the page is invalid
+     */
+    FacetResultDTO browseItems(FacetFilterDTO filter) throws CheckException;
+
+    /**
+     * This method returns the lines of a shopping cart held by the client, with
+     * the name, product description and unit cost of every item, read in one
+     * query. The items that no longer exist are left out.
+     *
+     * @param shoppingCart item ids and quantities
+     * @return a collection of ShoppingCartItemDTO, in the order of the cart
+     * @throws CheckException is thrown if the shopping cart is null
+     */
+    Collection findShoppingCartItems(ShoppingCartDTO shoppingCart) throws CheckException;
+
     /**
      * This method returns a unique identifer generated by the system. 
      *
@@ -266,4 +372,14 @@ public interface CatalogService {
      * @return a unique identifer
      */
     String getUniqueId(final String domainClassName);
+
+    /**
+     * This method returns the hit and miss counters of the shared cache that
+     * keeps the categories, products and items (e.g. Item.hits, Item.misses)
+     * and of the cache of the search results (e.g. SearchResult.hitRate,
+     * SearchResult.coalesced).
+     *
+     * @return a map of (counterName, Long) sorted by counter name
+     */
+    Map getCacheStatistics();
 }
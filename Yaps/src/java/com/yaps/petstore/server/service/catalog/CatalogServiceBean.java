@@ -1,8 +1,12 @@
 package com.yaps.petstore.server.service.catalog;
 
 import com.yaps.petstore.common.dto.CategoryDTO;
+import com.yaps.petstore.common.dto.FacetFilterDTO;
+import com.yaps.petstore.common.dto.FacetResultDTO;
 import com.yaps.petstore.common.dto.ItemDTO;
 import com.yaps.petstore.common.dto.ProductDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.common.dto.ShoppingCartItemDTO;
 import com.yaps.petstore.common.exception.*;
 import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.server.domain.category.Category;
@@ -12,43 +16,46 @@ import com.yaps.petstore.server.domain.item.ItemDAO;
 import com.yaps.petstore.server.domain.product.Product;
 import com.yaps.petstore.server.domain.product.ProductDAO;
 import com.yaps.petstore.server.service.AbstractRemoteService;
+import com.yaps.petstore.server.service.EntityManagerInterceptor;
+import com.yaps.petstore.server.util.persistence.CacheStatistics;
+import com.yaps.petstore.server.util.persistence.TransactionCallbacks;
+import com.yaps.petstore.server.util.search.CatalogIndex;
+import com.yaps.petstore.server.util.search.SearchResultCache;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
-import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import javax.ejb.Stateless;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.PersistenceContextType;
+import javax.interceptor.Interceptors;
 
 /**
  * This class is a facade for all catalog services.
  */
 // @Stateless (name="CatalogSB", mappedName = CatalogServiceHome.JNDI_NAME)
 @Stateless (name="CatalogSB")
+@Interceptors(EntityManagerInterceptor.class)
 public class CatalogServiceBean extends AbstractRemoteService implements CatalogService {
     // ======================================
     // =             Attributes             =
     // ======================================
-    @PersistenceContext(unitName = "petstorePU", type = PersistenceContextType.TRANSACTION)
-    private EntityManager _injectedEntityManager;
     private static final CategoryDAO _categoryDAO = new CategoryDAO();
     private static final ProductDAO _productDAO = new ProductDAO();
     private static final ItemDAO _itemDAO = new ItemDAO();
 
+    // Only one call reads the items to build the search index, the others wait for it
+    private static final Object _searchIndexLock = new Object();
+    // Number of times the items are read before the index is built holding off the changes
+    private static final int MAX_INDEX_ATTEMPTS = 3;
+
     // ======================================
     // =            Constructors            =
     // ======================================
     public CatalogServiceBean() {
     }
-
-    @PostConstruct
-    public void init() {
-        _categoryDAO.setEntityManager(_injectedEntityManager);
-        _productDAO.setEntityManager(_injectedEntityManager);
-        _itemDAO.setEntityManager(_injectedEntityManager);
-    }
     // ======================================
     // =      Category Business methods     =
     // ======================================
@@ -108,6 +115,16 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (ObjectNotFoundException e) {
             throw new RemoveException("Category must exist to be deleted");
         }
+
+        // The products and items of the category have been deleted in cascade
+        _productDAO.invalidateQueryResults();
+        _itemDAO.invalidateQueryResults();
+        // The index is shared by all the transactions, it only changes once the deletion is committed
+        TransactionCallbacks.afterCommit(new Runnable() {
+            public void run() {
+                CatalogIndex.removeCategory(categoryId);
+            }
+        });
     }
 
     public void updateCategory(final CategoryDTO categoryDTO) throws UpdateException, CheckException {
@@ -137,14 +154,37 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (ObjectNotFoundException e) {
             throw new UpdateException("Category must exist to be updated");
         }
+
+        // The product DTOs hold the category name
+        _productDAO.invalidateQueryResults();
+        final String categoryId = category.getId();
+        final String categoryName = category.getName();
+        TransactionCallbacks.afterCommit(new Runnable() {
+            public void run() {
+                CatalogIndex.updateCategory(categoryId, categoryName);
+            }
+        });
     }
 
     public Collection findCategories() throws FinderException {
         final String mname = "findCategories";
         Trace.entering(getCname(), mname);
 
-        // Finds all the objects
-        final Collection categories = _categoryDAO.findAll();
+        // Reads the DTOs straight from the database
+        final Collection categoriesDTO = _categoryDAO.selectAllDTOs();
+
+        Trace.exiting(getCname(), mname, new Integer(categoriesDTO.size()));
+        return categoriesDTO;
+    }
+
+    public Collection findCategoriesPage(final String afterId, final int limit) throws FinderException, CheckException {
+        final String mname = "findCategoriesPage";
+        Trace.entering(getCname(), mname, new Object[]{afterId, new Integer(limit)});
+
+        checkPageSize(limit);
+
+        // Finds one page of objects
+        final Collection categories = _categoryDAO.findPage(afterId, limit);
 
         // Transforms domain objects into DTOs
         final Collection categoriesDTO = transformCategories2DTOs(categories);
@@ -179,6 +219,9 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         // Creates the object
         _productDAO.insert(product);
 
+        // The cached category still holds its former products
+        _categoryDAO.evict(category.getId());
+
         // Transforms domain object into DTO
         final ProductDTO result = transformProduct2DTO(product);
 
@@ -192,8 +235,8 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
 
         checkId(productId);
 
-        // Finds the object
-        final Product product = (Product) _productDAO.findByPrimaryKey(productId);
+        // Finds the object with its category
+        final Product product = _productDAO.findProductWithCategory(productId);
 
         // Transforms domain object into DTO
         final ProductDTO productDTO = transformProduct2DTO(product);
@@ -209,11 +252,13 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
     	checkId(productId);
 
         // Checks if the object exists
+        final Product product;
         try {
-            _productDAO.findByPrimaryKey(productId);
+            product = (Product) _productDAO.findByPrimaryKey(productId);
         } catch (FinderException e) {
             throw new CheckException("Product must exist to be deleted");
         }
+        final String categoryId = product.getCategory().getId();
 
         // Deletes the object
         try {
@@ -221,6 +266,17 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (ObjectNotFoundException e) {
             throw new RemoveException("Product must exist to be deleted");
         }
+
+        // The cached category still holds the deleted product
+        _categoryDAO.evict(categoryId);
+
+        // The items of the product have been deleted in cascade
+        _itemDAO.invalidateQueryResults();
+        TransactionCallbacks.afterCommit(new Runnable() {
+            public void run() {
+                CatalogIndex.removeProduct(productId);
+            }
+        });
     }
 
     public void updateProduct(final ProductDTO productDTO) throws UpdateException, CheckException {
@@ -252,6 +308,7 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         }
 
         // Transforms DTO into domain object
+        final String oldCategoryId = product.getCategory().getId();
         product.setName(productDTO.getName());
         product.setDescription(productDTO.getDescription());
         product.setCategory(category);
@@ -262,17 +319,33 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (ObjectNotFoundException e) {
             throw new UpdateException("Product must exist to be updated");
         }
+
+        // The product may have moved from a cached category to another
+        if (!category.getId().equals(oldCategoryId)) {
+            _categoryDAO.evict(oldCategoryId);
+            _categoryDAO.evict(category.getId());
+        }
+
+        // The item DTOs hold the product name and description
+        _itemDAO.invalidateQueryResults();
+        final String productId = product.getId();
+        final String productName = product.getName();
+        final String productDescription = product.getDescription();
+        final String categoryId = category.getId();
+        final String categoryName = category.getName();
+        TransactionCallbacks.afterCommit(new Runnable() {
+            public void run() {
+                CatalogIndex.updateProduct(productId, productName, productDescription, categoryId, categoryName);
+            }
+        });
     }
 
     public Collection findProducts() throws FinderException {
         final String mname = "findProducts";
         Trace.entering(getCname(), mname);
 
-        // Finds all the objects
-        final Collection products = _productDAO.findAll();
-
-        // Transforms domain objects into DTOs
-        final Collection productsDTO = transformProducts2DTOs(products);
+        // Reads the DTOs straight from the database
+        final Collection productsDTO = _productDAO.selectAllDTOs();
 
         Trace.exiting(getCname(), mname, new Integer(productsDTO.size()));
         return productsDTO;
@@ -284,11 +357,24 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
 
     	checkId(categoryId);
 
-    	// Finds all the products
-        final Collection products = _productDAO.findAllInCategory(categoryId);
+    	// Reads the DTOs of the products straight from the database
+        final Collection productsDTO = _productDAO.findAllDTOsInCategory(categoryId);
+
+        Trace.exiting(getCname(), mname, new Integer(productsDTO.size()));
+        return productsDTO;
+    }
+
+    public Collection findProductsPage(final String afterId, final int limit) throws FinderException, CheckException {
+        final String mname = "findProductsPage";
+        Trace.entering(getCname(), mname, new Object[]{afterId, new Integer(limit)});
+
+        checkPageSize(limit);
+
+        // Finds one page of objects
+        final Collection products = _productDAO.findPage(afterId, limit);
 
         // Transforms domain objects into DTOs
-        Collection productsDTO = transformProducts2DTOs(products);
+        final Collection productsDTO = transformProducts2DTOs(products);
 
         Trace.exiting(getCname(), mname, new Integer(productsDTO.size()));
         return productsDTO;
@@ -315,6 +401,7 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (FinderException e) {
             throw new CheckException("Product must exist to create an item");
         }
+        final Category category = findCategoryOf(product);
 
         // Transforms DTO into domain object
         final Item item = new Item(itemDTO.getId(), itemDTO.getName(), itemDTO.getUnitCost(), product);
@@ -325,8 +412,12 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         // Creates the object
         _itemDAO.insert(item);
 
+        // The cached product still holds its former items
+        _productDAO.evict(product.getId());
+
         // Transforms domain object into DTO
         final ItemDTO result = transformItem2DTO(item);
+        indexItem(result, category);
 
         Trace.exiting(getCname(), mname, result);
         return result;
@@ -338,12 +429,8 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
 
     	checkId(itemId);
 
-    	// Finds the object
-        final Item item = (Item)_itemDAO.findByPrimaryKey(itemId);
-
-        // Retreives the data for the linked object
-        Product product = (Product)_productDAO.findByPrimaryKey(item.getProduct().getId());
-        item.setProduct(product);
+    	// Finds the object with its product
+        final Item item = _itemDAO.findItemWithProduct(itemId);
 
         // Transforms domain object into DTO
         final ItemDTO itemDTO = transformItem2DTO(item);
@@ -359,11 +446,13 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
     	checkId(itemId);
 
         // Checks if the object exists
+        final Item item;
         try {
-        	_itemDAO.findByPrimaryKey(itemId);
+        	item = (Item) _itemDAO.findByPrimaryKey(itemId);
         } catch (FinderException e) {
             throw new CheckException("Item must exist to be deleted");
         }
+        final String productId = item.getProduct().getId();
 
         // Deletes the object
         try {
@@ -371,6 +460,14 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (ObjectNotFoundException e) {
             throw new RemoveException("Customer must exist to be deleted");
         }        
+
+        // The cached product still holds the deleted item
+        _productDAO.evict(productId);
+        TransactionCallbacks.afterCommit(new Runnable() {
+            public void run() {
+                CatalogIndex.removeItem(itemId);
+            }
+        });
     }
 
     public void updateItem(final ItemDTO itemDTO) throws UpdateException, CheckException {
@@ -400,8 +497,10 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (FinderException e) {
             throw new CheckException("Product must exist to update an item");
         }
+        final Category category = findCategoryOf(product);
 
         // Transforms DTO into domain object
+        final String oldProductId = item.getProduct().getId();
         item.setName(itemDTO.getName());
         item.setUnitCost(itemDTO.getUnitCost());
         item.setImagePath(itemDTO.getImagePath());
@@ -415,17 +514,21 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         } catch (ObjectNotFoundException e) {
             throw new UpdateException("Item must exist to be updated");
         }
+
+        // The item may have moved from a cached product to another
+        if (!product.getId().equals(oldProductId)) {
+            _productDAO.evict(oldProductId);
+            _productDAO.evict(product.getId());
+        }
+        indexItem(transformItem2DTO(item), category);
     }
 
     public Collection findItems() throws FinderException {
         final String mname = "findItems";
         Trace.entering(getCname(), mname);
 
-        // Finds all the objects
-        final Collection items = _itemDAO.findAll();
-
-        // Transforms domain objects into DTOs
-        final Collection itemsDTO = transformItems2DTOs(items);
+        // Reads the DTOs straight from the database
+        final Collection itemsDTO = _itemDAO.selectAllDTOs();
 
         Trace.exiting(getCname(), mname, new Integer(itemsDTO.size()));
         return itemsDTO;
@@ -437,8 +540,21 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
 
     	checkId(productId);
 
-    	// Finds all the items
-        final Collection items = _itemDAO.findAllInProduct(productId);
+    	// Reads the DTOs of the items straight from the database
+        final Collection itemsDTO = _itemDAO.findAllDTOsInProduct(productId);
+
+        Trace.exiting(getCname(), mname, new Integer(itemsDTO.size()));
+        return itemsDTO;
+    }
+
+    public Collection findItemsPage(final String afterId, final int limit) throws FinderException, CheckException {
+        final String mname = "findItemsPage";
+        Trace.entering(getCname(), mname, new Object[]{afterId, new Integer(limit)});
+
+        checkPageSize(limit);
+
+        // Finds one page of objects
+        final Collection items = _itemDAO.findPage(afterId, limit);
 
         // Transforms domain objects into DTOs
         final Collection itemsDTO = transformItems2DTOs(items);
@@ -451,16 +567,126 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         final String mname = "searchItems";
         Trace.entering(getCname(), mname, keyword);
 
-        // Search all the items
-        final Collection items = _itemDAO.search(keyword);
+        // Searches the items in the in-memory index, unless the result is in the cache
+        buildSearchIndex();
+        final Collection itemsDTO = searchItemsInCache(keyword, 0, Integer.MAX_VALUE);
+        if (itemsDTO.isEmpty())
+            throw new ObjectNotFoundException();
 
-        // Transforms domain objects into DTOs
-        final Collection itemsDTO = transformItems2DTOs(items);
+        Trace.exiting(getCname(), mname, new Integer(itemsDTO.size()));
+        return itemsDTO;
+    }
+
+    public Collection searchItems(final String keyword, final int offset, final int limit) throws FinderException, CheckException {
+        final String mname = "searchItems";
+        Trace.entering(getCname(), mname, new Object[]{keyword, new Integer(offset), new Integer(limit)});
+
+        if (offset < 0)
+            throw new CheckException("Offset should not be negative");
+        checkPageSize(limit);
+
+        // Ranks the items in the in-memory index and keeps one page, unless it is in the cache
+        buildSearchIndex();
+        final Collection itemsDTO = searchItemsInCache(keyword, offset, limit);
+        if (itemsDTO.isEmpty())
+            throw new ObjectNotFoundException();
 
         Trace.exiting(getCname(), mname, new Integer(itemsDTO.size()));
         return itemsDTO;
     }
 
+    public List suggestKeywords(final String prefix, final int limit) throws CheckException {
+        final String mname = "suggestKeywords";
+        Trace.entering(getCname(), mname, new Object[]{prefix, new Integer(limit)});
+
+        checkPageSize(limit);
+        if (limit > CatalogIndex.MAX_SUGGESTIONS)
+            throw new CheckException("No more than " + CatalogIndex.MAX_SUGGESTIONS + " keywords can be suggested");
+
+        // The suggestions come from the words of the in-memory index
+        buildSearchIndex();
+        final List keywords = CatalogIndex.suggest(prefix, limit);
+
+        Trace.exiting(getCname(), mname, new Integer(keywords.size()));
+        return keywords;
+    }
+
+    public FacetResultDTO browseItems(final FacetFilterDTO filter) throws CheckException {
+        final String mname = "browseItems";
+        Trace.entering(getCname(), mname, filter);
+
+        if (filter == null)
+            throw new CheckException("Filter object is null");
+        if (filter.getOffset() < 0)
+            throw new CheckException("Offset should not be negative");
+        checkPageSize(filter.getLimit());
+        if (filter.getMinUnitCost() != null && filter.getMaxUnitCost() != null
+                && filter.getMinUnitCost().doubleValue() > filter.getMaxUnitCost().doubleValue())
+            throw new CheckException("Invalid unit cost range");
+
+        // Intersects the bitsets of the in-memory index
+        buildSearchIndex();
+        final FacetResultDTO result = CatalogIndex.browse(filter);
+
+        Trace.exiting(getCname(), mname, result);
+        return result;
+    }
+
+    public Collection findShoppingCartItems(final ShoppingCartDTO shoppingCart) throws CheckException {
+        final String mname = "findShoppingCartItems";
+        Trace.entering(getCname(), mname, shoppingCart);
+
+        if (shoppingCart == null)
+            throw new CheckException("Shopping cart is null");
+
+        // Reads all the items of the cart in one query
+        final Map<String, Item> itemsById = new HashMap<String, Item>();
+        for (Iterator<Item> iterator = _itemDAO.findByIds(shoppingCart.getItemIds()).iterator(); iterator.hasNext();) {
+            final Item item = iterator.next();
+            itemsById.put(item.getId(), item);
+        }
+
+        final Collection cartItemsDTO = new ArrayList();
+        for (int i = 0; i < shoppingCart.size(); i++) {
+            final Item item = itemsById.get(shoppingCart.getItemIdAt(i));
+            if (item != null) {
+                cartItemsDTO.add(new ShoppingCartItemDTO(item.getId(), item.getName(),
+                        item.getProduct().getDescription(), shoppingCart.getQuantityAt(i), item.getUnitCost()));
+            }
+        }
+
+        Trace.exiting(getCname(), mname, new Integer(cartItemsDTO.size()));
+        return cartItemsDTO;
+    }
+
+    public void buildSearchIndex() {
+        final String mname = "buildSearchIndex";
+        if (CatalogIndex.isBuilt()) {
+            return;
+        }
+        Trace.entering(getCname(), mname);
+        synchronized (_searchIndexLock) {
+            for (int attempt = 0; attempt < MAX_INDEX_ATTEMPTS; attempt++) {
+                if (CatalogIndex.isBuilt()) {
+                    return;
+                }
+                final long modCount = CatalogIndex.getModCount();
+                final List<Object[]> rows = _itemDAO.findAllForIndex();
+                // The rows are read again if the catalog has changed in the meantime
+                if (CatalogIndex.build(rows, modCount)) {
+                    return;
+                }
+            }
+            // The catalog keeps changing : reads the rows holding off the changes
+            CatalogIndex.build(new CatalogIndex.RowSource() {
+                public Collection<Object[]> getRows() {
+                    return _itemDAO.findAllForIndex();
+                }
+            });
+        }
+        Trace.exiting(getCname(), mname);
+    }
+
     // ======================================
     // =          Private Methods           =
     // ======================================
@@ -530,6 +756,37 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
         return itemDTO;
     }
 
+    // Returns the category of a product, which must exist to index the items of the product
+    private Category findCategoryOf(final Product product) throws CheckException {
+        try {
+            return (Category) _categoryDAO.findByPrimaryKey(product.getCategory().getId());
+        } catch (FinderException e) {
+            throw new CheckException("Category must exist to index an item");
+        }
+    }
+
+    // Indexes the item once the transaction has committed
+    private void indexItem(final ItemDTO itemDTO, final Category category) {
+        final String categoryId = category.getId();
+        final String categoryName = category.getName();
+        TransactionCallbacks.afterCommit(new Runnable() {
+            public void run() {
+                CatalogIndex.put(itemDTO, categoryId, categoryName);
+            }
+        });
+    }
+
+    // Identical searches running at the same time share the same result
+    private Collection searchItemsInCache(final String keyword, final int offset, final int limit) {
+        final long version = CatalogIndex.getModCount();
+        final String key = CatalogIndex.normalize(keyword) + ':' + offset + ':' + limit;
+        return SearchResultCache.get(key, version, new Callable<List>() {
+            public List call() {
+                return CatalogIndex.search(keyword, offset, limit);
+            }
+        });
+    }
+
     private Collection transformItems2DTOs(final Collection items) {
         final Collection itemsDTO = new ArrayList();
         for (Iterator iterator = items.iterator(); iterator.hasNext();) {
@@ -548,4 +805,10 @@ public class CatalogServiceBean extends AbstractRemoteService implements Catalog
     public final String getUniqueId(final String domainClassName) {
         return _categoryDAO.getUniqueId(domainClassName);
     }
+
+    public Map getCacheStatistics() {
+        final Map statistics = CacheStatistics.getStatistics();
+        statistics.putAll(SearchResultCache.getStatistics());
+        return statistics;
+    }
 }
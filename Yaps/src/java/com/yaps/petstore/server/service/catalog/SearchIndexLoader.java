@@ -0,0 +1,47 @@
+package com.yaps.petstore.server.service.catalog;
+
+import com.yaps.petstore.common.logging.Trace;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+/**
+ * This bean builds the in-memory search index when the application starts,
+ * before the first request, so that no search has to wait while all the
+ * items are read. If the items can't be read at that time, the index is
+ * built by the first search instead.
+ */
+@Singleton
+@Startup
+public class SearchIndexLoader {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    @EJB
+    private CatalogService _catalogService;
+
+    // Used for logging
+    private final transient String _cname = this.getClass().getName();
+
+    // ======================================
+    // =     Lifecycle Callback methods     =
+    // ======================================
+    @PostConstruct
+    public void load() {
+        final String mname = "load";
+        Trace.entering(_cname, mname);
+
+        // Goes through the CatalogService so that the items are read in a transaction with its EntityManager
+        try {
+            _catalogService.buildSearchIndex();
+        } catch (RuntimeException e) {
+            Trace.throwing(_cname, mname, e);
+            Trace.warning(_cname, mname, "The search index will be built by the first search");
+        }
+
+        Trace.exiting(_cname, mname);
+    }
+}
@@ -93,6 +93,20 @@ public interface CustomerService {
      */
     Collection<CustomerDTO> findCustomers() throws FinderException;
 
+    /**
+     * This method returns one page of customers ordered by identifier. It uses keyset
+     * pagination : the page starts right after the identifier given, so the cost of a
+     * call depends on the page size and not on the number of customers in the system.
+     *
+     * @param afterId last identifier of the previous page, null or empty for the first page
+     * @param limit   maximum number of customers to return, must be positive
+     * @return a collection of CustomerDTO, empty when there are no more customers
+     * @throws FinderException is thrown if a DomainException is caught
+     *                         or a system failure is occurs
+     * @throws CheckException  is thrown if the page size is invalid
+     */
+    Collection<CustomerDTO> findCustomersPage(String afterId, int limit) throws FinderException, CheckException;
+
     /**
      * This method returns a unique identifier generated by the system. 
      *
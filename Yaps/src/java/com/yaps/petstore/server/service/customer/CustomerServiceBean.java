@@ -6,6 +6,7 @@ import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.server.domain.customer.Customer;
 import com.yaps.petstore.server.domain.customer.CustomerDAO;
 import com.yaps.petstore.server.service.AbstractRemoteService;
+import com.yaps.petstore.server.service.EntityManagerInterceptor;
 /* Do not check credit cart data here anymore
 import com.yaps.petstore.common.locator.ejb.ServiceLocator;
 import com.yaps.petstore.server.service.creditcard.CreditCardServiceLocal;
@@ -14,28 +15,24 @@ import com.yaps.petstore.server.service.creditcard.CreditCardServiceLocalHome;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import javax.annotation.PostConstruct;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.PersistenceContextType;
+import javax.interceptor.Interceptors;
 
 /**
  * This class is a session facade for all customer services.
  */
 // @TransactionManagement(value=TransactionManagementType.CONTAINER)
 @Stateless (name="CustomerSB")
+@Interceptors(EntityManagerInterceptor.class)
 public class CustomerServiceBean extends AbstractRemoteService implements CustomerService {
 
     // ======================================
     // =             Attributes             =
     // ======================================
-    @PersistenceContext(unitName = "petstorePU", type = PersistenceContextType.TRANSACTION)
-    private EntityManager _injectedEntityManager;
     private static final CustomerDAO _dao = new CustomerDAO();
 
     // ======================================
@@ -43,11 +40,6 @@ public class CustomerServiceBean extends AbstractRemoteService implements Custom
     // ======================================
     public CustomerServiceBean() {
     }
-
-    @PostConstruct
-    public void init() {
-        _dao.setEntityManager(_injectedEntityManager);
-    }
     // ======================================
     // =           Business methods         =
     // ======================================
@@ -202,8 +194,21 @@ public class CustomerServiceBean extends AbstractRemoteService implements Custom
         final String mname = "findCustomers";
         Trace.entering(getCname(), mname);
 
-        // Finds all the objects
-        final Collection<Customer> customers = _dao.selectAll();
+        // Reads the DTOs straight from the database
+        final Collection<CustomerDTO> customersDTO = _dao.selectAllDTOs();
+
+        Trace.exiting(getCname(), mname, new Integer(customersDTO.size()));
+        return customersDTO;
+    }
+
+    public Collection<CustomerDTO> findCustomersPage(final String afterId, final int limit) throws FinderException, CheckException {
+        final String mname = "findCustomersPage";
+        Trace.entering(getCname(), mname, new Object[]{afterId, new Integer(limit)});
+
+        checkPageSize(limit);
+
+        // Finds one page of objects
+        final Collection<Customer> customers = _dao.findPage(afterId, limit);
 
         // Transforms domain objects into DTOs
         final Collection<CustomerDTO> customersDTO = transformCustomers2DTOs(customers);
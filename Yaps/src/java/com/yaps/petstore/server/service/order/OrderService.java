@@ -1,8 +1,10 @@
 package com.yaps.petstore.server.service.order;
 
 import com.yaps.petstore.common.dto.OrderDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.exception.*;
 
+import java.util.Collection;
 import java.util.Map;
 import javax.ejb.Remote;
 
@@ -31,6 +33,20 @@ public interface OrderService {
      * @throws CheckException  is thrown if a invalid data is found
      */
     String createOrder(final String customerId, Map shoppingCart) throws CreateException, CheckException;
+
+    /**
+     * Given a customer id and the content of a shopping card, this method
+     * creates a Order the same way as createOrder(String, Map) does, the items
+     * of the cart being read in one query.
+     *
+     * @param customerId cannot be null.
+     * @param shoppingCart cannot be null.
+     * @return the order id
+     * @throws CreateException is thrown if a DomainException is caught
+     *                         or a system failure is occurs
+     * @throws CheckException  is thrown if a invalid data is found
+     */
+    String createOrder(final String customerId, ShoppingCartDTO shoppingCart) throws CreateException, CheckException;
     
     /**
      * Given a OrderDTO object, this method creates a Order. It first transforms
@@ -70,6 +86,20 @@ public interface OrderService {
      */
     void deleteOrder(String orderId) throws RemoveException, CheckException;
 
+    /**
+     * This method returns one page of orders ordered by identifier. It uses keyset
+     * pagination : the page starts right after the identifier given, so the cost of a
+     * call depends on the page size and not on the number of orders in the system.
+     *
+     * @param afterId last identifier of the previous page, null or empty for the first page
+     * @param limit   maximum number of orders to return, must be positive
+     * @return a collection of OrderDTO, empty when there are no more orders
+     * @throws FinderException is thrown if a DomainException is caught
+     *                         or a system failure is occurs
+     * @throws CheckException  is thrown if the page size is invalid
+     */
+    Collection findOrdersPage(String afterId, int limit) throws FinderException, CheckException;
+
     /**
      * This method returns a unique identifer generated by the system. 
      *
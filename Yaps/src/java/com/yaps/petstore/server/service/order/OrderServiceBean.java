@@ -2,6 +2,7 @@ package com.yaps.petstore.server.service.order;
 
 import com.yaps.petstore.common.dto.OrderDTO;
 import com.yaps.petstore.common.dto.OrderLineDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.common.exception.CreateException;
 import com.yaps.petstore.common.exception.FinderException;
@@ -17,27 +18,25 @@ import com.yaps.petstore.server.domain.order.OrderDAO;
 import com.yaps.petstore.server.domain.orderline.OrderLine;
 import com.yaps.petstore.server.domain.orderline.OrderLineDAO;
 import com.yaps.petstore.server.service.AbstractRemoteService;
+import com.yaps.petstore.server.service.EntityManagerInterceptor;
 import com.yaps.petstore.server.service.creditcard.CreditCardServiceLocal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import javax.annotation.PostConstruct;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.PersistenceContextType;
+import javax.interceptor.Interceptors;
 
 /**
  * This class is a facade for all order services.
  */
 // @Stateless (name="OrderSB", mappedName=OrderServiceHome.JNDI_NAME)
 @Stateless (name="OrderSB")
+@Interceptors(EntityManagerInterceptor.class)
 public class OrderServiceBean extends AbstractRemoteService implements OrderService {
-    @PersistenceContext(unitName = "petstorePU", type = PersistenceContextType.TRANSACTION)
-    private EntityManager _injectedEntityManager;
     private static final OrderDAO _orderDAO = new OrderDAO();
     private static final OrderLineDAO _orderLineDAO = new OrderLineDAO();
     private static final CustomerDAO _customerDAO = new CustomerDAO();
@@ -52,21 +51,22 @@ public class OrderServiceBean extends AbstractRemoteService implements OrderServ
     public OrderServiceBean() {
     }
     
-    @PostConstruct
-    public void init() {
-        _orderDAO.setEntityManager(_injectedEntityManager);
-        _orderLineDAO.setEntityManager(_injectedEntityManager);
-        _customerDAO.setEntityManager(_injectedEntityManager);
-        _itemDAO.setEntityManager(_injectedEntityManager);
-    }
-
     // ======================================
     // =           Business methods         =
     // ======================================
     public String createOrder(final String customerId, Map shoppingCart) throws CreateException, CheckException {
+        if (shoppingCart == null)
+            throw new CheckException("Shopping cart is null");
+        return createOrder(customerId, ShoppingCartDTO.fromMap(shoppingCart));
+    }
+
+    public String createOrder(final String customerId, final ShoppingCartDTO shoppingCart) throws CreateException, CheckException {
         final String mname = "createOrder";
-        Trace.entering(getCname(), mname, customerId);
-        
+        Trace.entering(getCname(), mname, new Object[]{customerId, shoppingCart});
+
+        if (shoppingCart == null)
+            throw new CheckException("Shopping cart is null");
+
         // Finds the customer
         Customer customer = null;
         try {
@@ -91,26 +91,27 @@ public class OrderServiceBean extends AbstractRemoteService implements OrderServ
         // Creates the order
         _orderDAO.insert(order);
         
+        // Reads all the items of the cart in one query
+        final Map<String, Item> itemsById = new HashMap<String, Item>();
+        for (Iterator<Item> iterator = _itemDAO.findByIds(shoppingCart.getItemIds()).iterator(); iterator.hasNext();) {
+            final Item item = iterator.next();
+            itemsById.put(item.getId(), item);
+        }
+
         // Creates all the orderLines linked with the order
-        Iterator iterator = shoppingCart.entrySet().iterator();
-        while(iterator.hasNext()) {
-            Map.Entry keyValue = (Map.Entry)iterator.next();
-            String itemId = (String)keyValue.getKey();
-            int quantity = (Integer)keyValue.getValue();
-            // Finds the item
-            Item item = null;
-            try {
-                item = (Item)_itemDAO.findByPrimaryKey(itemId);
-            } catch (FinderException e) {
+        final Collection<OrderLine> orderLines = new ArrayList<OrderLine>();
+        for (int i = 0; i < shoppingCart.size(); i++) {
+            final Item item = itemsById.get(shoppingCart.getItemIdAt(i));
+            if (item == null)
                 throw new CreateException("Item must exist to create an order line");
-            }
             // Creates OrderLine
-            final OrderLine orderLine = new OrderLine(quantity, item.getUnitCost(), order, item);
-            
-            // Creates the order line
-            _orderLineDAO.insert(orderLine);
+            final OrderLine orderLine = new OrderLine(shoppingCart.getQuantityAt(i), item.getUnitCost(), order, item);
+            orderLines.add(orderLine);
         }
-         
+
+        // Creates the order lines in one batch
+        _orderLineDAO.insertAll(orderLines);
+
         return order.getId();
     }
     
@@ -149,7 +150,7 @@ public class OrderServiceBean extends AbstractRemoteService implements OrderServ
         _orderDAO.insert(order);
 
         // Creates all the orderLines linked with the order
-        Collection orderLines = new ArrayList();
+        final Collection<OrderLine> orderLines = new ArrayList<OrderLine>();
         for (Iterator iterator = orderDTO.getOrderLines().iterator(); iterator.hasNext();) {
             final OrderLineDTO orderLineDTO = (OrderLineDTO) iterator.next();
             // Finds the item
@@ -161,10 +162,10 @@ public class OrderServiceBean extends AbstractRemoteService implements OrderServ
             }
             // Transforms OrderLine DTO into domain object
             final OrderLine orderLine = new OrderLine(orderLineDTO.getQuantity(), orderLineDTO.getUnitCost(), order, item);
-            // Creates the order line
-            _orderLineDAO.insert(orderLine);
             orderLines.add(orderLine);
         }
+        // Creates the order lines in one batch
+        _orderLineDAO.insertAll(orderLines);
         // Sets orderLines into the order
         order.setOrderLines(orderLines);
 
@@ -180,16 +181,8 @@ public class OrderServiceBean extends AbstractRemoteService implements OrderServ
         if (orderId == null || "".equals(orderId))
             throw new CheckException("Order object can't be null or empty");
 
-        // Finds the object
-        Order order = (Order) _orderDAO.findByPrimaryKey(orderId);
-
-        // Retreives the data for the customer and sets it
-        Customer customer = (Customer) _customerDAO.findByPrimaryKey(order.getCustomer().getId());
-        order.setCustomer(customer);
-
-        // Retreives the data for all the order lines
-        final Collection orderLines = _orderLineDAO.findAllInOrder(orderId);
-        order.setOrderLines(orderLines);
+        // Finds the object with its customer, its order lines and their items in one query
+        final Order order = _orderDAO.findOrderWithLines(orderId);
 
         // Transforms domain object into DTO
         final OrderDTO orderDTO = transformOrder2DTO(order);
@@ -220,6 +213,25 @@ public class OrderServiceBean extends AbstractRemoteService implements OrderServ
         }
     }
 
+    public Collection findOrdersPage(final String afterId, final int limit) throws FinderException, CheckException {
+        final String mname = "findOrdersPage";
+        Trace.entering(getCname(), mname, new Object[]{afterId, new Integer(limit)});
+
+        checkPageSize(limit);
+
+        // Finds one page of objects with their customers and order lines
+        final Collection orders = _orderDAO.findPageWithLines(afterId, limit);
+
+        // Transforms domain objects into DTOs
+        final Collection ordersDTO = new ArrayList();
+        for (Iterator iterator = orders.iterator(); iterator.hasNext();) {
+            ordersDTO.add(transformOrder2DTO((Order) iterator.next()));
+        }
+
+        Trace.exiting(getCname(), mname, new Integer(ordersDTO.size()));
+        return ordersDTO;
+    }
+
     // ======================================
     // =          Private Methods           =
     // ======================================
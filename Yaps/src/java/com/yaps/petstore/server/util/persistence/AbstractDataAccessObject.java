@@ -9,15 +9,24 @@ import com.yaps.petstore.server.util.uidgen.UniqueIdGenerator;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import javax.persistence.Cache;
+import javax.persistence.Cacheable;
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
-import javax.persistence.Persistence;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 
@@ -37,6 +46,30 @@ public abstract class AbstractDataAccessObject<K, E> {
     protected EntityTransaction _tx;
     private boolean isUnmanagedTransactionStarted;
 
+    // Number of entities written between two flushes by insertAll and mergeAll, read once from
+    // petstore.dao.batchSize. Keep it aligned with eclipselink.jdbc.batch-writing.size in persistence.xml
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int BATCH_SIZE = Integer.getInteger("petstore.dao.batchSize", DEFAULT_BATCH_SIZE).intValue();
+
+    // EclipseLink query hints used by exportAll. They are given by name so that
+    // the DAOs do not depend on the provider classes at compile time
+    private static final String HINT_SCROLLABLE_CURSOR = "eclipselink.cursor.scrollable";
+    private static final String HINT_RESULT_SET_TYPE = "eclipselink.cursor.scrollable.result-set-type";
+    private static final String HINT_RESULT_SET_CONCURRENCY = "eclipselink.cursor.scrollable.result-set-concurrency";
+    private static final String HINT_FETCH_SIZE = "eclipselink.jdbc.fetch-size";
+    private static final String HINT_READ_ONLY = "eclipselink.read-only";
+    // Maximum number of identifiers in the IN list of a query
+    private static final int MAX_IDS = 500;
+    // Fetch size of exportAll. Integer.MIN_VALUE is MySQL-specific : it makes Connector/J stream the rows
+    // one by one, where other drivers reject it or read everything. Set petstore.export.fetchSize (e.g. 100)
+    // for another database
+    private static final int EXPORT_FETCH_SIZE = Integer.getInteger("petstore.export.fetchSize", Integer.MIN_VALUE).intValue();
+
+    // SQL states and vendor code of a duplicate key
+    private static final String SQL_STATE_UNIQUE_VIOLATION = "23505";
+    private static final String SQL_STATE_INTEGRITY_VIOLATION = "23000";
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
     // Used for logging
     private final transient String _cname = this.getClass().getName();
     private static final String sname = AbstractDataAccessObject.class.getName();
@@ -78,8 +111,8 @@ public abstract class AbstractDataAccessObject<K, E> {
 
 
     private void initEntityManager(String persistenceUnitName) {
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory(persistenceUnitName);
-        _em = emf.createEntityManager();
+        // The factory is shared by all the DAOs of the same persistence unit
+        _em = EntityManagerFactoryRegistry.createEntityManager(persistenceUnitName);
         try {
             _tx = _em.getTransaction();
         } catch (Exception e) {
@@ -91,19 +124,58 @@ public abstract class AbstractDataAccessObject<K, E> {
         _em = em;
     }
 
+    /**
+     * This method returns the EntityManager to work with. The one bound to the
+     * current thread (i.e. the one of the current container transaction) wins
+     * over the EntityManager owned by this DAO.
+     *
+     * @return the EntityManager of the current call
+     */
+    protected EntityManager getEntityManager() {
+        return ownsEntityManager() ? _em : EntityManagerContext.getCurrent();
+    }
+
+    /**
+     * This method returns the resource-local transaction to demarcate, or null
+     * when the container manages the transaction of the current call.
+     */
+    private EntityTransaction getTransaction() {
+        return ownsEntityManager() ? _tx : null;
+    }
+
+    /**
+     * This method tells if the EntityManager of the current call is the one of
+     * this DAO. Otherwise it is the persistence context of the container
+     * transaction, shared with the caller, which must not be cleared.
+     * A DAO that must never join the transaction of its caller overrides this
+     * method to always work with its own EntityManager and transactions.
+     */
+    protected boolean ownsEntityManager() {
+        return EntityManagerContext.getCurrent() == null;
+    }
+
     public void setEntityClass(Class<E> entityClass) {
         _entityClass = entityClass;
     }
 
-    private void beginTransaction() {
-        if (_tx != null && !_tx.isActive()) {
-            _tx.begin();
+    protected void beginTransaction() {
+        final EntityTransaction tx = getTransaction();
+        if (tx != null && !tx.isActive()) {
+            tx.begin();
         }
     }
 
-    private void endTransaction() {
-        if (_tx != null) {
-            _tx.commit();
+    protected void endTransaction() {
+        final EntityTransaction tx = getTransaction();
+        if (tx != null) {
+            tx.commit();
+        }
+    }
+
+    protected void rollbackTransaction() {
+        final EntityTransaction tx = getTransaction();
+        if (tx != null && tx.isActive()) {
+            tx.rollback();
         }
     }
 
@@ -112,14 +184,16 @@ public abstract class AbstractDataAccessObject<K, E> {
     // ======================================
     public void persist(E entity) {
         beginTransaction();
-        _em.persist(entity);
+        getEntityManager().persist(entity);
         endTransaction();
+        invalidateQueryResults();
     }
 
     public void remove(E entity) {
         beginTransaction();
-        _em.remove(entity);
+        getEntityManager().remove(entity);
         endTransaction();
+        invalidateQueryResults();
     }
 
     public E findById(K id) throws ObjectNotFoundException {
@@ -127,7 +201,16 @@ public abstract class AbstractDataAccessObject<K, E> {
         if (id == null) {
             throw new ObjectNotFoundException();
         }
-        result = _em.find(_entityClass, id);
+        final EntityManager em = getEntityManager();
+        if (isCacheable()) {
+            // Counts the lookups answered by the shared cache
+            if (em.getEntityManagerFactory().getCache().contains(_entityClass, id)) {
+                CacheStatistics.recordHit(getShortClassName());
+            } else {
+                CacheStatistics.recordMiss(getShortClassName());
+            }
+        }
+        result = em.find(_entityClass, id);
         if (result == null) {
             throw new ObjectNotFoundException();
         }
@@ -136,8 +219,55 @@ public abstract class AbstractDataAccessObject<K, E> {
 
     public void merge(E entity) {
         beginTransaction();
-        _em.merge(entity);
+        getEntityManager().merge(entity);
         endTransaction();
+        invalidateQueryResults();
+    }
+
+    /**
+     * This method writes a collection of entities in a single transaction. The
+     * persistence context is flushed every batchSize entities so that the JDBC
+     * batch writing of the provider sends the statements in groups. When the
+     * DAO owns the persistence context, it is also cleared so that memory stays
+     * bounded whatever the size of the collection ; the one of a container
+     * transaction is left alone, the caller may still use its entities.
+     *
+     * @param entities entities to write
+     * @param mergeOnly true to merge every entity, false to persist the ones
+     * without identifier
+     * @param batchSize number of entities written between two flushes
+     */
+    private void writeAll(final Collection<E> entities, final boolean mergeOnly, final int batchSize) {
+        checkBatchSize(batchSize);
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        final EntityManager em = getEntityManager();
+        final boolean clear = ownsEntityManager();
+        beginTransaction();
+        try {
+            int count = 0;
+            for (Iterator<E> iterator = entities.iterator(); iterator.hasNext();) {
+                final E entity = iterator.next();
+                if (!mergeOnly && ((DomainObject) entity).getId() == null) {
+                    assignId((DomainObject) entity);
+                    em.persist(entity);
+                } else {
+                    em.merge(entity);
+                }
+                if (++count % batchSize == 0) {
+                    em.flush();
+                    if (clear) {
+                        em.clear();
+                    }
+                }
+            }
+            endTransaction();
+        } catch (RuntimeException e) {
+            rollbackTransaction();
+            throw e;
+        }
+        invalidateQueryResults();
     }
 
     // ======================================
@@ -195,21 +325,187 @@ public abstract class AbstractDataAccessObject<K, E> {
         final String mname = "selectAll";
         Trace.entering(getCname(), mname);
 
-        int beginIndex = _entityClass.getName().lastIndexOf('.');
-        beginIndex++;
-        String shortClassName = _entityClass.getName().substring(beginIndex);
-        Query query = _em.createNamedQuery(shortClassName + ".findAll");
+        List<E> entities = selectCached(getShortClassName() + ".findAll", null, null);
+        if (entities.isEmpty()) {
+            throw new ObjectNotFoundException();
+        }
+
+        Trace.exiting(getCname(), mname, new Integer(entities.size()));
+        return entities;
+    }
+
+    /**
+     * This method returns all the entities from the database as read-only DTOs.
+     * The entity must declare a named query called [Entity].findAllDTO with a
+     * constructor expression : the DTOs are filled straight from the result set,
+     * no entity is loaded in the persistence context and no eager association
+     * is followed.
+     *
+     * @return collection of DTOs
+     * @throws ObjectNotFoundException is thrown if the collection is empty
+     */
+    public final Collection selectAllDTOs() throws ObjectNotFoundException {
+        final String mname = "selectAllDTOs";
+        Trace.entering(getCname(), mname);
+
+        List dtos = selectDTOsCached(getShortClassName() + ".findAllDTO", null, null);
+        if (dtos.isEmpty()) {
+            throw new ObjectNotFoundException();
+        }
+
+        Trace.exiting(getCname(), mname, new Integer(dtos.size()));
+        return dtos;
+    }
+
+    /**
+     * This method returns one page of entities ordered by identifier. It uses
+     * keyset pagination : the page starts right after the last identifier of the
+     * previous page, so its cost depends on the page size and not on the table
+     * size. The entity must declare a named query called [Entity].findPage
+     * with an :afterId parameter.
+     *
+     * @param afterId last identifier of the previous page, null for the first page
+     * @param limit maximum number of entities to return
+     * @return collection of DomainObject, empty when there are no more entities
+     */
+    public final Collection<E> findPage(final String afterId, final int limit) {
+        final String mname = "findPage";
+        Trace.entering(getCname(), mname, new Object[]{afterId, new Integer(limit)});
+
+        Query query = getEntityManager().createNamedQuery(getShortClassName() + ".findPage");
+        query.setParameter("afterId", afterId == null ? "" : afterId);
+        query.setMaxResults(limit);
         List<E> entities = query.getResultList();
+
+        Trace.exiting(getCname(), mname, new Integer(entities.size()));
+        return entities;
+    }
+
+    /**
+     * This method streams all the entities of the table to a handler, without
+     * loading them in memory at once. The [Entity].findAll named query is run
+     * through a forward-only, read-only database cursor, in an EntityManager of
+     * its own that is cleared every batchSize entities, so memory stays
+     * constant whatever the number of rows and the persistence context of the
+     * caller is left untouched.
+     * <p/>
+     * The fetch size is only set on the statement of the export. It is read
+     * from the system property petstore.export.fetchSize and defaults to
+     * Integer.MIN_VALUE, which makes MySQL Connector/J stream the rows one by
+     * one instead of reading the whole result set.
+     *
+     * @param handler receives every entity, one after the other
+     * @return the number of entities handled
+     * @throws DataAccessException is thrown if the entities cannot be read or the handler fails
+     */
+    public final int exportAll(final EntityHandler<E> handler) {
+        return exportAll(handler, BATCH_SIZE);
+    }
+
+    /**
+     * This method streams all the entities of the table to a handler, the
+     * EntityManager of the export being cleared every batchSize entities.
+     *
+     * @param handler   receives every entity, one after the other
+     * @param batchSize number of entities handled between two clears, must be positive
+     * @return the number of entities handled
+     * @throws DataAccessException is thrown if the entities cannot be read or the handler fails
+     * @see #exportAll(EntityHandler)
+     */
+    public final int exportAll(final EntityHandler<E> handler, final int batchSize) {
+        final String mname = "exportAll";
+        Trace.entering(getCname(), mname, handler);
+        checkBatchSize(batchSize);
+
+        final EntityManager em = getEntityManager().getEntityManagerFactory().createEntityManager();
+        int count = 0;
+        try {
+            final Query query = em.createNamedQuery(getShortClassName() + ".findAll");
+            query.setHint(HINT_SCROLLABLE_CURSOR, "true");
+            query.setHint(HINT_RESULT_SET_TYPE, "ForwardOnly");
+            query.setHint(HINT_RESULT_SET_CONCURRENCY, "ReadOnly");
+            query.setHint(HINT_FETCH_SIZE, String.valueOf(EXPORT_FETCH_SIZE));
+            query.setHint(HINT_READ_ONLY, "true");
+
+            // The provider returns its cursor as the single result of the query
+            final Iterator<E> cursor = (Iterator<E>) query.getSingleResult();
+            try {
+                while (cursor.hasNext()) {
+                    handler.handle(cursor.next());
+                    if (++count % batchSize == 0) {
+                        em.clear();
+                    }
+                }
+            } finally {
+                closeCursor(cursor);
+            }
+        } catch (Exception e) {
+            throw new DataAccessException("Cannot export " + getShortClassName() + " entities", e);
+        } finally {
+            em.close();
+        }
+
+        Trace.exiting(getCname(), mname, new Integer(count));
+        return count;
+    }
+
+    /**
+     * This method finds an entity together with the associations it will be
+     * used with. The associations are lazy : a fetch plan is a named query
+     * that reads the entity by its :id parameter and joins the graph a use
+     * case needs, so that the graph is loaded in one query.
+     *
+     * @param queryName name of the fetch plan query (e.g. Order.findWithLines)
+     * @param id identifier of the entity
+     * @return the entity with the associations of the fetch plan loaded
+     * @throws ObjectNotFoundException is thrown if the entity id not found in
+     * the persistent layer
+     */
+    protected final E selectWithFetchPlan(final String queryName, final String id) throws ObjectNotFoundException {
+        final String mname = "selectWithFetchPlan";
+        Trace.entering(getCname(), mname, new Object[]{queryName, id});
+
+        if (id == null) {
+            throw new ObjectNotFoundException();
+        }
+        // A joined collection may return the root entity once per row
+        final List<E> entities = createNamedQuery(queryName, "id", id).getResultList();
         if (entities.isEmpty()) {
             throw new ObjectNotFoundException();
         }
 
+        Trace.exiting(getCname(), mname, entities.get(0));
+        return entities.get(0);
+    }
+
+    /**
+     * This method returns one page of entities, as findPage does, together
+     * with the associations of a fetch plan. The fetch plan query takes the
+     * :afterId parameter and should load the associations with batch reading
+     * rather than joins, so that the page size limits the number of entities
+     * and not the number of rows.
+     *
+     * @param queryName name of the fetch plan query (e.g. Order.findPageWithLines)
+     * @param afterId last identifier of the previous page, null for the first page
+     * @param limit maximum number of entities to return
+     * @return collection of DomainObject, empty when there are no more entities
+     */
+    protected final Collection<E> selectPageWithFetchPlan(final String queryName, final String afterId, final int limit) {
+        final String mname = "selectPageWithFetchPlan";
+        Trace.entering(getCname(), mname, new Object[]{queryName, afterId, new Integer(limit)});
+
+        final Query query = createNamedQuery(queryName, "afterId", afterId == null ? "" : afterId);
+        query.setMaxResults(limit);
+        final List<E> entities = query.getResultList();
+
         Trace.exiting(getCname(), mname, new Integer(entities.size()));
         return entities;
     }
 
     /**
-     * This method inserts an entity into the database.
+     * This method inserts an entity into the database. The entity is not read
+     * beforehand : a duplicate is detected by the constraint violation raised
+     * when the INSERT statement is flushed.
      *
      * @param entity Domain entity to be inserted
      * @throws DuplicateKeyException is thrown when an identical entity is
@@ -221,29 +517,30 @@ public abstract class AbstractDataAccessObject<K, E> {
 
         // Sets the entity Id if necessary
         // e.g. if the @GeneratedValue strategy of the @Id column is not defined
-        /* 
-         * if ( entity.getId() == null )
-         entity.setId("" + getUniqueId());
-         */
+        assignId(entity);
+        final EntityManager em = getEntityManager();
+        beginTransaction();
         try {
-            findById((K) entity.getId());
+            em.persist(entity);
+            em.flush();
+            endTransaction();
+            invalidateQueryResults();
+        } catch (EntityExistsException e) {
+            rollbackTransaction();
             throw new DuplicateKeyException();
-        } catch (ObjectNotFoundException e) {
-            /* TODO - possible PersistenceException with hibernate:
-             * org.hibernate.PersistentObjectException: detached entity passed to persist: ...
-             * see https://forum.hibernate.org/viewtopic.php?p=2404032
-             */
-            if (entity.getId() == null) {
-                persist((E) entity);
-            } else {
-                merge((E) entity);
+        } catch (PersistenceException e) {
+            rollbackTransaction();
+            if (isUniqueViolation(e)) {
+                throw new DuplicateKeyException();
             }
+            throw e;
         }
-
     }
 
     /**
-     * This method updates an entity in the database.
+     * This method updates an entity in the database. The entity is not read
+     * beforehand : the UPDATE statement is flushed straight away and its
+     * version check tells whether the row still exists.
      *
      * @param entity Object to be updated in the database
      * @throws ObjectNotFoundException is thrown if the entity id not found in
@@ -253,12 +550,83 @@ public abstract class AbstractDataAccessObject<K, E> {
         final String mname = "update";
         Trace.entering(getCname(), mname, entity);
 
-        findById((K) entity.getId());
-        merge((E) entity);
+        final EntityManager em = getEntityManager();
+        beginTransaction();
+        try {
+            em.merge(entity);
+            em.flush();
+            endTransaction();
+            invalidateQueryResults();
+        } catch (OptimisticLockException e) {
+            rollbackTransaction();
+            throw new ObjectNotFoundException();
+        } catch (EntityNotFoundException e) {
+            rollbackTransaction();
+            throw new ObjectNotFoundException();
+        } catch (PersistenceException e) {
+            rollbackTransaction();
+            throw e;
+        }
+    }
+
+    /**
+     * This method inserts a collection of entities into the database in one
+     * transaction, using JDBC statement batching. A duplicate key makes the
+     * whole batch fail.
+     *
+     * @param entities Domain entities to be inserted
+     */
+    public final void insertAll(final Collection<E> entities) {
+        insertAll(entities, BATCH_SIZE);
+    }
+
+    /**
+     * This method inserts a collection of entities, the persistence context
+     * being flushed every batchSize entities.
+     *
+     * @param entities  Domain entities to be inserted
+     * @param batchSize number of entities written between two flushes, must be positive
+     */
+    public final void insertAll(final Collection<E> entities, final int batchSize) {
+        final String mname = "insertAll";
+        Trace.entering(getCname(), mname, new Integer(entities == null ? 0 : entities.size()));
+
+        writeAll(entities, false, batchSize);
+
+        Trace.exiting(getCname(), mname);
     }
 
     /**
-     * This method deletes an entity from the database.
+     * This method merges a collection of entities into the database in one
+     * transaction, using JDBC statement batching.
+     *
+     * @param entities Domain entities to be merged
+     */
+    public final void mergeAll(final Collection<E> entities) {
+        mergeAll(entities, BATCH_SIZE);
+    }
+
+    /**
+     * This method merges a collection of entities, the persistence context
+     * being flushed every batchSize entities.
+     *
+     * @param entities  Domain entities to be merged
+     * @param batchSize number of entities written between two flushes, must be positive
+     */
+    public final void mergeAll(final Collection<E> entities, final int batchSize) {
+        final String mname = "mergeAll";
+        Trace.entering(getCname(), mname, new Integer(entities == null ? 0 : entities.size()));
+
+        writeAll(entities, true, batchSize);
+
+        Trace.exiting(getCname(), mname);
+    }
+
+    /**
+     * This method deletes an entity from the database. The entity is not read
+     * beforehand : the DELETE statement is flushed on a reference to the entity
+     * and its row count tells whether the row still exists. The provider still
+     * reads the associations the removal cascades to.
      *
      * @param id identifier of the entity to be deleted
      * @throws ObjectNotFoundException is thrown if the entity id not found in
@@ -268,9 +636,258 @@ public abstract class AbstractDataAccessObject<K, E> {
         final String mname = "remove";
         Trace.entering(getCname(), mname, id);
 
-        E entity = findById((K) id);
-        merge(entity); // mandatory!
-        remove(entity);
+        if (id == null) {
+            throw new ObjectNotFoundException();
+        }
+        final EntityManager em = getEntityManager();
+        beginTransaction();
+        try {
+            em.remove(em.getReference(_entityClass, id));
+            em.flush();
+            endTransaction();
+            invalidateQueryResults();
+        } catch (EntityNotFoundException e) {
+            rollbackTransaction();
+            throw new ObjectNotFoundException();
+        } catch (OptimisticLockException e) {
+            rollbackTransaction();
+            throw new ObjectNotFoundException();
+        } catch (PersistenceException e) {
+            rollbackTransaction();
+            throw e;
+        }
+    }
+
+    /**
+     * This method runs a named query returning entities. For a cacheable entity,
+     * the identifiers of the result are kept in the QueryResultCache and, as
+     * long as no entity of this type is written, the next calls find the
+     * entities in the shared cache, the ones it no longer holds being read
+     * in one query.
+     *
+     * @param queryName name of the named query (e.g. Item.findAllInProduct)
+     * @param paramName name of the query parameter, null if there is none
+     * @param paramValue value of the query parameter
+     * @return the entities, possibly empty
+     */
+    protected final List<E> selectCached(final String queryName, final String paramName, final Object paramValue) {
+        if (!isCacheable()) {
+            return createNamedQuery(queryName, paramName, paramValue).getResultList();
+        }
+
+        final List ids = QueryResultCache.get(getShortClassName(), queryName, paramValue);
+        if (ids != null) {
+            final List<E> entities = selectByIds(ids);
+            if (entities != null) {
+                return entities;
+            }
+            // An entity has been deleted behind the cache
+            QueryResultCache.invalidate(getShortClassName());
+        }
+
+        // The result is dropped if an entity is written while the query runs
+        final long generation = QueryResultCache.getGeneration(getShortClassName());
+        final List<E> entities = createNamedQuery(queryName, paramName, paramValue).getResultList();
+        final List<String> resultIds = new ArrayList<String>(entities.size());
+        for (Iterator<E> iterator = entities.iterator(); iterator.hasNext();) {
+            resultIds.add(((DomainObject) iterator.next()).getId());
+        }
+        QueryResultCache.put(getShortClassName(), queryName, paramValue, generation, resultIds);
+        return entities;
+    }
+
+    /**
+     * This method runs a named query returning DTOs. For a cacheable entity, the
+     * DTOs are kept in the QueryResultCache as long as no entity of this type
+     * is written.
+     *
+     * @param queryName name of the named query (e.g. Item.findAllDTOInProduct)
+     * @param paramName name of the query parameter, null if there is none
+     * @param paramValue value of the query parameter
+     * @return the DTOs, possibly empty
+     */
+    protected final List selectDTOsCached(final String queryName, final String paramName, final Object paramValue) {
+        if (!isCacheable()) {
+            return createNamedQuery(queryName, paramName, paramValue).getResultList();
+        }
+
+        final List cached = QueryResultCache.get(getShortClassName(), queryName, paramValue);
+        if (cached != null) {
+            return cached;
+        }
+
+        // The result is dropped if an entity is written while the query runs
+        final long generation = QueryResultCache.getGeneration(getShortClassName());
+        final List dtos = createNamedQuery(queryName, paramName, paramValue).getResultList();
+        QueryResultCache.put(getShortClassName(), queryName, paramValue, generation, dtos);
+        return dtos;
+    }
+
+    /**
+     * This method removes the cached query results of the entity of this DAO.
+     * The DAO calls it after every write, the services call it when a write on
+     * another entity makes these results stale (e.g. the product name held by
+     * the item DTOs). The results are removed straight away, for the readers
+     * of the current transaction, and again once the transaction is over, for
+     * the readers that have read the former rows in the meantime.
+     */
+    public final void invalidateQueryResults() {
+        if (isCacheable()) {
+            final String entityName = getShortClassName();
+            QueryResultCache.invalidate(entityName);
+            TransactionCallbacks.afterCompletion(new Runnable() {
+                public void run() {
+                    QueryResultCache.invalidate(entityName);
+                }
+            });
+        }
+    }
+
+    /**
+     * This method finds entities by identifier, in the order of the identifiers.
+     * The entities in the shared cache are found there, the others are read
+     * with one query per MAX_IDS identifiers.
+     *
+     * @param ids identifiers of the entities
+     * @return the entities, null if one of them no longer exists
+     */
+    private List<E> selectByIds(final List ids) {
+        final EntityManager em = getEntityManager();
+        final Cache cache = em.getEntityManagerFactory().getCache();
+        final Map<Object, E> entitiesById = new HashMap<Object, E>();
+        final List<Object> missingIds = new ArrayList<Object>();
+        for (Iterator iterator = ids.iterator(); iterator.hasNext();) {
+            final Object id = iterator.next();
+            if (cache.contains(_entityClass, id)) {
+                CacheStatistics.recordHit(getShortClassName());
+                final E entity = em.find(_entityClass, id);
+                if (entity != null) {
+                    entitiesById.put(id, entity);
+                }
+            } else {
+                CacheStatistics.recordMiss(getShortClassName());
+                missingIds.add(id);
+            }
+        }
+
+        for (int from = 0; from < missingIds.size(); from += MAX_IDS) {
+            final Query query = em.createQuery("select e from " + getShortClassName() + " e where e._id in :ids");
+            query.setParameter("ids", missingIds.subList(from, Math.min(from + MAX_IDS, missingIds.size())));
+            for (Iterator<E> iterator = query.getResultList().iterator(); iterator.hasNext();) {
+                final E entity = iterator.next();
+                entitiesById.put(((DomainObject) entity).getId(), entity);
+            }
+        }
+
+        final List<E> entities = new ArrayList<E>(ids.size());
+        for (Iterator iterator = ids.iterator(); iterator.hasNext();) {
+            final E entity = entitiesById.get(iterator.next());
+            if (entity == null) {
+                return null;
+            }
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private Query createNamedQuery(final String queryName, final String paramName, final Object paramValue) {
+        final Query query = getEntityManager().createNamedQuery(queryName);
+        if (paramName != null) {
+            query.setParameter(paramName, paramValue);
+        }
+        return query;
+    }
+
+    /**
+     * This method removes an entity from the shared cache, so that the next
+     * lookup reads it again from the database. It has to be called when a
+     * write makes a cached entity stale, e.g. the collection of products of a
+     * category when a product is created. The entity is evicted once the
+     * current transaction is over : evicted before the commit, it could be
+     * read again in its former state by another transaction and cached back.
+     *
+     * @param id identifier of the entity to evict
+     */
+    public final void evict(final String id) {
+        final String mname = "evict";
+        Trace.entering(getCname(), mname, id);
+
+        if (id != null) {
+            final Cache cache = getEntityManager().getEntityManagerFactory().getCache();
+            TransactionCallbacks.afterCompletion(new Runnable() {
+                public void run() {
+                    cache.evict(_entityClass, id);
+                }
+            });
+        }
+    }
+
+    /**
+     * This method removes all the entities of this DAO from the shared cache,
+     * once the current transaction is over.
+     */
+    public final void evictAll() {
+        final String mname = "evictAll";
+        Trace.entering(getCname(), mname);
+
+        final Cache cache = getEntityManager().getEntityManagerFactory().getCache();
+        TransactionCallbacks.afterCompletion(new Runnable() {
+            public void run() {
+                cache.evict(_entityClass);
+            }
+        });
+    }
+
+    /**
+     * This method tells if the entities of this DAO are kept in the shared cache.
+     */
+    protected boolean isCacheable() {
+        if (_entityClass == null) {
+            return false;
+        }
+        final Cacheable cacheable = _entityClass.getAnnotation(Cacheable.class);
+        return cacheable != null && cacheable.value();
+    }
+
+    /**
+     * This method tells if a persistence failure was caused by a duplicate
+     * key, i.e. a unique constraint violation : SQL state 23505, or 23000 with
+     * the MySQL error 1062. The other integrity violations (foreign key, not
+     * null...) share the SQL state class 23 and are not duplicates.
+     */
+    protected static boolean isUniqueViolation(final Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                final String sqlState = ((SQLException) cause).getSQLState();
+                if (SQL_STATE_UNIQUE_VIOLATION.equals(sqlState)) {
+                    return true;
+                }
+                if (SQL_STATE_INTEGRITY_VIOLATION.equals(sqlState)
+                        && ((SQLException) cause).getErrorCode() == MYSQL_DUPLICATE_ENTRY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void checkBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+    }
+
+    /**
+     * This method releases the result set and the connection held by a provider
+     * cursor. The cursor class is not known at compile time, so its close method
+     * is looked up by reflection.
+     */
+    private void closeCursor(final Object cursor) {
+        try {
+            cursor.getClass().getMethod("close").invoke(cursor);
+        } catch (Exception e) {
+            Trace.throwing(getCname(), "closeCursor", e);
+        }
     }
 
     /**
@@ -293,8 +910,28 @@ public abstract class AbstractDataAccessObject<K, E> {
         return UniqueIdGenerator.getInstance().getUniqueId(domainClassName);
     }
 
+    /**
+     * This method gives an identifier to a new entity before it is persisted.
+     * It does nothing by default : the identifier comes from the
+     * &#64;TableGenerator of the entity. The DAOs of the entities numbered by
+     * the UniqueIdGenerator override it. The identifier can't be given by an
+     * entity listener, the EntityManager being off limits in lifecycle callbacks.
+     *
+     * @param entity entity about to be persisted
+     */
+    protected void assignId(final DomainObject entity) {
+    }
+
     protected abstract String getCounterName();
 
+    /**
+     * This method returns the entity class name without its package, which
+     * prefixes the named queries of the entity (e.g. Item.findAll).
+     */
+    protected String getShortClassName() {
+        return _entityClass.getName().substring(_entityClass.getName().lastIndexOf('.') + 1);
+    }
+
     protected String getCname() {
         return _cname;
     }
@@ -0,0 +1,94 @@
+package com.yaps.petstore.server.util.persistence;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class counts, for every cached entity, how many lookups by primary key
+ * were answered by the shared cache (hits) and how many had to go to the
+ * database (misses). The counters are shared by the whole process.
+ */
+public final class CacheStatistics {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // (entityName, counter) associations
+    private static final Map<String, AtomicLong> _hits = new ConcurrentHashMap<String, AtomicLong>();
+    private static final Map<String, AtomicLong> _misses = new ConcurrentHashMap<String, AtomicLong>();
+
+    private static final String HITS = ".hits";
+    private static final String MISSES = ".misses";
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private CacheStatistics() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    public static void recordHit(final String entityName) {
+        getCounter(_hits, entityName).incrementAndGet();
+    }
+
+    public static void recordMiss(final String entityName) {
+        getCounter(_misses, entityName).incrementAndGet();
+    }
+
+    public static long getHits(final String entityName) {
+        return getCounter(_hits, entityName).get();
+    }
+
+    public static long getMisses(final String entityName) {
+        return getCounter(_misses, entityName).get();
+    }
+
+    /**
+     * This method returns a snapshot of all the counters, sorted by name
+     * (e.g. Item.hits, Item.misses, Product.hits...).
+     *
+     * @return (counterName, value) associations
+     */
+    public static Map<String, Long> getStatistics() {
+        final Map<String, Long> statistics = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : _hits.entrySet()) {
+            statistics.put(entry.getKey() + HITS, new Long(entry.getValue().get()));
+        }
+        for (Map.Entry<String, AtomicLong> entry : _misses.entrySet()) {
+            statistics.put(entry.getKey() + MISSES, new Long(entry.getValue().get()));
+        }
+        return statistics;
+    }
+
+    /**
+     * This method sets all the counters back to zero.
+     */
+    public static void reset() {
+        _hits.clear();
+        _misses.clear();
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private static AtomicLong getCounter(final Map<String, AtomicLong> counters, final String entityName) {
+        AtomicLong counter = counters.get(entityName);
+        if (counter == null) {
+            synchronized (counters) {
+                counter = counters.get(entityName);
+                if (counter == null) {
+                    counter = new AtomicLong();
+                    counters.put(entityName, counter);
+                }
+            }
+        }
+        return counter;
+    }
+}
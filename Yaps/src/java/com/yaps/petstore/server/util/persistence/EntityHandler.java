@@ -0,0 +1,18 @@
+package com.yaps.petstore.server.util.persistence;
+
+/**
+ * This interface is implemented by the classes that receive, one by one, the
+ * entities streamed by {@link AbstractDataAccessObject#exportAll(EntityHandler)}.
+ * An entity is detached soon after it has been handled : the handler must copy
+ * what it needs and not keep a reference to it.
+ */
+public interface EntityHandler<E> {
+
+    /**
+     * This method is called once for every entity read from the database.
+     *
+     * @param entity the entity that has just been read
+     * @throws Exception any failure stops the export
+     */
+    void handle(E entity) throws Exception;
+}
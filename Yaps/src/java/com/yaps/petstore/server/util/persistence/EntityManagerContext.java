@@ -0,0 +1,56 @@
+package com.yaps.petstore.server.util.persistence;
+
+import javax.persistence.EntityManager;
+
+/**
+ * This class binds the EntityManager of the current transaction to the calling
+ * thread. DAOs are shared between bean instances, so they must not keep the
+ * EntityManager of one particular bean : they ask this class for the one bound
+ * to the thread that is running the business method.
+ *
+ * @see com.yaps.petstore.server.service.EntityManagerInterceptor
+ */
+public final class EntityManagerContext {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private static final ThreadLocal<EntityManager> _current = new ThreadLocal<EntityManager>();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private EntityManagerContext() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the EntityManager bound to the calling thread.
+     *
+     * @return the bound EntityManager or null if there is none
+     */
+    public static EntityManager getCurrent() {
+        return _current.get();
+    }
+
+    /**
+     * This method binds an EntityManager to the calling thread.
+     *
+     * @param em EntityManager to bind, null unbinds the current one
+     * @return the EntityManager that was bound before, so that nested calls can restore it
+     */
+    public static EntityManager bind(final EntityManager em) {
+        final EntityManager previous = _current.get();
+        if (em == null) {
+            _current.remove();
+        } else {
+            _current.set(em);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,92 @@
+package com.yaps.petstore.server.util.persistence;
+
+import com.yaps.petstore.common.logging.Trace;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+/**
+ * This class holds one EntityManagerFactory per persistence unit for the whole
+ * process. Factories are created lazily, the first time a persistence unit is
+ * asked for, so the metadata bootstrap and the connection pool of a unit are
+ * shared by every DAO instead of being rebuilt each time a DAO is created.
+ */
+public final class EntityManagerFactoryRegistry {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // (persistenceUnitName, factory) associations
+    private static final Map<String, EntityManagerFactory> _factories = new ConcurrentHashMap<String, EntityManagerFactory>();
+
+    // Used for logging
+    private static final String _cname = EntityManagerFactoryRegistry.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private EntityManagerFactoryRegistry() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the shared factory of a persistence unit, creating it
+     * on first use.
+     *
+     * @param persistenceUnitName name of the persistence unit (e.g. petstorePU)
+     * @return the EntityManagerFactory of this persistence unit
+     */
+    public static EntityManagerFactory getEntityManagerFactory(final String persistenceUnitName) {
+        EntityManagerFactory emf = _factories.get(persistenceUnitName);
+        if (emf == null) {
+            synchronized (_factories) {
+                emf = _factories.get(persistenceUnitName);
+                if (emf == null) {
+                    final String mname = "getEntityManagerFactory";
+                    Trace.entering(_cname, mname, persistenceUnitName);
+                    emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+                    _factories.put(persistenceUnitName, emf);
+                    Trace.exiting(_cname, mname, emf);
+                }
+            }
+        }
+        return emf;
+    }
+
+    /**
+     * This method returns a new EntityManager created by the shared factory of
+     * a persistence unit.
+     *
+     * @param persistenceUnitName name of the persistence unit (e.g. petstorePU)
+     * @return a new EntityManager
+     */
+    public static EntityManager createEntityManager(final String persistenceUnitName) {
+        return getEntityManagerFactory(persistenceUnitName).createEntityManager();
+    }
+
+    /**
+     * This method closes every factory and empties the registry. It is called
+     * when the application is undeployed (see EntityManagerFactoryCloser).
+     */
+    public static void closeAll() {
+        synchronized (_factories) {
+            for (Iterator<EntityManagerFactory> iterator = _factories.values().iterator(); iterator.hasNext();) {
+                final EntityManagerFactory emf = iterator.next();
+                if (emf.isOpen()) {
+                    emf.close();
+                }
+                iterator.remove();
+            }
+        }
+    }
+}
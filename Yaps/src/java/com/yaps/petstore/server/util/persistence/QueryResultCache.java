@@ -0,0 +1,177 @@
+package com.yaps.petstore.server.util.persistence;
+
+import com.yaps.petstore.common.logging.Trace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps the results of the named queries, keyed by entity, query
+ * name and parameter value. For the queries returning entities, only the
+ * identifiers are kept : the entities themselves are then found in the shared
+ * cache. The cache is bounded and evicts the least recently used result first.
+ * All the results of an entity are invalidated as soon as one of its entities
+ * is written.
+ * <p/>
+ * Every entity has a generation, increased by each invalidation. A reader
+ * reads the generation before running its query and gives it back to put :
+ * the result is dropped if the entity has been invalidated in the meantime,
+ * as it may hold the rows from before the write.
+ */
+public final class QueryResultCache {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    private static int _maxSize = DEFAULT_MAX_SIZE;
+
+    // (entityName:queryName:parameter, rows) associations in access order
+    private static final Map<String, List> _results = new LinkedHashMap<String, List>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(final Map.Entry<String, List> eldest) {
+            return size() > _maxSize;
+        }
+    };
+
+    // (entityName, generation) associations, guarded by _results
+    private static final Map<String, Long> _generations = new HashMap<String, Long>();
+    // Increased by invalidateAll, which changes the generation of every entity
+    private static long _epoch = 0;
+
+    private static final char SEPARATOR = ':';
+
+    // Used for logging
+    private static final String _cname = QueryResultCache.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private QueryResultCache() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the rows of a query result.
+     *
+     * @param entityName name of the entity the query depends on (e.g. Item)
+     * @param queryName  name of the named query (e.g. Item.findAllInProduct)
+     * @param parameter  value of the query parameter, null if there is none
+     * @return a copy of the rows or null if the result is not in the cache
+     */
+    public static List get(final String entityName, final String queryName, final Object parameter) {
+        final List rows;
+        synchronized (_results) {
+            rows = _results.get(getKey(entityName, queryName, parameter));
+        }
+        return (rows == null) ? null : new ArrayList(rows);
+    }
+
+    /**
+     * This method returns the generation of an entity, to be read before
+     * running the query whose result is then given to put.
+     *
+     * @param entityName name of the entity (e.g. Item)
+     * @return the number of times the results of the entity have been invalidated
+     */
+    public static long getGeneration(final String entityName) {
+        synchronized (_results) {
+            final Long generation = _generations.get(entityName);
+            return _epoch + ((generation == null) ? 0 : generation.longValue());
+        }
+    }
+
+    /**
+     * This method puts the rows of a query result in the cache, unless the
+     * results of the entity have been invalidated since the query started.
+     *
+     * @param entityName name of the entity the query depends on (e.g. Item)
+     * @param queryName  name of the named query (e.g. Item.findAllInProduct)
+     * @param parameter  value of the query parameter, null if there is none
+     * @param generation generation of the entity read before running the query
+     * @param rows       identifiers or DTOs returned by the query
+     * @return false if the result has been dropped
+     */
+    public static boolean put(final String entityName, final String queryName, final Object parameter, final long generation, final List rows) {
+        final List copy = new ArrayList(rows);
+        synchronized (_results) {
+            if (generation != getGeneration(entityName)) {
+                Trace.finest(_cname, "put", "Stale result dropped " + getKey(entityName, queryName, parameter));
+                return false;
+            }
+            _results.put(getKey(entityName, queryName, parameter), copy);
+            return true;
+        }
+    }
+
+    /**
+     * This method removes all the results that depend on an entity. It has to
+     * be called every time an entity of this type is created, updated or deleted.
+     *
+     * @param entityName name of the entity (e.g. Item)
+     */
+    public static void invalidate(final String entityName) {
+        final String mname = "invalidate";
+        Trace.entering(_cname, mname, entityName);
+
+        final String prefix = entityName + SEPARATOR;
+        synchronized (_results) {
+            final Long generation = _generations.get(entityName);
+            _generations.put(entityName, new Long((generation == null) ? 1 : generation.longValue() + 1));
+            for (Iterator<String> iterator = _results.keySet().iterator(); iterator.hasNext();) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * This method empties the cache.
+     */
+    public static void invalidateAll() {
+        synchronized (_results) {
+            _results.clear();
+            _epoch++;
+        }
+    }
+
+    public static int getSize() {
+        synchronized (_results) {
+            return _results.size();
+        }
+    }
+
+    public static int getMaxSize() {
+        return _maxSize;
+    }
+
+    public static void setMaxSize(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        synchronized (_results) {
+            _maxSize = maxSize;
+            // Evicts the least recently used results that no longer fit
+            for (Iterator<String> iterator = _results.keySet().iterator(); _results.size() > _maxSize && iterator.hasNext();) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private static String getKey(final String entityName, final String queryName, final Object parameter) {
+        return entityName + SEPARATOR + queryName + SEPARATOR + parameter;
+    }
+}
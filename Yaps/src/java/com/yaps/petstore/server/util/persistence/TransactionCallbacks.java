@@ -0,0 +1,108 @@
+package com.yaps.petstore.server.util.persistence;
+
+import com.yaps.petstore.common.logging.Trace;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * This class runs an action once the container transaction of the current
+ * call is over, e.g. to evict a cached entity or to update the search index
+ * only when the changes are visible to the other transactions. Outside of a
+ * container transaction (i.e. when the DAOs demarcate their own resource-local
+ * transactions, which are committed by the time they return) the action is run
+ * straight away.
+ */
+public final class TransactionCallbacks {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private static final String REGISTRY_NAME = "java:comp/TransactionSynchronizationRegistry";
+
+    // Used for logging
+    private static final String _cname = TransactionCallbacks.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private TransactionCallbacks() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method runs an action once the current transaction has committed.
+     * The action is not run if the transaction rolls back.
+     *
+     * @param action action to run
+     */
+    public static void afterCommit(final Runnable action) {
+        register(action, true);
+    }
+
+    /**
+     * This method runs an action once the current transaction is over, whether
+     * it has committed or rolled back.
+     *
+     * @param action action to run
+     */
+    public static void afterCompletion(final Runnable action) {
+        register(action, false);
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private static void register(final Runnable action, final boolean onCommitOnly) {
+        final TransactionSynchronizationRegistry registry = getRegistry();
+        if (registry == null) {
+            action.run();
+            return;
+        }
+        final int status = registry.getTransactionStatus();
+        if (status == Status.STATUS_NO_TRANSACTION) {
+            action.run();
+            return;
+        }
+        if (status == Status.STATUS_MARKED_ROLLBACK && onCommitOnly) {
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            public void beforeCompletion() {
+            }
+
+            public void afterCompletion(final int status) {
+                if (onCommitOnly && status != Status.STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    // The transaction is over, the failure can only be logged
+                    Trace.throwing(_cname, "afterCompletion", e);
+                }
+            }
+        });
+    }
+
+    // Returns the registry of the container, null when the call is not in a container transaction
+    private static TransactionSynchronizationRegistry getRegistry() {
+        if (EntityManagerContext.getCurrent() == null) {
+            return null;
+        }
+        try {
+            return (TransactionSynchronizationRegistry) new InitialContext().lookup(REGISTRY_NAME);
+        } catch (NamingException e) {
+            Trace.throwing(_cname, "getRegistry", e);
+            return null;
+        }
+    }
+}
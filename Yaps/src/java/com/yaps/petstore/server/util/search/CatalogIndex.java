@@ -0,0 +1,890 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.common.dto.FacetFilterDTO;
+import com.yaps.petstore.common.dto.FacetResultDTO;
+import com.yaps.petstore.common.dto.ItemDTO;
+import com.yaps.petstore.common.logging.Trace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is an in-memory inverted index of the items of the catalog. An
+ * item is found by the terms of its id, its name, the name and description of
+ * its product and the name of its category. The index is built once from the
+ * database and then kept up to date by the CatalogService, each node of a
+ * cluster having its own index.
+ * <p/>
+ * A query is made of words : an item must have all of them (AND). Groups of
+ * words separated by OR (or |) give the items matching any group.
+ * <p/>
+ * The items found are ranked by relevance with BM25 : a word weighs more when
+ * it is rare in the catalog, appears several times or in a short text. The
+ * texts are weighted by field, a word in the item name counting three times
+ * as much as a word in the product description. Only the requested page of
+ * the ranking is kept, in a bounded heap, so a broad query costs O(n log k)
+ * for a page of k items instead of sorting all the matches.
+ * <p/>
+ * The words of the item, product and category names are also used to
+ * complete what is typed in the search box, see PrefixSuggester.
+ * <p/>
+ * When no item has all the words of a query, the misspelled words (i.e. the
+ * ones of no item) are replaced by the closest words of the item and product
+ * names, see TrigramIndex. This second chance is bounded by a time budget,
+ * read in milliseconds from the system property petstore.search.fuzzyBudget.
+ * <p/>
+ * The faceted browse of the items by category, product and unit cost is
+ * answered by a FacetIndex built from the same items.
+ *
+ * @see TextAnalyzer
+ */
+public final class CatalogIndex {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private static final String OR = "OR";
+    private static final String PIPE = "|";
+
+    // Indexed fields of an item and their weights
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int PRODUCT_NAME = 2;
+    private static final int PRODUCT_DESCRIPTION = 3;
+    private static final int CATEGORY_NAME = 4;
+    private static final double[] BOOSTS = {3.0, 3.0, 2.0, 1.0, 1.5};
+
+    // BM25 parameters : saturation of the term frequency and normalization by the field length
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // (itemId, indexed item) associations
+    private static final Map<String, IndexedItem> _items = new HashMap<String, IndexedItem>();
+    // (term, sorted ids of the items having this term) associations
+    private static final Map<String, TreeSet<String>> _postings = new HashMap<String, TreeSet<String>>();
+
+    private static final ReadWriteLock _lock = new ReentrantReadWriteLock();
+    private static boolean _built = false;
+    // Total number of terms of every field, to get the average length of a field
+    private static final long[] _fieldLengths = new long[BOOSTS.length];
+    // Number of changes made to the catalog, built or not
+    private static long _modCount = 0;
+
+    // Number of terms suggested for a prefix
+    public static final int MAX_SUGGESTIONS = 10;
+    // Suggestions of the catalog, built again on first use after a change
+    private static final Derived<Map<String, Integer>, PrefixSuggester> _suggester = new Derived<Map<String, Integer>, PrefixSuggester>() {
+        Map<String, Integer> read() {
+            return getFrequencies(new int[]{NAME, PRODUCT_NAME, CATEGORY_NAME});
+        }
+
+        PrefixSuggester build(final Map<String, Integer> frequencies) {
+            return new PrefixSuggester(frequencies, MAX_SUGGESTIONS);
+        }
+    };
+
+    // Words of the item and product names, to correct misspelled words
+    private static final Derived<Set<String>, TrigramIndex> _trigramIndex = new Derived<Set<String>, TrigramIndex>() {
+        Set<String> read() {
+            return getFrequencies(new int[]{NAME, PRODUCT_NAME}).keySet();
+        }
+
+        TrigramIndex build(final Set<String> terms) {
+            return new TrigramIndex(terms);
+        }
+    };
+
+    // Bitsets of the items per category, product and unit cost
+    private static final Derived<Object[], FacetIndex> _facetIndex = new Derived<Object[], FacetIndex>() {
+        Object[] read() {
+            final List<ItemDTO> itemsDTO = new ArrayList<ItemDTO>(_items.size());
+            final Map<String, String> categoryIds = new HashMap<String, String>();
+            for (Iterator<IndexedItem> iterator = _items.values().iterator(); iterator.hasNext();) {
+                final IndexedItem item = iterator.next();
+                itemsDTO.add(item.getItemDTO());
+                categoryIds.put(item.getItemDTO().getId(), item.getCategoryId());
+            }
+            return new Object[]{itemsDTO, categoryIds};
+        }
+
+        FacetIndex build(final Object[] items) {
+            return new FacetIndex((List<ItemDTO>) items[0], (Map<String, String>) items[1]);
+        }
+    };
+    // Shorter words are not corrected, too many words being close to them
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final long FUZZY_BUDGET = Long.getLong("petstore.search.fuzzyBudget", 20).longValue() * 1000000L;
+
+    // Used for logging
+    private static final String _cname = CatalogIndex.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private CatalogIndex() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method fills the index with all the items of the catalog. It is
+     * given up if the catalog has changed since getModCount was called, the
+     * rows being then out of date.
+     *
+     * @param rows             rows made of an ItemDTO, the category id and the category name
+     * @param expectedModCount value of getModCount before the rows were read
+     * @return true if the index has been built
+     */
+    public static boolean build(final Collection<Object[]> rows, final long expectedModCount) {
+        final String mname = "build";
+        Trace.entering(_cname, mname, new Integer(rows.size()));
+
+        _lock.writeLock().lock();
+        try {
+            if (_modCount != expectedModCount) {
+                return false;
+            }
+            fill(rows);
+            return true;
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method fills the index with all the items of the catalog, the rows
+     * being read while the changes to the index are held off. It is the last
+     * resort when build(rows, expectedModCount) keeps being given up because
+     * the catalog changes all the time : searches and changes wait for the
+     * rows to be read.
+     *
+     * @param source reads the rows made of an ItemDTO, the category id and the category name
+     */
+    public static void build(final RowSource source) {
+        final String mname = "build";
+        Trace.entering(_cname, mname);
+
+        _lock.writeLock().lock();
+        try {
+            if (!_built) {
+                fill(source.getRows());
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns all the items matching a query, the most relevant first.
+     *
+     * @param query words to look for
+     * @return the DTOs of the matching items, empty if there is none
+     */
+    public static List<ItemDTO> search(final String query) {
+        return search(query, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method returns one page of the items matching a query, the most
+     * relevant first. Items with the same score are sorted by id.
+     *
+     * @param query  words to look for
+     * @param offset number of items to skip
+     * @param limit  maximum number of items to return
+     * @return the DTOs of the matching items, empty if there is none
+     */
+    public static List<ItemDTO> search(final String query, final int offset, final int limit) {
+        final String mname = "search";
+        Trace.entering(_cname, mname, new Object[]{query, new Integer(offset), new Integer(limit)});
+
+        final List<ItemDTO> itemsDTO = new ArrayList<ItemDTO>();
+        // Taken before the read lock : the writers must never wait for the trigram index to be built again
+        final TrigramIndex trigramIndex = getTrigramIndex();
+        _lock.readLock().lock();
+        try {
+            final List<List<String>> groups = parse(query);
+            final Set<String> itemIds = new HashSet<String>();
+            final Set<String> terms = new HashSet<String>();
+            for (Iterator<List<String>> iterator = groups.iterator(); iterator.hasNext();) {
+                final List<String> group = iterator.next();
+                itemIds.addAll(findAll(group));
+                terms.addAll(group);
+            }
+            if (itemIds.isEmpty()) {
+                // No item has all the words, some of them may be misspelled
+                findAllFuzzy(trigramIndex, groups, itemIds, terms);
+            }
+
+            // Keeps the offset + limit best items, the worst of them on top of the heap
+            final int size = (int) Math.min((long) offset + limit, itemIds.size());
+            if (size == 0) {
+                return itemsDTO;
+            }
+            final Comparator<ScoredItem> worstFirst = Collections.reverseOrder(BEST_FIRST);
+            final PriorityQueue<ScoredItem> best = new PriorityQueue<ScoredItem>(size, worstFirst);
+            for (Iterator<String> iterator = itemIds.iterator(); iterator.hasNext();) {
+                final IndexedItem item = _items.get(iterator.next());
+                final ScoredItem scoredItem = new ScoredItem(item, score(item, terms));
+                if (best.size() < size) {
+                    best.add(scoredItem);
+                } else if (worstFirst.compare(scoredItem, best.peek()) > 0) {
+                    best.poll();
+                    best.add(scoredItem);
+                }
+            }
+
+            // Empties the heap from the worst item to the best one
+            final ScoredItem[] ranking = new ScoredItem[best.size()];
+            for (int i = ranking.length - 1; i >= 0; i--) {
+                ranking[i] = best.poll();
+            }
+            for (int i = offset; i < ranking.length; i++) {
+                itemsDTO.add(ranking[i].getItem().getItemDTO());
+            }
+        } finally {
+            _lock.readLock().unlock();
+        }
+
+        Trace.exiting(_cname, mname, new Integer(itemsDTO.size()));
+        return itemsDTO;
+    }
+
+    /**
+     * This method returns a query in a canonical form, so that two queries
+     * finding the same items give the same string (e.g. "Poodle  OR dog" and
+     * "poodle | DOG" both give "poodle | dog").
+     *
+     * @param query words to look for
+     * @return the terms of the query, the groups being separated by " | "
+     */
+    public static String normalize(final String query) {
+        final StringBuffer normalized = new StringBuffer();
+        for (Iterator<List<String>> groups = parse(query).iterator(); groups.hasNext();) {
+            for (Iterator<String> terms = groups.next().iterator(); terms.hasNext();) {
+                normalized.append(terms.next());
+                if (terms.hasNext()) {
+                    normalized.append(' ');
+                }
+            }
+            if (groups.hasNext()) {
+                normalized.append(' ').append(PIPE).append(' ');
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * This method completes the beginning of a word with the most frequent
+     * words of the item, product and category names.
+     *
+     * @param prefix beginning of a word
+     * @param limit  maximum number of words to return, at most MAX_SUGGESTIONS
+     * @return the words, the most frequent first
+     */
+    public static List<String> suggest(final String prefix, final int limit) {
+        return getSuggester().suggest(prefix, limit);
+    }
+
+    /**
+     * This method returns the items of a category, a product and a range of
+     * unit costs, with the number of items per category, product and range.
+     *
+     * @param filter the filters, each of them optional, and the page to return
+     * @return one page of items, in the order of their ids, and the counts
+     */
+    public static FacetResultDTO browse(final FacetFilterDTO filter) {
+        return getFacetIndex().browse(filter);
+    }
+
+    /**
+     * This method adds an item to the index or replaces it.
+     *
+     * @param itemDTO      the item with its product
+     * @param categoryId   id of the category of the product
+     * @param categoryName name of the category of the product
+     */
+    public static void put(final ItemDTO itemDTO, final String categoryId, final String categoryName) {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            if (_built) {
+                remove(_items.get(itemDTO.getId()));
+                add(new IndexedItem(itemDTO, categoryId, categoryName));
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method removes an item from the index.
+     *
+     * @param itemId id of the item
+     */
+    public static void removeItem(final String itemId) {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            remove(_items.get(itemId));
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method indexes again the items of a product that has been updated.
+     *
+     * @param productId          id of the product
+     * @param productName        new name of the product
+     * @param productDescription new description of the product
+     * @param categoryId         id of the new category of the product
+     * @param categoryName       name of the new category of the product
+     */
+    public static void updateProduct(final String productId, final String productName, final String productDescription, final String categoryId, final String categoryName) {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            for (Iterator<IndexedItem> iterator = findByProduct(productId).iterator(); iterator.hasNext();) {
+                final ItemDTO old = iterator.next().getItemDTO();
+                put(new ItemDTO(old.getId(), old.getName(), old.getUnitCost(), old.getImagePath(), productId, productName, productDescription), categoryId, categoryName);
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method removes the items of a product that has been deleted.
+     *
+     * @param productId id of the product
+     */
+    public static void removeProduct(final String productId) {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            for (Iterator<IndexedItem> iterator = findByProduct(productId).iterator(); iterator.hasNext();) {
+                remove(iterator.next());
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method indexes again the items of a category that has been renamed.
+     *
+     * @param categoryId   id of the category
+     * @param categoryName new name of the category
+     */
+    public static void updateCategory(final String categoryId, final String categoryName) {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            for (Iterator<IndexedItem> iterator = findByCategory(categoryId).iterator(); iterator.hasNext();) {
+                put(iterator.next().getItemDTO(), categoryId, categoryName);
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method removes the items of a category that has been deleted.
+     *
+     * @param categoryId id of the category
+     */
+    public static void removeCategory(final String categoryId) {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            for (Iterator<IndexedItem> iterator = findByCategory(categoryId).iterator(); iterator.hasNext();) {
+                remove(iterator.next());
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method empties the index, which will be built again on next use.
+     */
+    public static void clear() {
+        _lock.writeLock().lock();
+        try {
+            _modCount++;
+            clearItems();
+            _built = false;
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    public static boolean isBuilt() {
+        _lock.readLock().lock();
+        try {
+            return _built;
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    public static long getModCount() {
+        _lock.readLock().lock();
+        try {
+            return _modCount;
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    public static int getSize() {
+        _lock.readLock().lock();
+        try {
+            return _items.size();
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    // Replaces the items of the index by the ones of the rows, under the write lock
+    private static void fill(final Collection<Object[]> rows) {
+        clearItems();
+        for (Iterator<Object[]> iterator = rows.iterator(); iterator.hasNext();) {
+            final Object[] row = iterator.next();
+            add(new IndexedItem((ItemDTO) row[0], (String) row[1], (String) row[2]));
+        }
+        _built = true;
+    }
+
+    // Cuts the query into groups of terms, the groups being separated by OR
+    private static List<List<String>> parse(final String query) {
+        final List<List<String>> groups = new ArrayList<List<String>>();
+        if (query == null) {
+            return groups;
+        }
+        List<String> group = new ArrayList<String>();
+        final String[] words = query.trim().split("\\s+");
+        for (int i = 0; i < words.length; i++) {
+            if (OR.equals(words[i]) || PIPE.equals(words[i])) {
+                if (!group.isEmpty()) {
+                    groups.add(group);
+                }
+                group = new ArrayList<String>();
+            } else {
+                group.addAll(TextAnalyzer.analyze(words[i]));
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    // Returns the ids of the items having all the terms
+    private static Set<String> findAll(final List<String> terms) {
+        // Starts with the rarest term so that the intersection only gets smaller
+        TreeSet<String> rarest = null;
+        for (Iterator<String> iterator = terms.iterator(); iterator.hasNext();) {
+            final TreeSet<String> itemIds = _postings.get(iterator.next());
+            if (itemIds == null) {
+                return new HashSet<String>();
+            }
+            if (rarest == null || itemIds.size() < rarest.size()) {
+                rarest = itemIds;
+            }
+        }
+
+        final Set<String> result = new TreeSet<String>(rarest);
+        for (Iterator<String> iterator = terms.iterator(); iterator.hasNext() && !result.isEmpty();) {
+            final TreeSet<String> itemIds = _postings.get(iterator.next());
+            if (itemIds != rarest) {
+                result.retainAll(itemIds);
+            }
+        }
+        return result;
+    }
+
+    // BM25F : the frequencies of a term in the fields are weighted and normalized before being saturated
+    private static double score(final IndexedItem item, final Set<String> terms) {
+        final double count = _items.size();
+        double score = 0;
+        for (Iterator<String> iterator = terms.iterator(); iterator.hasNext();) {
+            final String term = iterator.next();
+            final int[] frequencies = item.getFrequencies(term);
+            if (frequencies == null) {
+                continue;
+            }
+            double frequency = 0;
+            for (int field = 0; field < BOOSTS.length; field++) {
+                if (frequencies[field] > 0) {
+                    final double averageLength = _fieldLengths[field] / count;
+                    final double norm = 1 - B + B * item.getLength(field) / averageLength;
+                    frequency += BOOSTS[field] * frequencies[field] / norm;
+                }
+            }
+            final double documentCount = _postings.get(term).size();
+            final double idf = Math.log(1 + (count - documentCount + 0.5) / (documentCount + 0.5));
+            score += idf * frequency / (K1 + frequency);
+        }
+        return score;
+    }
+
+    // Replaces the unknown words of every group by the closest known ones, and adds the items matching them
+    private static void findAllFuzzy(final TrigramIndex trigramIndex, final List<List<String>> groups, final Set<String> itemIds, final Set<String> terms) {
+        final String mname = "findAllFuzzy";
+        final long deadline = System.nanoTime() + FUZZY_BUDGET;
+
+        for (Iterator<List<String>> groupIterator = groups.iterator(); groupIterator.hasNext();) {
+            // Items must have one of the alternatives of every word
+            final List<List<String>> alternatives = new ArrayList<List<String>>();
+            for (Iterator<String> iterator = groupIterator.next().iterator(); iterator.hasNext();) {
+                final String term = iterator.next();
+                List<String> closest = new ArrayList<String>();
+                if (_postings.containsKey(term)) {
+                    closest.add(term);
+                } else if (term.length() >= MIN_FUZZY_LENGTH) {
+                    // One typo in a short word, two in a longer one
+                    closest = trigramIndex.findClosest(term, (term.length() < 8) ? 1 : 2, deadline);
+                    Trace.finest(_cname, mname, term + " -> " + closest);
+                }
+                if (closest.isEmpty()) {
+                    alternatives.clear();
+                    break;
+                }
+                alternatives.add(closest);
+            }
+            if (!alternatives.isEmpty()) {
+                final Set<String> matches = findAllAlternatives(alternatives);
+                if (!matches.isEmpty()) {
+                    itemIds.addAll(matches);
+                    for (Iterator<List<String>> iterator = alternatives.iterator(); iterator.hasNext();) {
+                        terms.addAll(iterator.next());
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns the ids of the items having, for every word, one of its alternatives
+    private static Set<String> findAllAlternatives(final List<List<String>> alternatives) {
+        Set<String> result = null;
+        for (Iterator<List<String>> iterator = alternatives.iterator(); iterator.hasNext();) {
+            final Set<String> itemIds = new HashSet<String>();
+            for (Iterator<String> terms = iterator.next().iterator(); terms.hasNext();) {
+                // The trigram index may be a snapshot of the catalog before the last change
+                final TreeSet<String> postings = _postings.get(terms.next());
+                if (postings != null) {
+                    itemIds.addAll(postings);
+                }
+            }
+            if (result == null) {
+                result = itemIds;
+            } else {
+                result.retainAll(itemIds);
+            }
+        }
+        return result;
+    }
+
+    private static TrigramIndex getTrigramIndex() {
+        return _trigramIndex.get();
+    }
+
+    private static FacetIndex getFacetIndex() {
+        return _facetIndex.get();
+    }
+
+    private static PrefixSuggester getSuggester() {
+        return _suggester.get();
+    }
+
+    // Returns the number of items having each term in one of the given fields
+    private static Map<String, Integer> getFrequencies(final int[] fields) {
+        final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (Iterator<IndexedItem> items = _items.values().iterator(); items.hasNext();) {
+            final IndexedItem item = items.next();
+            for (Iterator<String> terms = item.getTerms().iterator(); terms.hasNext();) {
+                final String term = terms.next();
+                final int[] fieldFrequencies = item.getFrequencies(term);
+                int fieldFrequency = 0;
+                for (int i = 0; i < fields.length; i++) {
+                    fieldFrequency += fieldFrequencies[fields[i]];
+                }
+                if (fieldFrequency > 0) {
+                    final Integer frequency = frequencies.get(term);
+                    frequencies.put(term, new Integer((frequency == null) ? 1 : frequency.intValue() + 1));
+                }
+            }
+        }
+        return frequencies;
+    }
+
+    private static void clearItems() {
+        _items.clear();
+        _postings.clear();
+        for (int field = 0; field < BOOSTS.length; field++) {
+            _fieldLengths[field] = 0;
+        }
+    }
+
+    private static void add(final IndexedItem item) {
+        _items.put(item.getItemDTO().getId(), item);
+        for (int field = 0; field < BOOSTS.length; field++) {
+            _fieldLengths[field] += item.getLength(field);
+        }
+        for (Iterator<String> iterator = item.getTerms().iterator(); iterator.hasNext();) {
+            final String term = iterator.next();
+            TreeSet<String> itemIds = _postings.get(term);
+            if (itemIds == null) {
+                itemIds = new TreeSet<String>();
+                _postings.put(term, itemIds);
+            }
+            itemIds.add(item.getItemDTO().getId());
+        }
+    }
+
+    private static void remove(final IndexedItem item) {
+        if (item == null) {
+            return;
+        }
+        final String itemId = item.getItemDTO().getId();
+        _items.remove(itemId);
+        for (int field = 0; field < BOOSTS.length; field++) {
+            _fieldLengths[field] -= item.getLength(field);
+        }
+        for (Iterator<String> iterator = item.getTerms().iterator(); iterator.hasNext();) {
+            final String term = iterator.next();
+            final TreeSet<String> itemIds = _postings.get(term);
+            itemIds.remove(itemId);
+            if (itemIds.isEmpty()) {
+                _postings.remove(term);
+            }
+        }
+    }
+
+    private static List<IndexedItem> findByProduct(final String productId) {
+        final List<IndexedItem> items = new ArrayList<IndexedItem>();
+        for (Iterator<IndexedItem> iterator = _items.values().iterator(); iterator.hasNext();) {
+            final IndexedItem item = iterator.next();
+            if (productId.equals(item.getItemDTO().getProductId())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static List<IndexedItem> findByCategory(final String categoryId) {
+        final List<IndexedItem> items = new ArrayList<IndexedItem>();
+        for (Iterator<IndexedItem> iterator = _items.values().iterator(); iterator.hasNext();) {
+            final IndexedItem item = iterator.next();
+            if (categoryId.equals(item.getCategoryId())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    // ======================================
+    // =            Inner classes           =
+    // ======================================
+    /**
+     * A structure derived from the items of the index, e.g. the suggester.
+     * After a change of the catalog it is built again on first use by one
+     * caller, outside of the lock of the index : the items it needs are
+     * copied under the read lock, then the structure is built and published.
+     * Meanwhile the other callers keep on using the previous snapshot, they
+     * only wait when there is none yet.
+     *
+     * @param <I> the items copied from the index
+     * @param <T> the derived structure
+     */
+    private abstract static class Derived<I, T> {
+
+        // Last snapshot published
+        private volatile Snapshot<T> _snapshot = null;
+        private final AtomicBoolean _building = new AtomicBoolean(false);
+
+        /**
+         * @return the structure, built from the current items or, while
+         * another caller builds it again, from the items before the last change
+         */
+        final T get() {
+            Snapshot<T> snapshot = _snapshot;
+            if (snapshot == null) {
+                synchronized (this) {
+                    if (_snapshot == null) {
+                        _snapshot = snapshot();
+                    }
+                    return _snapshot._value;
+                }
+            }
+            if (snapshot._modCount == getModCount() || !_building.compareAndSet(false, true)) {
+                return snapshot._value;
+            }
+            try {
+                snapshot = snapshot();
+                _snapshot = snapshot;
+                return snapshot._value;
+            } finally {
+                _building.set(false);
+            }
+        }
+
+        // Copies the items under the read lock and builds the structure without it
+        private Snapshot<T> snapshot() {
+            final long modCount;
+            final I items;
+            _lock.readLock().lock();
+            try {
+                modCount = _modCount;
+                items = read();
+            } finally {
+                _lock.readLock().unlock();
+            }
+            return new Snapshot<T>(build(items), modCount);
+        }
+
+        /**
+         * Copies the items the structure needs, under the read lock.
+         */
+        abstract I read();
+
+        /**
+         * Builds the structure from the copied items, without any lock.
+         */
+        abstract T build(I items);
+    }
+
+    /**
+     * A derived structure and the value of _modCount it was built at.
+     */
+    private static final class Snapshot<T> {
+
+        private final T _value;
+        private final long _modCount;
+
+        Snapshot(final T value, final long modCount) {
+            _value = value;
+            _modCount = modCount;
+        }
+    }
+
+    /**
+     * Reads the rows the index is built from, see build(RowSource).
+     */
+    public interface RowSource {
+
+        /**
+         * @return rows made of an ItemDTO, the category id and the category name
+         */
+        Collection<Object[]> getRows();
+    }
+
+    /**
+     * An item as it is indexed : its DTO, its category and, for every term,
+     * the number of times it appears in each field.
+     */
+    private static final class IndexedItem {
+
+        private final ItemDTO _itemDTO;
+        private final String _categoryId;
+        private final Map<String, int[]> _frequencies = new HashMap<String, int[]>();
+        private final int[] _lengths = new int[BOOSTS.length];
+
+        IndexedItem(final ItemDTO itemDTO, final String categoryId, final String categoryName) {
+            _itemDTO = itemDTO;
+            _categoryId = categoryId;
+            addField(ID, itemDTO.getId());
+            addField(NAME, itemDTO.getName());
+            addField(PRODUCT_NAME, itemDTO.getProductName());
+            addField(PRODUCT_DESCRIPTION, itemDTO.getProductDescription());
+            addField(CATEGORY_NAME, categoryName);
+        }
+
+        private void addField(final int field, final String text) {
+            final List<String> terms = TextAnalyzer.analyze(text);
+            _lengths[field] = terms.size();
+            for (Iterator<String> iterator = terms.iterator(); iterator.hasNext();) {
+                final String term = iterator.next();
+                int[] frequencies = _frequencies.get(term);
+                if (frequencies == null) {
+                    frequencies = new int[BOOSTS.length];
+                    _frequencies.put(term, frequencies);
+                }
+                frequencies[field]++;
+            }
+        }
+
+        ItemDTO getItemDTO() {
+            return _itemDTO;
+        }
+
+        String getCategoryId() {
+            return _categoryId;
+        }
+
+        Set<String> getTerms() {
+            return _frequencies.keySet();
+        }
+
+        int[] getFrequencies(final String term) {
+            return _frequencies.get(term);
+        }
+
+        int getLength(final int field) {
+            return _lengths[field];
+        }
+    }
+
+    /**
+     * An item matching a query with its relevance.
+     */
+    private static final class ScoredItem {
+
+        private final IndexedItem _item;
+        private final double _score;
+
+        ScoredItem(final IndexedItem item, final double score) {
+            _item = item;
+            _score = score;
+        }
+
+        IndexedItem getItem() {
+            return _item;
+        }
+
+        double getScore() {
+            return _score;
+        }
+    }
+
+    // Highest score first, then lowest id
+    private static final Comparator<ScoredItem> BEST_FIRST = new Comparator<ScoredItem>() {
+        public int compare(final ScoredItem item1, final ScoredItem item2) {
+            if (item1.getScore() != item2.getScore()) {
+                return (item1.getScore() > item2.getScore()) ? -1 : 1;
+            }
+            return item1.getItem().getItemDTO().getId().compareTo(item2.getItem().getItemDTO().getId());
+        }
+    };
+}
@@ -0,0 +1,208 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.common.dto.FacetFilterDTO;
+import com.yaps.petstore.common.dto.FacetResultDTO;
+import com.yaps.petstore.common.dto.ItemDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class answers the faceted browse of the items from memory. Every item
+ * gets a number, its rank in the order of the ids, and every category and
+ * product has the bitset of the numbers of its items. The unit costs are kept
+ * sorted with the numbers of their items, so that a range of unit costs is
+ * found by two binary searches. A browse is then a few bitset intersections,
+ * and the number of items per facet value is the cardinality of the
+ * intersection of the result with the bitset of the value. Instances are
+ * immutable and can be shared by all threads.
+ */
+public final class FacetIndex {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // Bounds of the unit cost ranges counted, e.g. 10-50
+    private static final double[] UNIT_COST_BOUNDS = {10, 50, 100, 500};
+
+    // Items in the order of their ids
+    private final ItemDTO[] _items;
+    // (categoryId, items) and (productId, items) associations
+    private final Map<String, BitSet> _categories = new TreeMap<String, BitSet>();
+    private final Map<String, BitSet> _products = new TreeMap<String, BitSet>();
+    // Unit costs in increasing order and the numbers of their items
+    private final double[] _unitCosts;
+    private final int[] _unitCostItems;
+    // (range, items) associations in increasing unit costs
+    private final Map<String, BitSet> _unitCostRanges = new LinkedHashMap<String, BitSet>();
+    // Counts of the browse without filter
+    private final FacetResultDTO _counts;
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * @param items       DTOs of all the items
+     * @param categoryIds (itemId, categoryId) associations
+     */
+    public FacetIndex(final List<ItemDTO> items, final Map<String, String> categoryIds) {
+        _items = items.toArray(new ItemDTO[items.size()]);
+        Arrays.sort(_items, new Comparator<ItemDTO>() {
+            public int compare(final ItemDTO item1, final ItemDTO item2) {
+                return item1.getId().compareTo(item2.getId());
+            }
+        });
+
+        final Integer[] byUnitCost = new Integer[_items.length];
+        for (int i = 0; i < _items.length; i++) {
+            getOrCreate(_categories, categoryIds.get(_items[i].getId())).set(i);
+            getOrCreate(_products, _items[i].getProductId()).set(i);
+            byUnitCost[i] = new Integer(i);
+        }
+
+        Arrays.sort(byUnitCost, new Comparator<Integer>() {
+            public int compare(final Integer item1, final Integer item2) {
+                return Double.compare(_items[item1.intValue()].getUnitCost(), _items[item2.intValue()].getUnitCost());
+            }
+        });
+        _unitCosts = new double[_items.length];
+        _unitCostItems = new int[_items.length];
+        for (int i = 0; i < byUnitCost.length; i++) {
+            _unitCostItems[i] = byUnitCost[i].intValue();
+            _unitCosts[i] = _items[_unitCostItems[i]].getUnitCost();
+        }
+
+        double lowerBound = 0;
+        for (int i = 0; i <= UNIT_COST_BOUNDS.length; i++) {
+            if (i < UNIT_COST_BOUNDS.length) {
+                _unitCostRanges.put(format(lowerBound) + "-" + format(UNIT_COST_BOUNDS[i]), findUnitCostRange(new Double(lowerBound), new Double(UNIT_COST_BOUNDS[i])));
+                lowerBound = UNIT_COST_BOUNDS[i];
+            } else {
+                _unitCostRanges.put(format(lowerBound) + "+", findUnitCostRange(new Double(lowerBound), null));
+            }
+        }
+
+        final BitSet all = new BitSet(_items.length);
+        all.set(0, _items.length);
+        _counts = new FacetResultDTO(null, _items.length, count(_categories, all), count(_products, all), count(_unitCostRanges, all));
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the items matching the filters, in the order of
+     * their ids, with the number of matching items per facet value.
+     *
+     * @param filter category, product and unit cost range, each of them optional
+     * @return one page of items and the counts
+     */
+    public FacetResultDTO browse(final FacetFilterDTO filter) {
+        final boolean noFilter = isEmpty(filter.getCategoryId()) && isEmpty(filter.getProductId())
+                && filter.getMinUnitCost() == null && filter.getMaxUnitCost() == null;
+
+        final BitSet result = new BitSet(_items.length);
+        result.set(0, _items.length);
+        if (!isEmpty(filter.getCategoryId())) {
+            result.and(find(_categories, filter.getCategoryId()));
+        }
+        if (!isEmpty(filter.getProductId())) {
+            result.and(find(_products, filter.getProductId()));
+        }
+        if (filter.getMinUnitCost() != null || filter.getMaxUnitCost() != null) {
+            result.and(findUnitCostRange(filter.getMinUnitCost(), filter.getMaxUnitCost()));
+        }
+
+        // Skips the first items of the result and keeps one page
+        final List<ItemDTO> itemsDTO = new ArrayList<ItemDTO>();
+        int skipped = 0;
+        for (int i = result.nextSetBit(0); i >= 0 && itemsDTO.size() < filter.getLimit(); i = result.nextSetBit(i + 1)) {
+            if (skipped < filter.getOffset()) {
+                skipped++;
+            } else {
+                itemsDTO.add(_items[i]);
+            }
+        }
+
+        if (noFilter) {
+            return new FacetResultDTO(itemsDTO, _counts.getTotal(), _counts.getCategoryCounts(), _counts.getProductCounts(), _counts.getUnitCostCounts());
+        }
+        return new FacetResultDTO(itemsDTO, result.cardinality(), count(_categories, result), count(_products, result), count(_unitCostRanges, result));
+    }
+
+    public int getSize() {
+        return _items.length;
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    // Returns the items whose unit cost is in [min, max[, a null bound being no bound
+    private BitSet findUnitCostRange(final Double min, final Double max) {
+        final int from = (min == null) ? 0 : findFirstNotLower(min.doubleValue());
+        final int to = (max == null) ? _unitCosts.length : findFirstNotLower(max.doubleValue());
+        final BitSet items = new BitSet(_items.length);
+        for (int i = from; i < to; i++) {
+            items.set(_unitCostItems[i]);
+        }
+        return items;
+    }
+
+    // Returns the position of the first unit cost greater or equal to a value
+    private int findFirstNotLower(final double value) {
+        int low = 0;
+        int high = _unitCosts.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (_unitCosts[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Returns the number of items of the result per value, leaving out the values without any
+    private static Map<String, Integer> count(final Map<String, BitSet> values, final BitSet result) {
+        final Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, BitSet> entry : values.entrySet()) {
+            final BitSet items = (BitSet) entry.getValue().clone();
+            items.and(result);
+            final int count = items.cardinality();
+            if (count > 0) {
+                counts.put(entry.getKey(), new Integer(count));
+            }
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private static BitSet getOrCreate(final Map<String, BitSet> values, final String value) {
+        BitSet items = values.get(value);
+        if (items == null) {
+            items = new BitSet();
+            values.put(value, items);
+        }
+        return items;
+    }
+
+    private static BitSet find(final Map<String, BitSet> values, final String value) {
+        final BitSet items = values.get(value);
+        return (items == null) ? new BitSet() : items;
+    }
+
+    private static boolean isEmpty(final String value) {
+        return value == null || "".equals(value);
+    }
+
+    private static String format(final double bound) {
+        return String.valueOf((long) bound);
+    }
+}
@@ -0,0 +1,103 @@
+package com.yaps.petstore.server.util.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class completes the beginning of a word typed in the search box. It
+ * knows a set of terms with their frequencies and, for every prefix of every
+ * term, the most frequent terms starting with this prefix, computed once when
+ * it is created. A suggestion is then a single map lookup. Instances are
+ * immutable and can be shared by all threads.
+ */
+public final class PrefixSuggester {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private static final String[] NONE = new String[0];
+
+    private final int _maxSuggestions;
+    // (prefix, most frequent terms starting with the prefix) associations
+    private final Map<String, String[]> _suggestions = new HashMap<String, String[]>();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * @param frequencies    (term, frequency) associations
+     * @param maxSuggestions number of terms kept for every prefix
+     */
+    public PrefixSuggester(final Map<String, Integer> frequencies, final int maxSuggestions) {
+        _maxSuggestions = maxSuggestions;
+
+        // Most frequent terms first, then in alphabetical order
+        final String[] terms = frequencies.keySet().toArray(new String[frequencies.size()]);
+        Arrays.sort(terms, new Comparator<String>() {
+            public int compare(final String term1, final String term2) {
+                final int frequency1 = frequencies.get(term1).intValue();
+                final int frequency2 = frequencies.get(term2).intValue();
+                if (frequency1 != frequency2) {
+                    return (frequency1 > frequency2) ? -1 : 1;
+                }
+                return term1.compareTo(term2);
+            }
+        });
+
+        // Every term is added to the lists of its prefixes that are not full yet
+        final Map<String, List<String>> suggestions = new HashMap<String, List<String>>();
+        for (int i = 0; i < terms.length; i++) {
+            for (int length = 1; length <= terms[i].length(); length++) {
+                final String prefix = terms[i].substring(0, length);
+                List<String> list = suggestions.get(prefix);
+                if (list == null) {
+                    list = new ArrayList<String>(maxSuggestions);
+                    suggestions.put(prefix, list);
+                }
+                if (list.size() < maxSuggestions) {
+                    list.add(terms[i]);
+                }
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : suggestions.entrySet()) {
+            _suggestions.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the most frequent terms starting with a prefix.
+     *
+     * @param prefix beginning of a word, whatever its case and accents
+     * @param limit  maximum number of terms to return
+     * @return the terms, the most frequent first
+     */
+    public List<String> suggest(final String prefix, final int limit) {
+        final List<String> terms = new ArrayList<String>();
+        if (prefix == null) {
+            return terms;
+        }
+        String[] suggestions = _suggestions.get(TextAnalyzer.fold(prefix.trim()));
+        if (suggestions == null) {
+            suggestions = NONE;
+        }
+        for (int i = 0; i < suggestions.length && i < limit; i++) {
+            terms.add(suggestions[i]);
+        }
+        return terms;
+    }
+
+    public int getMaxSuggestions() {
+        return _maxSuggestions;
+    }
+
+    public int getSize() {
+        return _suggestions.size();
+    }
+}
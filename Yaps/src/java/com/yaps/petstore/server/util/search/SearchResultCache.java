@@ -0,0 +1,279 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.common.logging.Trace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps the results of the searches, keyed by the normalized query
+ * and the page. The cache is bounded, evicts the least recently used result
+ * first and forgets a result after a time to live. Every result is computed
+ * for a version of the catalog (see CatalogIndex.getModCount) : the whole
+ * cache is flushed as soon as a newer version is asked for.
+ * <p/>
+ * When several threads miss the same result at the same time, only the first
+ * one runs the search, the others wait for its result instead of running the
+ * same search again.
+ */
+public final class SearchResultCache {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    public static final int DEFAULT_MAX_SIZE = 500;
+    public static final long DEFAULT_TIME_TO_LIVE = 60000;
+    private static int _maxSize = DEFAULT_MAX_SIZE;
+    private static long _timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    // (key, result) associations in access order
+    private static final Map<String, CachedResult> _results = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedResult> eldest) {
+            return size() > _maxSize;
+        }
+    };
+    // (key, search running) associations, guarded by _results
+    private static final Map<String, FutureTask<List>> _searches = new HashMap<String, FutureTask<List>>();
+    // Version of the catalog of the cached results, guarded by _results
+    private static long _version = Long.MIN_VALUE;
+
+    private static final AtomicLong _hits = new AtomicLong();
+    private static final AtomicLong _misses = new AtomicLong();
+    private static final AtomicLong _coalesced = new AtomicLong();
+
+    private static final String PREFIX = "SearchResult.";
+
+    // Used for logging
+    private static final String _cname = SearchResultCache.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private SearchResultCache() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the result of a search, from the cache if it is
+     * there, otherwise from the search itself.
+     *
+     * @param key     normalized query and page
+     * @param version version of the catalog, read before calling this method
+     * @param search  the search to run if the result is not in the cache
+     * @return a copy of the result
+     */
+    public static List get(final String key, final long version, final Callable<List> search) {
+        final String mname = "get";
+
+        FutureTask<List> task;
+        boolean running = false;
+        synchronized (_results) {
+            if (version > _version) {
+                // The catalog has changed : all the results are out of date
+                _results.clear();
+                _version = version;
+            }
+            if (version == _version) {
+                final CachedResult result = _results.get(key);
+                if (result != null && !result.isExpired()) {
+                    _hits.incrementAndGet();
+                    return new ArrayList(result.getRows());
+                }
+            }
+            _misses.incrementAndGet();
+
+            task = _searches.get(version + ":" + key);
+            if (task == null) {
+                task = new FutureTask<List>(search);
+                _searches.put(version + ":" + key, task);
+                running = true;
+            } else {
+                _coalesced.incrementAndGet();
+                Trace.finest(_cname, mname, "Waiting for the search " + key);
+            }
+        }
+
+        if (running) {
+            try {
+                task.run();
+            } finally {
+                synchronized (_results) {
+                    _searches.remove(version + ":" + key);
+                }
+            }
+        }
+
+        final List rows = getResult(task);
+        if (running) {
+            synchronized (_results) {
+                if (version == _version) {
+                    _results.put(key, new CachedResult(rows, System.currentTimeMillis() + _timeToLive));
+                }
+            }
+        }
+        return new ArrayList(rows);
+    }
+
+    /**
+     * This method empties the cache, the next version asked for becoming the
+     * version of the cache.
+     */
+    public static void invalidateAll() {
+        synchronized (_results) {
+            _results.clear();
+            _version = Long.MIN_VALUE;
+        }
+    }
+
+    public static int getSize() {
+        synchronized (_results) {
+            return _results.size();
+        }
+    }
+
+    public static int getMaxSize() {
+        return _maxSize;
+    }
+
+    public static void setMaxSize(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        synchronized (_results) {
+            _maxSize = maxSize;
+            // Evicts the least recently used results that no longer fit
+            for (Iterator<String> iterator = _results.keySet().iterator(); _results.size() > _maxSize && iterator.hasNext();) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    public static long getTimeToLive() {
+        return _timeToLive;
+    }
+
+    /**
+     * @param timeToLive time in milliseconds a result is kept in the cache
+     */
+    public static void setTimeToLive(final long timeToLive) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        _timeToLive = timeToLive;
+    }
+
+    public static long getHits() {
+        return _hits.get();
+    }
+
+    public static long getMisses() {
+        return _misses.get();
+    }
+
+    /**
+     * @return number of misses that waited for the same search run by another thread
+     */
+    public static long getCoalesced() {
+        return _coalesced.get();
+    }
+
+    /**
+     * @return percentage of the lookups found in the cache
+     */
+    public static long getHitRate() {
+        final long hits = _hits.get();
+        final long lookups = hits + _misses.get();
+        return (lookups == 0) ? 0 : hits * 100 / lookups;
+    }
+
+    /**
+     * This method returns a snapshot of the counters (e.g. SearchResult.hits,
+     * SearchResult.hitRate...).
+     *
+     * @return (counterName, value) associations
+     */
+    public static Map<String, Long> getStatistics() {
+        final Map<String, Long> statistics = new TreeMap<String, Long>();
+        statistics.put(PREFIX + "hits", new Long(getHits()));
+        statistics.put(PREFIX + "misses", new Long(getMisses()));
+        statistics.put(PREFIX + "coalesced", new Long(getCoalesced()));
+        statistics.put(PREFIX + "hitRate", new Long(getHitRate()));
+        statistics.put(PREFIX + "size", new Long(getSize()));
+        return statistics;
+    }
+
+    /**
+     * This method sets all the counters back to zero.
+     */
+    public static void resetStatistics() {
+        _hits.set(0);
+        _misses.set(0);
+        _coalesced.set(0);
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    // Waits for the search and throws again what it has thrown
+    private static List getResult(final FutureTask<List> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ======================================
+    // =            Inner classes           =
+    // ======================================
+    private static final class CachedResult {
+
+        private final List _rows;
+        private final long _expiry;
+
+        private CachedResult(final List rows, final long expiry) {
+            _rows = rows;
+            _expiry = expiry;
+        }
+
+        private List getRows() {
+            return _rows;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= _expiry;
+        }
+    }
+}
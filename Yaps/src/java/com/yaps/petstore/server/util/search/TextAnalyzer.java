@@ -0,0 +1,70 @@
+package com.yaps.petstore.server.util.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class cuts a text into the terms of the search index. A term is a run
+ * of letters and digits, in lower case and without accents, so that "Caniche"
+ * and "canich&eacute;" give the same term.
+ */
+public final class TextAnalyzer {
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private TextAnalyzer() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the terms of a text, in the order they appear.
+     *
+     * @param text text to analyze, can be null
+     * @return the terms, empty if the text has none
+     */
+    public static List<String> analyze(final String text) {
+        final List<String> terms = new ArrayList<String>();
+        if (text == null) {
+            return terms;
+        }
+
+        final String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            final boolean inTerm = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                terms.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * This method puts a text in lower case and removes its accents.
+     *
+     * @param text text to fold
+     * @return the folded text
+     */
+    public static String fold(final String text) {
+        // Splits the accented letters into a letter followed by its accents, then drops the accents
+        final String decomposed = Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD);
+        final StringBuffer folded = new StringBuffer(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(c);
+            }
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package com.yaps.petstore.server.util.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class finds the terms close to a misspelled one (e.g. dalmatian for
+ * dalmation). Every term is cut into trigrams, the sequences of three
+ * characters of the term framed by $ ($da, dal, alm...). The candidates are
+ * the terms sharing enough trigrams with the misspelled term : an edit
+ * changes at most four trigrams (a transposition of two adjacent characters
+ * does), so a term at distance d shares at least (number of trigrams - 4 * d)
+ * of them. The edit distance of the candidates is then computed, stopping as
+ * soon as it exceeds the maximum allowed.
+ * Instances are immutable and can be shared by all threads.
+ */
+public final class TrigramIndex {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    private static final char BOUNDARY = '$';
+
+    private final String[] _terms;
+    // (trigram, indexes of the terms having it) associations
+    private final Map<String, int[]> _postings = new HashMap<String, int[]>();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * @param terms the terms that can be suggested
+     */
+    public TrigramIndex(final Collection<String> terms) {
+        _terms = terms.toArray(new String[terms.size()]);
+
+        final Map<String, List<Integer>> postings = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < _terms.length; i++) {
+            for (Iterator<String> iterator = getTrigrams(_terms[i]).iterator(); iterator.hasNext();) {
+                final String trigram = iterator.next();
+                List<Integer> indexes = postings.get(trigram);
+                if (indexes == null) {
+                    indexes = new ArrayList<Integer>();
+                    postings.put(trigram, indexes);
+                }
+                indexes.add(new Integer(i));
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+            final int[] indexes = new int[entry.getValue().size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = entry.getValue().get(i).intValue();
+            }
+            _postings.put(entry.getKey(), indexes);
+        }
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the terms the closest to a given term.
+     *
+     * @param term        a term, folded by the TextAnalyzer
+     * @param maxDistance maximum number of edits between the term and the terms returned
+     * @param deadline    System.nanoTime() after which the search is given up,
+     *                    returning the closest terms found so far
+     * @return the terms at the smallest distance found, empty if there is none
+     */
+    public List<String> findClosest(final String term, final int maxDistance, final long deadline) {
+        final List<String> closest = new ArrayList<String>();
+
+        // Counts the trigrams the terms share with the given one, the terms sharing none are never looked at
+        final Set<String> trigrams = getTrigrams(term);
+        final int[] shared = new int[_terms.length];
+        final int[] candidates = new int[_terms.length];
+        int candidateCount = 0;
+        for (Iterator<String> iterator = trigrams.iterator(); iterator.hasNext();) {
+            final int[] indexes = _postings.get(iterator.next());
+            if (indexes != null) {
+                for (int i = 0; i < indexes.length; i++) {
+                    if (shared[indexes[i]]++ == 0) {
+                        candidates[candidateCount++] = indexes[i];
+                    }
+                }
+            }
+        }
+
+        final int minShared = Math.max(1, trigrams.size() - 4 * maxDistance);
+        int bestDistance = maxDistance;
+        for (int c = 0; c < candidateCount && System.nanoTime() < deadline; c++) {
+            final int i = candidates[c];
+            if (shared[i] < minShared || Math.abs(_terms[i].length() - term.length()) > bestDistance) {
+                continue;
+            }
+            final int distance = getEditDistance(term, _terms[i], bestDistance);
+            if (distance < bestDistance) {
+                closest.clear();
+                bestDistance = distance;
+            }
+            if (distance <= bestDistance) {
+                closest.add(_terms[i]);
+            }
+        }
+        return closest;
+    }
+
+    public int getSize() {
+        return _terms.length;
+    }
+
+    /**
+     * This method returns the number of insertions, deletions, substitutions
+     * and transpositions of two adjacent characters needed to change a term
+     * into another one. Only the cells of the matrix that can stay under the
+     * maximum are computed.
+     *
+     * @param term1       first term
+     * @param term2       second term
+     * @param maxDistance maximum distance of interest
+     * @return the distance, or maxDistance + 1 if it is greater than maxDistance
+     */
+    public static int getEditDistance(final String term1, final String term2, final int maxDistance) {
+        final int length1 = term1.length();
+        final int length2 = term2.length();
+        if (Math.abs(length1 - length2) > maxDistance) {
+            return maxDistance + 1;
+        }
+        final int tooFar = maxDistance + 1;
+
+        // Three rows of the matrix : the two previous ones for the transpositions
+        int[] before = new int[length2 + 1];
+        int[] previous = new int[length2 + 1];
+        int[] current = new int[length2 + 1];
+        for (int j = 0; j <= length2; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= length1; i++) {
+            final int from = Math.max(1, i - maxDistance);
+            final int to = Math.min(length2, i + maxDistance);
+            current[0] = i;
+            if (from > 1) {
+                current[from - 1] = tooFar;
+            }
+            int rowMin = (from == 1) ? i : tooFar;
+            for (int j = from; j <= to; j++) {
+                final int cost = (term1.charAt(i - 1) == term2.charAt(j - 1)) ? 0 : 1;
+                int distance = Math.min(previous[j - 1] + cost, Math.min(previous[j] + 1, current[j - 1] + 1));
+                if (i > 1 && j > 1 && term1.charAt(i - 1) == term2.charAt(j - 2) && term1.charAt(i - 2) == term2.charAt(j - 1)) {
+                    distance = Math.min(distance, before[j - 2] + 1);
+                }
+                current[j] = Math.min(distance, tooFar);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < length2) {
+                current[to + 1] = tooFar;
+            }
+            if (rowMin > maxDistance) {
+                return tooFar;
+            }
+            final int[] row = before;
+            before = previous;
+            previous = current;
+            current = row;
+        }
+        return Math.min(previous[length2], tooFar);
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private static Set<String> getTrigrams(final String term) {
+        final String framed = BOUNDARY + term + BOUNDARY;
+        final Set<String> trigrams = new HashSet<String>();
+        for (int i = 0; i + 3 <= framed.length(); i++) {
+            trigrams.add(framed.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
@@ -5,11 +5,18 @@ import java.io.Serializable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 import com.yaps.petstore.server.domain.DomainObject;
 
 @Entity
+@NamedQueries( {
+	@NamedQuery(name = "Counter.increment", query="update Counter c set c.nextId = c.nextId + :increment where c.id = :name"),
+	@NamedQuery(name = "Counter.findValue", query="select c.nextId from Counter c where c.id = :name"),
+	@NamedQuery(name = "Counter.raise", query="update Counter c set c.nextId = :value where c.id = :name and c.nextId < :value")
+} )
 @Table(name = "T_COUNTER")
 public class Counter extends DomainObject implements Serializable{
     // ======================================
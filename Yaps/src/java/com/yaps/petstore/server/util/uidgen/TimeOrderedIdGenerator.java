@@ -0,0 +1,169 @@
+package com.yaps.petstore.server.util.uidgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class generates unique ids without any database access. An id is a
+ * number made of the milliseconds elapsed since 2020-01-01 (41 bits, until
+ * 2089), the node number (4 bits) and a sequence number within the
+ * millisecond (6 bits). It is written in base 36 on 10 characters, so it fits
+ * the id columns of the tables and ids sort by creation time, whatever the
+ * collation of the column.
+ * <p/>
+ * A node hands out up to 64 ids per millisecond. Beyond, or if the clock goes
+ * back, the following milliseconds are used in advance : the ids are always
+ * increasing and no thread ever waits. Every node of a cluster must be given
+ * its own number (0 to 15) with the system property petstore.uidgen.node.
+ * <p/>
+ * Given a UniqueIdGeneratorDAO, the generator leases the time it hands out
+ * ids from : the end of the lease is stored in the counter time.&lt;node&gt;
+ * (in seconds) before an id beyond it is handed out, and a node that restarts
+ * resumes after it. So the ids given in advance of the clock, or before the
+ * clock was set back, are never given again.
+ */
+public final class TimeOrderedIdGenerator {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // 2020-01-01T00:00:00Z
+    private static final long EPOCH = 1577836800000L;
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 6;
+    private static final int RADIX = 36;
+    private static final int LENGTH = 10;
+
+    public static final int MAX_NODES = 1 << NODE_BITS;
+
+    // Seconds leased at once, i.e. one counter update every 10 seconds at most
+    private static final int LEASE_SECONDS = 10;
+    private static final String LEASE_COUNTER = "time.";
+
+    private final long _node;
+    // Last (timestamp, sequence) handed out, the sequence in the low bits
+    private final AtomicLong _last = new AtomicLong();
+
+    // Stores the end of the lease, null when the ids don't survive a restart
+    private final UniqueIdGeneratorDAO _dao;
+    // First (timestamp, sequence) beyond the lease
+    private volatile long _leaseEnd;
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The generator doesn't store anything : after a restart it may give the
+     * ids it had given in advance of the clock again.
+     *
+     * @param node number of the node, between 0 and MAX_NODES - 1
+     */
+    public TimeOrderedIdGenerator(final int node) {
+        this(node, null);
+    }
+
+    /**
+     * @param node number of the node, between 0 and MAX_NODES - 1
+     * @param dao  stores the lease of the node, null to store nothing
+     */
+    public TimeOrderedIdGenerator(final int node, final UniqueIdGeneratorDAO dao) {
+        if (node < 0 || node >= MAX_NODES) {
+            throw new IllegalArgumentException("Node must be between 0 and " + (MAX_NODES - 1));
+        }
+        _node = node;
+        _dao = dao;
+        if (dao == null) {
+            _leaseEnd = Long.MAX_VALUE;
+        } else {
+            // Resumes after the lease of the previous run
+            _leaseEnd = toValue(dao.findValue(LEASE_COUNTER + node));
+            _last.set(_leaseEnd - 1);
+        }
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns a new unique id.
+     *
+     * @return a 10 characters id
+     */
+    public String nextId() {
+        return encode(nextValue());
+    }
+
+    /**
+     * This method returns a new unique id as a number.
+     *
+     * @return a positive number lower than 2^51
+     */
+    public long nextValue() {
+        final long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long last;
+        long next;
+        do {
+            last = _last.get();
+            next = (now > last) ? now : last + 1;
+        } while (!_last.compareAndSet(last, next));
+
+        if (next >= _leaseEnd) {
+            extendLease(next);
+        }
+
+        final long timestamp = next >>> SEQUENCE_BITS;
+        final long sequence = next & ((1 << SEQUENCE_BITS) - 1);
+        return (((timestamp << NODE_BITS) | _node) << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * This method writes a number in base 36 on 10 characters, padded with zeros.
+     *
+     * @param value number to encode
+     * @return the encoded number
+     */
+    public static String encode(final long value) {
+        final char[] chars = new char[LENGTH];
+        long remainder = value;
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = Character.forDigit((int) (remainder % RADIX), RADIX);
+            remainder /= RADIX;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * This method reads a number written by encode.
+     *
+     * @param id the encoded number
+     * @return the number
+     */
+    public static long decode(final String id) {
+        return Long.parseLong(id, RADIX);
+    }
+
+    /**
+     * This method returns the time an id was generated at.
+     *
+     * @param id an id given by this class
+     * @return the time in milliseconds since 1970-01-01
+     */
+    public static long getTime(final String id) {
+        return (decode(id) >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    // Stores a lease covering the value before it is handed out
+    private synchronized void extendLease(final long value) {
+        while (value >= _leaseEnd) {
+            final long seconds = (value >>> SEQUENCE_BITS) / 1000 + 1 + LEASE_SECONDS;
+            _leaseEnd = toValue(_dao.raise(LEASE_COUNTER + _node, (int) seconds));
+        }
+    }
+
+    // Returns the first (timestamp, sequence) of a second since the epoch
+    private static long toValue(final long seconds) {
+        return (seconds * 1000) << SEQUENCE_BITS;
+    }
+}
@@ -1,12 +1,42 @@
 package com.yaps.petstore.server.util.uidgen;
 
-import com.yaps.petstore.common.exception.DuplicateKeyException;
-import com.yaps.petstore.common.exception.ObjectNotFoundException;
 import com.yaps.petstore.common.logging.Trace;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * This class manages unique IDs for Database.
  * It follows the Singleton design pattern.
+ * Identifiers are reserved in the database by blocks (hi/lo) : the counter is
+ * only updated once every block size identifiers, the others are handed out
+ * from memory. The block size of a counter is read from the system property
+ * petstore.uidgen.blockSize.&lt;name&gt; or can be set with setBlockSize.
+ * Identifiers left in a block when the JVM stops are lost, so ids may have gaps.
+ * <p/>
+ * A counter can be striped over several rows (e.g. Order.0 to Order.7) : every
+ * thread reserves its blocks on its own stripe, so the transactions inserting
+ * orders at the same time, on one node or on several, don't wait for the lock
+ * of one counter row. The stripe s hands out the identifiers n * stripes + s,
+ * which never collide with the ones of another stripe. The number of stripes
+ * of a counter is read from the system property petstore.uidgen.stripes.&lt;name&gt;
+ * and must be the same on every node and never change once the stripe rows exist.
+ * <p/>
+ * These properties only apply to the counters handed out by this class, that
+ * is the Order and OrderLine ones, the DAOs of which assign the ids. The ids of
+ * Category, Product, Item and Customer are generated by JPA (@TableGenerator)
+ * on their single T_COUNTER row, which is neither striped nor in time mode.
+ * <p/>
+ * The ids of a counter in the time mode don't come from a counter of their
+ * own, but from a TimeOrderedIdGenerator. The mode of a counter is read from
+ * the system property petstore.uidgen.mode.&lt;name&gt; (counter or time). The
+ * time mode needs the number of the node (petstore.uidgen.node, between 0 and
+ * 15, unique in the cluster) : when it isn't set, the counter mode is used.
+ *
+ * @see TimeOrderedIdGenerator
  */
 public final class UniqueIdGenerator {
 
@@ -16,7 +46,45 @@ public final class UniqueIdGenerator {
     // A handle to the unique Singleton instance.
     private static UniqueIdGenerator _instance = null;
 
-    private final UniqueIdGeneratorDAO _dao = new UniqueIdGeneratorDAO();
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+    private static final String BLOCK_SIZE_PROPERTY = "petstore.uidgen.blockSize.";
+
+    public static final int DEFAULT_STRIPES = 1;
+    private static final String STRIPES_PROPERTY = "petstore.uidgen.stripes.";
+    // The counters every checkout inserts into are striped by default
+    private static final Map<String, Integer> STRIPED_COUNTERS = new HashMap<String, Integer>();
+
+    static {
+        STRIPED_COUNTERS.put("Order", new Integer(8));
+        STRIPED_COUNTERS.put("OrderLine", new Integer(8));
+    }
+
+    public static final String MODE_COUNTER = "counter";
+    public static final String MODE_TIME = "time";
+    private static final String MODE_PROPERTY = "petstore.uidgen.mode.";
+    // The order lines are the most inserted rows, they don't need a counter
+    private static final Map<String, String> TIME_COUNTERS = new HashMap<String, String>();
+
+    static {
+        TIME_COUNTERS.put("OrderLine", MODE_TIME);
+    }
+
+    private static final String NODE_PROPERTY = "petstore.uidgen.node";
+    // Number of this node in the cluster, null if it isn't configured
+    private final Integer _configuredNode = Integer.getInteger(NODE_PROPERTY);
+
+    // Spreads the threads of the different nodes over the stripes
+    private final int _node = (_configuredNode != null) ? _configuredNode.intValue() : new Random().nextInt(1024);
+
+    // A random node number would collide with another node's : without a
+    // configured one, there is no time mode (null)
+    private final TimeOrderedIdGenerator _timeGenerator = (_configuredNode == null) ? null
+            : new TimeOrderedIdGenerator(_configuredNode.intValue(), new UniqueIdGeneratorDAO());
+
+    // (row name, block) associations
+    private final Map<String, Block> _blocks = new ConcurrentHashMap<String, Block>();
+    // (name, block size) associations
+    private final Map<String, Integer> _blockSizes = new ConcurrentHashMap<String, Integer>();
 
     // Used for logging
     private final String _cname = this.getClass().getName();
@@ -28,6 +96,9 @@ public final class UniqueIdGenerator {
      * The constructor is made private to prevent others from instantiating this class.
      */
     private UniqueIdGenerator() {
+        if (_timeGenerator == null) {
+            Trace.warning(_cname, "UniqueIdGenerator", NODE_PROPERTY + " is not set, the time mode is disabled");
+        }
     }
 
     // ======================================
@@ -38,7 +109,7 @@ public final class UniqueIdGenerator {
      *
      * @return The unique instance of this class.
      */
-    public static UniqueIdGenerator getInstance() {
+    public static synchronized UniqueIdGenerator getInstance() {
         if (null == _instance) {
             _instance = new UniqueIdGenerator();
         }
@@ -56,28 +127,155 @@ public final class UniqueIdGenerator {
         final String mname = "getUniqueId";
         Trace.entering(_cname, mname, name);
 
-        int nextId = 0;
+        if (MODE_TIME.equals(getMode(name))) {
+            final String id = _timeGenerator.nextId();
+            Trace.exiting(_cname, mname, id);
+            return id;
+        }
+
+        final long nextId;
+        final int stripes = getStripes(name);
+        if (stripes == 1) {
+            nextId = getBlock(name, 0, 1).next(getBlockSize(name));
+        } else {
+            final int stripe = (int) ((_node + Thread.currentThread().getId()) % stripes);
+            nextId = getBlock(name, stripe, stripes).next(getBlockSize(name)) * stripes + stripe;
+        }
+
+        Trace.exiting(_cname, mname, new Long(nextId));
+        return String.valueOf(nextId);
+    }
+
+    /**
+     * This method returns the number of identifiers reserved at once for a counter.
+     *
+     * @param name name of the counter
+     * @return the block size
+     */
+    public int getBlockSize(final String name) {
+        final Integer size = _blockSizes.get(name);
+        if (size != null) {
+            return size.intValue();
+        }
+        return Integer.getInteger(BLOCK_SIZE_PROPERTY + name, DEFAULT_BLOCK_SIZE).intValue();
+    }
+
+    /**
+     * This method sets the number of identifiers reserved at once for a counter.
+     * It is taken into account when the current block is exhausted.
+     *
+     * @param name name of the counter
+     * @param size the block size, 1 updates the database for every identifier
+     */
+    public void setBlockSize(final String name, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        _blockSizes.put(name, new Integer(size));
+    }
+
+    /**
+     * This method returns the number of rows a counter is striped over.
+     * Only the Order and OrderLine counters are striped by default, and only the
+     * counters of this class can be : the entities with a @TableGenerator aren't.
+     *
+     * @param name name of the counter
+     * @return the number of stripes, 1 if the counter is not striped
+     */
+    public int getStripes(final String name) {
+        final Integer stripes = STRIPED_COUNTERS.get(name);
+        return Integer.getInteger(STRIPES_PROPERTY + name, (stripes == null) ? DEFAULT_STRIPES : stripes.intValue()).intValue();
+    }
+
+    /**
+     * This method returns how the ids of a counter are generated.
+     *
+     * @param name name of the counter
+     * @return MODE_COUNTER if they come from T_COUNTER, MODE_TIME if they come
+     * from the clock
+     */
+    public String getMode(final String name) {
+        final String defaultMode = TIME_COUNTERS.get(name);
+        final String mode = System.getProperty(MODE_PROPERTY + name, (defaultMode == null) ? MODE_COUNTER : defaultMode);
+        // The time mode is refused when the node number isn't configured
+        return (_timeGenerator == null) ? MODE_COUNTER : mode;
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private Block getBlock(final String name, final int stripe, final int stripes) {
+        final String rowName = (stripes == 1) ? name : UniqueIdGeneratorDAO.getStripeName(name, stripe);
+        Block block = _blocks.get(rowName);
+        if (block == null) {
+            synchronized (_blocks) {
+                block = _blocks.get(rowName);
+                if (block == null) {
+                    block = new Block(name, stripe, stripes);
+                    _blocks.put(rowName, block);
+                }
+            }
+        }
+        return block;
+    }
+
+    // ======================================
+    // =            Inner classes           =
+    // ======================================
+    /**
+     * Identifiers (or sequence numbers of a stripe) reserved in the database
+     * and not handed out yet. Every block has its own DAO so that a thread
+     * waiting for the lock of a stripe row doesn't hold up the other stripes.
+     */
+    private static final class Block {
 
-        try {
+        private final String _name;
+        private final int _stripe;
+        private final int _stripes;
+        private final UniqueIdGeneratorDAO _dao = new UniqueIdGeneratorDAO();
 
-            // Gets the current value
-        	Counter counter = (Counter) _dao.select(name);
-        	nextId = counter.getNextId() + 1;
-            // Updates the value with the new id
-            _dao.update(name, nextId);
+        private final AtomicLong _next = new AtomicLong(1);
+        private volatile long _max = 0;
 
-        } catch (ObjectNotFoundException e) {
+        Block(final String name, final int stripe, final int stripes) {
+            _name = name;
+            _stripe = stripe;
+            _stripes = stripes;
+        }
 
-            // The value doesn't exist, we have to create it and we return the number 1
-            try {
-                _dao.insert(name);
-                nextId = 1;
-            } catch (DuplicateKeyException e1) {
-                // Duplicate key exception cannot append
+        /**
+         * @param size number of values to reserve if the block is exhausted
+         * @return the next value of the block
+         */
+        long next(final int size) {
+            long value = take();
+            while (value == 0) {
+                // The block is exhausted, only one thread reserves the next one
+                synchronized (this) {
+                    value = take();
+                    if (value == 0) {
+                        final long max = (_stripes == 1) ? _dao.allocateBlock(_name, size)
+                                : _dao.allocateStripeBlock(_name, _stripe, _stripes, size);
+                        reset(max - size + 1, max);
+                        value = take();
+                    }
+                }
             }
+            return value;
         }
 
-        Trace.exiting(_cname, mname, new Integer(nextId));
-        return String.valueOf(nextId);
+        // Returns the next value of the block or 0 if the block is exhausted
+        private long take() {
+            final long max = _max;
+            final long value = _next.getAndIncrement();
+            return (value <= max) ? value : 0;
+        }
+
+        private void reset(final long first, final long max) {
+            // Sets the upper bound last so that take() never returns a value of the old block
+            _max = 0;
+            _next.set(first);
+            _max = max;
+        }
     }
 }
@@ -3,10 +3,20 @@ package com.yaps.petstore.server.util.uidgen;
 import com.yaps.petstore.common.exception.DataAccessException;
 import com.yaps.petstore.common.exception.DuplicateKeyException;
 import com.yaps.petstore.common.exception.ObjectNotFoundException;
+import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.server.util.persistence.AbstractDataAccessObject;
 
+import javax.persistence.Query;
+
+import java.util.List;
+
 /**
  * This class does all the database access for the class UniqueIdGenerator.
+ * It never joins the transaction of its caller : the blocks are reserved in
+ * short transactions of their own, on a resource-local persistence unit
+ * (petstoreCounterPU), so that the lock of a counter row is released as soon
+ * as the block is reserved and a block handed out from memory is never given
+ * again because the business transaction that reserved it has rolled back.
  *
  * @see UniqueIdGenerator
  */
@@ -21,7 +31,7 @@ public final class UniqueIdGeneratorDAO extends AbstractDataAccessObject<String,
     // =            Constructors            =
     // ======================================
     public UniqueIdGeneratorDAO() {
-    	this("petstorePU");
+    	this("petstoreCounterPU");
     }
     
     public UniqueIdGeneratorDAO(String persistenceUnitName) {
@@ -36,14 +46,8 @@ public final class UniqueIdGeneratorDAO extends AbstractDataAccessObject<String,
      * @throws DuplicateKeyException is thrown when an identical object is already in the persistent layer
      */
     public void insert(final String name) throws DuplicateKeyException {
-        try {
-        	findById(name);
-        	throw new DuplicateKeyException();
-        }
-        catch ( ObjectNotFoundException e) {        	
-        }
         Counter counter = new Counter(name, 1);
-        persist(counter);
+        insert(counter);
     }
 
     /**
@@ -71,6 +75,172 @@ public final class UniqueIdGeneratorDAO extends AbstractDataAccessObject<String,
         merge(counter);
     }
 
+    /**
+     * This method reserves a block of identifiers for a counter. The counter
+     * is increased by the size of the block in one UPDATE statement, which
+     * locks the row until the transaction ends : two callers, in the same JVM
+     * or not, can never reserve the same block. The counter is created if it
+     * doesn't exist yet. The block is committed by the time this method
+     * returns, whatever the transaction of the caller becomes.
+     *
+     * @param name name of the counter
+     * @param size number of identifiers to reserve
+     * @return the last identifier of the block, the block being
+     * [returned value - size + 1, returned value]
+     */
+    public long allocateBlock(final String name, final int size) {
+        return allocateBlock(name, null, 1, size);
+    }
+
+    /**
+     * This method reserves a block of sequence numbers on one stripe of a
+     * striped counter. Every stripe is a row of its own (e.g. Order.3), so
+     * callers working on different stripes never wait for each other. The
+     * identifier matching the sequence number n of the stripe s is
+     * n * stripes + s. When the stripe row is created, it starts after the
+     * value of the counter row (e.g. Order) so that the identifiers already
+     * given by this counter are never given again.
+     *
+     * @param name    name of the counter
+     * @param stripe  stripe to reserve the block on, between 0 and stripes - 1
+     * @param stripes number of stripes of the counter
+     * @param size    number of sequence numbers to reserve
+     * @return the last sequence number of the block
+     */
+    public long allocateStripeBlock(final String name, final int stripe, final int stripes, final int size) {
+        return allocateBlock(getStripeName(name, stripe), name, stripes, size);
+    }
+
+    /**
+     * This method raises the value of a counter to at least the given value,
+     * in a transaction of its own, and creates the counter if it doesn't exist
+     * yet. The value of a counter raised this way never decreases.
+     *
+     * @param name  name of the counter
+     * @param value lowest value the counter must have
+     * @return the value of the counter, greater than or equal to value
+     */
+    public long raise(final String name, final int value) {
+        final String mname = "raise";
+        Trace.entering(getCname(), mname, new Object[]{name, new Integer(value)});
+
+        long current = 0;
+        boolean raised = false;
+        for (int attempt = 0; !raised; attempt++) {
+            beginTransaction();
+            try {
+                final Query raise = getEntityManager().createNamedQuery("Counter.raise");
+                raise.setParameter("value", new Integer(value));
+                raise.setParameter("name", name);
+                if (raise.executeUpdate() == 1) {
+                    current = value;
+                } else {
+                    final List values = findValues(name);
+                    if (values.isEmpty()) {
+                        getEntityManager().persist(new Counter(name, value));
+                        getEntityManager().flush();
+                        current = value;
+                    } else {
+                        // The counter is already higher
+                        current = ((Number) values.get(0)).longValue();
+                    }
+                }
+                endTransaction();
+                raised = true;
+            } catch (RuntimeException e) {
+                rollbackTransaction();
+                // Another caller has created the counter in the meantime : raises it
+                if (attempt > 0 || !isUniqueViolation(e)) {
+                    throw e;
+                }
+            } finally {
+                getEntityManager().clear();
+            }
+        }
+
+        Trace.exiting(getCname(), mname, new Long(current));
+        return current;
+    }
+
+    /**
+     * This method returns the value of a counter.
+     *
+     * @param name name of the counter
+     * @return the value of the counter or 0 if it doesn't exist
+     */
+    public long findValue(final String name) {
+        final List values = findValues(name);
+        return values.isEmpty() ? 0 : ((Number) values.get(0)).longValue();
+    }
+
+    /**
+     * This method returns the name of the row holding a stripe of a counter.
+     *
+     * @param name   name of the counter
+     * @param stripe the stripe
+     * @return the name of the stripe row (e.g. Order.3)
+     */
+    public static String getStripeName(final String name, final int stripe) {
+        return name + '.' + stripe;
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private long allocateBlock(final String name, final String baseName, final int stripes, final int size) {
+        final String mname = "allocateBlock";
+        Trace.entering(getCname(), mname, new Object[]{name, new Integer(size)});
+
+        long lastId = 0;
+        boolean allocated = false;
+        for (int attempt = 0; !allocated; attempt++) {
+            beginTransaction();
+            try {
+                final Query increment = getEntityManager().createNamedQuery("Counter.increment");
+                increment.setParameter("increment", new Integer(size));
+                increment.setParameter("name", name);
+                if (increment.executeUpdate() == 0) {
+                    // The counter doesn't exist yet, the first block starts after the base counter or at 1
+                    final long firstValue = (baseName == null) ? 0 : findValue(baseName) / stripes;
+                    lastId = firstValue + size;
+                    getEntityManager().persist(new Counter(name, (int) lastId));
+                    getEntityManager().flush();
+                } else {
+                    lastId = findValue(name);
+                }
+                endTransaction();
+                allocated = true;
+            } catch (RuntimeException e) {
+                rollbackTransaction();
+                // Another caller has created the counter in the meantime : increments it
+                if (attempt > 0 || !isUniqueViolation(e)) {
+                    throw e;
+                }
+            } finally {
+                // The counters are re-read by query, nothing needs to stay managed
+                getEntityManager().clear();
+            }
+        }
+
+        Trace.exiting(getCname(), mname, new Long(lastId));
+        return lastId;
+    }
+
+    // Returns the value of a counter in a list, empty if the counter doesn't exist
+    private List findValues(final String name) {
+        final Query query = getEntityManager().createNamedQuery("Counter.findValue");
+        query.setParameter("name", name);
+        return query.getResultList();
+    }
+
+    /**
+     * The counters are always read and updated with the EntityManager of this
+     * DAO, never with the one bound to the container transaction of the caller.
+     */
+    protected boolean ownsEntityManager() {
+        return true;
+    }
+
     protected String getCounterName() {
 		return "";
 	}
@@ -15,6 +15,12 @@ import java.util.Collection;
  */
 public class SearchItemsServlet extends AbstractServlet {
 
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // Number of items shown on a page of results
+    private static final int PAGE_SIZE = 20;
+
     // ======================================
     // =         Entry point method         =
     // ======================================
@@ -26,12 +32,18 @@ public class SearchItemsServlet extends AbstractServlet {
         String keyword = request.getParameter("keyword");
 
         try {
+            // The results are shown page by page, the most relevant first
+            final String offsetParameter = request.getParameter("offset");
+            final int offset = (offsetParameter == null || "".equals(offsetParameter)) ? 0 : Integer.parseInt(offsetParameter);
+
             // Search the items
-            itemsDTO = CatalogDelegate.searchItems(keyword);
+            itemsDTO = CatalogDelegate.searchItems(keyword, offset, PAGE_SIZE);
 
             // puts the list of items into the request and the keyword
             request.setAttribute("itemsDTO", itemsDTO);
             request.setAttribute("keyword", keyword);
+            request.setAttribute("offset", new Integer(offset));
+            request.setAttribute("limit", new Integer(PAGE_SIZE));
 
             // Goes to the items page passing the request
             getServletContext().getRequestDispatcher("/items.jsp").forward(request, response);
@@ -2,6 +2,8 @@ package com.yaps.petstore.web.servlet;
 
 import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
 import com.yaps.petstore.common.logging.Trace;
+import com.yaps.petstore.web.servlet.cart.CartIdCookie;
+import com.yaps.petstore.web.servlet.cart.ShoppingCartCookie;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -17,16 +19,20 @@ public class SignOffServlet extends AbstractServlet {
         final String mname = "service";
         Trace.entering(getCname(), mname);
 
-        // Invalidates the HTTPSession
+        // Empties the Shopping Cart, which would otherwise be given back to the next session of the browser
+        if (!ShoppingCartCookie.isEnabled()) {
+            ShoppingCartDelegate.discard(request.getSession().getId());
+        }
+
+        // Invalidates the HTTPSession, the ShoppingCartSessionListener releasing its Shopping Cart
         request.getSession().invalidate();
         Trace.finest(getCname(), mname, "http session invalidate");
 
-        // Empties the Shopping Cart
-        try {
-        	ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId());
-            shoppingCartDelegate.empty();
-        } catch (Exception e) {
-            // If an expcetion is caught, nothing is done
+        // Removes the Shopping Cart held by the client
+        if (ShoppingCartCookie.isEnabled()) {
+            ShoppingCartCookie.clear(request, response);
+        } else {
+            CartIdCookie.clear(request, response);
         }
 
         // Goes to the index page passing the request
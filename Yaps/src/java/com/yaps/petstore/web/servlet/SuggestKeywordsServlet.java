@@ -0,0 +1,77 @@
+package com.yaps.petstore.web.servlet;
+
+import com.yaps.petstore.common.delegate.CatalogDelegate;
+import com.yaps.petstore.common.logging.Trace;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This servlet completes the word typed in the search box. It is called on
+ * every keystroke with the beginning of the word in the prefix parameter and
+ * returns the suggested words as a JSON array (e.g. ["poodle","persian"]).
+ */
+@WebServlet("/suggestkeywords")
+public class SuggestKeywordsServlet extends AbstractServlet {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // Number of words suggested
+    private static final int SUGGESTIONS = 8;
+
+    // ======================================
+    // =         Entry point method         =
+    // ======================================
+    protected void service(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        final String mname = "service";
+        Trace.entering(getCname(), mname);
+
+        final String prefix = request.getParameter("prefix");
+
+        try {
+            // Gets the suggestions
+            final List keywords = CatalogDelegate.suggestKeywords(prefix, SUGGESTIONS);
+
+            // Writes them as a JSON array
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            final PrintWriter writer = response.getWriter();
+            writer.print('[');
+            for (Iterator iterator = keywords.iterator(); iterator.hasNext();) {
+                writer.print('"');
+                writer.print(escape((String) iterator.next()));
+                writer.print('"');
+                if (iterator.hasNext()) {
+                    writer.print(',');
+                }
+            }
+            writer.print(']');
+
+        } catch (Exception e) {
+            Trace.throwing(getCname(), mname, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    private String escape(final String keyword) {
+        final StringBuffer escaped = new StringBuffer(keyword.length());
+        for (int i = 0; i < keyword.length(); i++) {
+            final char c = keyword.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
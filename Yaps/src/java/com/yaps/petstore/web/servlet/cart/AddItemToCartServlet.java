@@ -1,6 +1,8 @@
 package com.yaps.petstore.web.servlet.cart;
 
 import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.web.servlet.AbstractServlet;
 
@@ -24,14 +26,23 @@ public class AddItemToCartServlet extends AbstractServlet {
 
         try {
             // Adds the itemId into the Shopping Cart
-        	ShoppingCartDelegate delegate = new ShoppingCartDelegate(request.getSession().getId());
-            delegate.addItem(request.getParameter("itemId"));
+            if (ShoppingCartCookie.isEnabled()) {
+                final ShoppingCartDTO shoppingCart = ShoppingCartCookie.read(request);
+                shoppingCart.setQuantity(request.getParameter("itemId"), 1);
+                ShoppingCartCookie.write(request, response, shoppingCart);
+            } else {
+                ShoppingCartDelegate delegate = new ShoppingCartDelegate(request.getSession().getId(), CartIdCookie.get(request, response));
+                delegate.addItem(request.getParameter("itemId"));
+            }
 
             getServletContext().getRequestDispatcher("/viewcart").forward(request, response);
 
         } catch (RemoteException e) {
             Trace.throwing(getCname(), mname, e);
             getServletContext().getRequestDispatcher("/error.jsp?exception=Cannot add an item to the shopping cart").forward(request, response);
+        } catch (CheckException e) {
+            Trace.throwing(getCname(), mname, e);
+            getServletContext().getRequestDispatcher("/error.jsp?exception=" + e.getMessage()).forward(request, response);
         }
     }
 }
@@ -0,0 +1,135 @@
+package com.yaps.petstore.web.servlet.cart;
+
+import com.yaps.petstore.server.cart.CartJournal;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.security.SecureRandom;
+
+/**
+ * This class gives every browser a durable shopping cart id, kept in a
+ * cookie as long as the carts are kept on the disk (petstore.cart.journal.maxAge
+ * days, 30 by default). The content of the stateful ShoppingCartBean is
+ * journaled under this id (see CartJournal) : the HTTP session doesn't survive
+ * a restart of the node, the cookie does.
+ * <p/>
+ * The id is 128 random bits, so the cart of another browser can't be guessed.
+ * No cookie is given when the carts are not journaled (petstore.cart.journal
+ * not set), nothing would use it.
+ */
+public final class CartIdCookie {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    public static final String COOKIE_NAME = "cartId";
+    private static final int MAX_AGE = (int) (Long.getLong("petstore.cart.journal.maxAge", 30).longValue() * 24 * 3600);
+
+    private static final int ID_BYTES = 16;
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // The id given to a session is found by its next requests, before the browser sends the cookie back
+    private static final String ATTRIBUTE = CartIdCookie.class.getName();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private CartIdCookie() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * This method returns the cart id of the browser, giving it a new one if
+     * it has none.
+     *
+     * @param request  the HTTP request
+     * @param response the HTTP response, not committed yet
+     * @return the cart id, null if the carts are not journaled
+     */
+    public static String get(final HttpServletRequest request, final HttpServletResponse response) {
+        if (CartJournal.getInstance() == null) {
+            return null;
+        }
+        final HttpSession session = request.getSession();
+        String cartId = (String) session.getAttribute(ATTRIBUTE);
+        if (cartId != null) {
+            return cartId;
+        }
+
+        cartId = read(request);
+        if (cartId == null) {
+            cartId = newId();
+            write(request, response, cartId, MAX_AGE);
+        }
+        session.setAttribute(ATTRIBUTE, cartId);
+        return cartId;
+    }
+
+    /**
+     * This method removes the cart id of the browser, which gets a new one,
+     * and an empty cart, the next time.
+     *
+     * @param request  the HTTP request
+     * @param response the HTTP response, not committed yet
+     */
+    public static void clear(final HttpServletRequest request, final HttpServletResponse response) {
+        if (CartJournal.getInstance() == null) {
+            return;
+        }
+        write(request, response, "", 0);
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    // Returns the id sent by the browser, null if there is none or if it is not one of ours
+    private static String read(final HttpServletRequest request) {
+        final Cookie[] cookies = request.getCookies();
+        for (int i = 0; cookies != null && i < cookies.length; i++) {
+            if (COOKIE_NAME.equals(cookies[i].getName()) && isValid(cookies[i].getValue())) {
+                return cookies[i].getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void write(final HttpServletRequest request, final HttpServletResponse response, final String cartId, final int maxAge) {
+        final Cookie cookie = new Cookie(COOKIE_NAME, cartId);
+        cookie.setMaxAge(maxAge);
+        final String path = request.getContextPath();
+        cookie.setPath((path == null || path.length() == 0) ? "/" : path);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+    }
+
+    private static String newId() {
+        final byte[] bytes = new byte[ID_BYTES];
+        RANDOM.nextBytes(bytes);
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEXADECIMAL[(bytes[i] >> 4) & 0x0F];
+            chars[2 * i + 1] = HEXADECIMAL[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static boolean isValid(final String cartId) {
+        if (cartId == null || cartId.length() != ID_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < cartId.length(); i++) {
+            if (Character.digit(cartId.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
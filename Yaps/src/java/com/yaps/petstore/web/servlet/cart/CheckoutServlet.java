@@ -3,6 +3,7 @@ package com.yaps.petstore.web.servlet.cart;
 import com.yaps.petstore.common.delegate.OrderDelegate;
 import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
 import com.yaps.petstore.common.dto.CustomerDTO;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
 import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.web.servlet.AbstractServlet;
 
@@ -10,7 +11,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * This servlet checks out the shopping cart. It creates an order with the content of
@@ -27,19 +27,26 @@ public class CheckoutServlet extends AbstractServlet {
 
         final String orderId;
         final String customerId;
-        final Map shoppingCart;
+        final ShoppingCartDTO shoppingCart;
 
         try {
             // Gets the customer id and the shopping cart
             customerId = ((CustomerDTO)request.getSession().getAttribute("customerDTO")).getId();
-        	ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId());
-            shoppingCart = shoppingCartDelegate.getCart();
+            if (ShoppingCartCookie.isEnabled()) {
+                shoppingCart = ShoppingCartCookie.read(request);
+            } else {
+                shoppingCart = new ShoppingCartDelegate(request.getSession().getId(), CartIdCookie.get(request, response)).getCartDTO();
+            }
 
             // Creates the order and
             orderId = OrderDelegate.createOrder(customerId, shoppingCart);
 
             // Empties the shopping cart
-            shoppingCartDelegate.empty();
+            if (ShoppingCartCookie.isEnabled()) {
+                ShoppingCartCookie.clear(request, response);
+            } else {
+                new ShoppingCartDelegate(request.getSession().getId(), CartIdCookie.get(request, response)).empty();
+            }
 
             // ... puts all the order id into the request
             request.setAttribute("orderId", orderId);
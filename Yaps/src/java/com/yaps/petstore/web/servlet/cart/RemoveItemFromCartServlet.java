@@ -1,6 +1,8 @@
 package com.yaps.petstore.web.servlet.cart;
 
 import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.web.servlet.AbstractServlet;
 
@@ -22,14 +24,23 @@ public class RemoveItemFromCartServlet extends AbstractServlet {
 
         try {
             // Removes the itemId into the Shopping Cart
-        	ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId());
-            shoppingCartDelegate.removeItem(request.getParameter("itemId"));
+            if (ShoppingCartCookie.isEnabled()) {
+                final ShoppingCartDTO shoppingCart = ShoppingCartCookie.read(request);
+                shoppingCart.remove(request.getParameter("itemId"));
+                ShoppingCartCookie.write(request, response, shoppingCart);
+            } else {
+                ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId(), CartIdCookie.get(request, response));
+                shoppingCartDelegate.removeItem(request.getParameter("itemId"));
+            }
 
             getServletContext().getRequestDispatcher("/viewcart").forward(request, response);
 
         } catch (RemoteException e) {
             Trace.throwing(getCname(), mname, e);
             getServletContext().getRequestDispatcher("/error.jsp?exception=Cannot remove the item from the shopping cart").forward(request, response);
+        } catch (CheckException e) {
+            Trace.throwing(getCname(), mname, e);
+            getServletContext().getRequestDispatcher("/error.jsp?exception=Cannot remove the item from the shopping cart").forward(request, response);
         }
     }
 }
@@ -0,0 +1,302 @@
+package com.yaps.petstore.web.servlet.cart;
+
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.common.exception.CheckException;
+import com.yaps.petstore.common.logging.Trace;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * This class keeps the shopping cart in a cookie instead of a stateful
+ * ShoppingCartBean, when the system property petstore.cart.mode is "cookie".
+ * The server then keeps nothing between two requests and any node of a
+ * cluster can serve any request.
+ * <p/>
+ * The cookie holds the item ids and quantities (e.g. EST-1=2&EST-6=1) in
+ * hexadecimal, followed by '.' and an HMAC-SHA256 signature of the
+ * hexadecimal, so that a cart changed by the client is ignored. The value
+ * then only has letters, digits and dots, which no container quotes or
+ * refuses in a version 0 cookie. The key is read from the system property
+ * petstore.cart.secret and has to be the same on all the nodes : in the
+ * cookie mode, the class can't be loaded if the key is not set or is shorter
+ * than 32 bytes.
+ */
+public final class ShoppingCartCookie {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    public static final String MODE_COOKIE = "cookie";
+    private static final boolean ENABLED = MODE_COOKIE.equals(System.getProperty("petstore.cart.mode"));
+
+    public static final String COOKIE_NAME = "cart";
+    // A browser keeps about 4 KB per cookie
+    public static final int MAX_LINES = 50;
+    private static final int MAX_AGE = 7 * 24 * 3600;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String ENCODING = "UTF-8";
+    private static final char SIGNATURE_SEPARATOR = '.';
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray();
+
+    // The cart changed by a servlet is found by the servlets it forwards to
+    private static final String ATTRIBUTE = ShoppingCartCookie.class.getName();
+
+    // Used for logging
+    private static final String _cname = ShoppingCartCookie.class.getName();
+
+    // As long as the output of HmacSHA256, not to weaken the signature
+    private static final int MIN_SECRET_LENGTH = 32;
+    private static final byte[] SECRET = getSecret();
+
+    // ======================================
+    // =            Constructors            =
+    // ======================================
+    /**
+     * The constructor is made private to prevent others from instantiating this class.
+     */
+    private ShoppingCartCookie() {
+    }
+
+    // ======================================
+    // =           Business methods         =
+    // ======================================
+    /**
+     * @return true if the shopping cart is kept in a cookie
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * This method returns the shopping cart of a request.
+     *
+     * @param request the HTTP request
+     * @return the cart, empty if there is no cookie or if its signature is wrong
+     */
+    public static ShoppingCartDTO read(final HttpServletRequest request) {
+        final ShoppingCartDTO changed = (ShoppingCartDTO) request.getAttribute(ATTRIBUTE);
+        if (changed != null) {
+            return new ShoppingCartDTO(changed);
+        }
+
+        final Cookie[] cookies = request.getCookies();
+        for (int i = 0; cookies != null && i < cookies.length; i++) {
+            if (COOKIE_NAME.equals(cookies[i].getName())) {
+                final ShoppingCartDTO shoppingCart = decode(cookies[i].getValue());
+                if (shoppingCart != null) {
+                    return shoppingCart;
+                }
+                Trace.warning(_cname, "read", "Invalid shopping cart cookie");
+            }
+        }
+        return new ShoppingCartDTO();
+    }
+
+    /**
+     * This method sends the shopping cart back to the client.
+     *
+     * @param request      the HTTP request
+     * @param response     the HTTP response, not committed yet
+     * @param shoppingCart the cart
+     * @throws CheckException is thrown if the cart has more than MAX_LINES lines
+     */
+    public static void write(final HttpServletRequest request, final HttpServletResponse response, final ShoppingCartDTO shoppingCart) throws CheckException {
+        if (shoppingCart.size() > MAX_LINES)
+            throw new CheckException("The shopping cart cannot have more than " + MAX_LINES + " items");
+
+        request.setAttribute(ATTRIBUTE, shoppingCart);
+        final Cookie cookie = new Cookie(COOKIE_NAME, shoppingCart.isEmpty() ? "" : encode(shoppingCart));
+        cookie.setMaxAge(shoppingCart.isEmpty() ? 0 : MAX_AGE);
+        cookie.setPath(getPath(request));
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * This method removes the shopping cart cookie of the client.
+     *
+     * @param request  the HTTP request
+     * @param response the HTTP response, not committed yet
+     */
+    public static void clear(final HttpServletRequest request, final HttpServletResponse response) {
+        try {
+            write(request, response, new ShoppingCartDTO());
+        } catch (CheckException e) {
+            // An empty cart cannot be too large
+        }
+    }
+
+    /**
+     * This method returns the signed value of a shopping cart.
+     *
+     * @param shoppingCart the cart
+     * @return the item ids and quantities in hexadecimal, then the signature
+     */
+    public static String encode(final ShoppingCartDTO shoppingCart) {
+        final StringBuffer value = new StringBuffer();
+        for (int i = 0; i < shoppingCart.size(); i++) {
+            if (i > 0) {
+                value.append('&');
+            }
+            value.append(urlEncode(shoppingCart.getItemIdAt(i))).append('=').append(shoppingCart.getQuantityAt(i));
+        }
+        final String payload = toHexadecimal(getBytes(value.toString()));
+        return payload + SIGNATURE_SEPARATOR + toHexadecimal(sign(payload));
+    }
+
+    /**
+     * This method checks the signature of a value returned by encode and
+     * returns the shopping cart.
+     *
+     * @param value the signed value
+     * @return the cart, null if the value is not correctly signed
+     */
+    public static ShoppingCartDTO decode(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final int separator = value.lastIndexOf(SIGNATURE_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        final String payload = value.substring(0, separator);
+        // Compares in constant time, not to tell how much of the signature is right
+        if (!MessageDigest.isEqual(toHexadecimal(sign(payload)).getBytes(), value.substring(separator + 1).getBytes())) {
+            return null;
+        }
+
+        final String lines = fromHexadecimal(payload);
+        if (lines == null) {
+            return null;
+        }
+        if (lines.length() == 0) {
+            return new ShoppingCartDTO();
+        }
+        return parse(lines.split("&"));
+    }
+
+    // ======================================
+    // =          Private Methods           =
+    // ======================================
+    // Reads the lines of a cart, e.g. EST-1=2, the item ids being URL encoded
+    private static ShoppingCartDTO parse(final String[] lines) {
+        final ShoppingCartDTO shoppingCart = new ShoppingCartDTO();
+        try {
+            for (int i = 0; i < lines.length; i++) {
+                final int equals = lines[i].indexOf('=');
+                if (equals < 0) {
+                    return null;
+                }
+                shoppingCart.setQuantity(urlDecode(lines[i].substring(0, equals)), Integer.parseInt(lines[i].substring(equals + 1)));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return shoppingCart;
+    }
+
+    private static byte[] sign(final String payload) {
+        try {
+            // A Mac is not thread-safe, one is made for every signature
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(SECRET, ALGORITHM));
+            return mac.doFinal(getBytes(payload));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static byte[] getBytes(final String text) {
+        try {
+            return text.getBytes(ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " is not supported", e);
+        }
+    }
+
+    private static byte[] getSecret() {
+        final String secret = System.getProperty("petstore.cart.secret");
+        byte[] bytes = null;
+        if (secret != null) {
+            try {
+                bytes = secret.getBytes(ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(ENCODING + " is not supported", e);
+            }
+        }
+        if (bytes != null && bytes.length >= MIN_SECRET_LENGTH) {
+            return bytes;
+        }
+        if (ENABLED) {
+            // A random key would make the carts of this node unreadable by the other nodes, a short one guessable
+            Trace.severe(_cname, "getSecret", "petstore.cart.secret must be set to at least " + MIN_SECRET_LENGTH + " bytes");
+            throw new IllegalStateException("petstore.cart.secret must be set to at least " + MIN_SECRET_LENGTH + " bytes in the cookie mode");
+        }
+        // The cookies are not used, the key only signs what this node reads back
+        final byte[] random = new byte[MIN_SECRET_LENGTH];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+
+    private static String toHexadecimal(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEXADECIMAL[(bytes[i] >> 4) & 0x0F];
+            chars[2 * i + 1] = HEXADECIMAL[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    // Returns the text written in hexadecimal, null if it is not valid hexadecimal
+    private static String fromHexadecimal(final String hexadecimal) {
+        if (hexadecimal.length() % 2 != 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[hexadecimal.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hexadecimal.charAt(2 * i), 16);
+            final int low = Character.digit(hexadecimal.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        try {
+            return new String(bytes, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " is not supported", e);
+        }
+    }
+
+    private static String urlEncode(final String text) {
+        try {
+            return URLEncoder.encode(text, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " is not supported", e);
+        }
+    }
+
+    private static String urlDecode(final String text) {
+        try {
+            return URLDecoder.decode(text, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " is not supported", e);
+        }
+    }
+
+    private static String getPath(final HttpServletRequest request) {
+        final String path = request.getContextPath();
+        return (path == null || path.length() == 0) ? "/" : path;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yaps.petstore.web.servlet.cart;
+
+import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
+import com.yaps.petstore.common.logging.Trace;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+
+/**
+ * This listener releases the shopping cart of an HTTP session when the
+ * session is invalidated or times out, so that the web tier only keeps the
+ * carts of the active sessions. It also checks the configuration of the
+ * shopping carts when the application starts, so that a node that can't sign
+ * the cart cookies fails to deploy rather than on its first request.
+ */
+@WebListener
+public class ShoppingCartSessionListener implements HttpSessionListener, ServletContextListener {
+
+    // ======================================
+    // =             Attributes             =
+    // ======================================
+    // Used for logging
+    private final transient String _cname = this.getClass().getName();
+
+    // ======================================
+    // =          Listener methods          =
+    // ======================================
+    public void contextInitialized(final ServletContextEvent event) {
+        final String mname = "contextInitialized";
+        // Loads ShoppingCartCookie : in the cookie mode, it fails if petstore.cart.secret is missing or too short
+        Trace.config(_cname, mname, "Shopping carts kept in " + (ShoppingCartCookie.isEnabled() ? "cookies" : "stateful beans"));
+    }
+
+    public void contextDestroyed(final ServletContextEvent event) {
+    }
+
+    public void sessionCreated(final HttpSessionEvent event) {
+    }
+
+    public void sessionDestroyed(final HttpSessionEvent event) {
+        final String mname = "sessionDestroyed";
+        Trace.entering(_cname, mname, event.getSession().getId());
+
+        ShoppingCartDelegate.release(event.getSession().getId());
+    }
+}
@@ -1,6 +1,8 @@
 package com.yaps.petstore.web.servlet.cart;
 
 import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.web.servlet.AbstractServlet;
 
@@ -22,15 +24,24 @@ public class UpdateCartServlet  extends AbstractServlet {
 
         try {
             // Updates the itemId with quantity into the Shopping Cart
-        	ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId());      	
-            shoppingCartDelegate.updateItemQuantity(request.getParameter("itemId"), 
-                                                    Integer.parseInt(request.getParameter("quantity")));
+            if (ShoppingCartCookie.isEnabled()) {
+                final ShoppingCartDTO shoppingCart = ShoppingCartCookie.read(request);
+                shoppingCart.setQuantity(request.getParameter("itemId"), Integer.parseInt(request.getParameter("quantity")));
+                ShoppingCartCookie.write(request, response, shoppingCart);
+            } else {
+                ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId(), CartIdCookie.get(request, response));
+                shoppingCartDelegate.updateItemQuantity(request.getParameter("itemId"), 
+                                                        Integer.parseInt(request.getParameter("quantity")));
+            }
 
             getServletContext().getRequestDispatcher("/viewcart").forward(request, response);
 
         } catch (RemoteException e) {
             Trace.throwing(getCname(), mname, e);
             getServletContext().getRequestDispatcher("/error.jsp?exception=Cannot remove the item from the shopping cart").forward(request, response);
+        } catch (CheckException e) {
+            Trace.throwing(getCname(), mname, e);
+            getServletContext().getRequestDispatcher("/error.jsp?exception=" + e.getMessage()).forward(request, response);
         }
     }
 }
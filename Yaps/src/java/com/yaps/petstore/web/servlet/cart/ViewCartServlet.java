@@ -1,6 +1,9 @@
 package com.yaps.petstore.web.servlet.cart;
 
+import com.yaps.petstore.common.delegate.CatalogDelegate;
 import com.yaps.petstore.common.delegate.ShoppingCartDelegate;
+import com.yaps.petstore.common.dto.ShoppingCartItemDTO;
+import com.yaps.petstore.common.exception.CheckException;
 import com.yaps.petstore.common.logging.Trace;
 import com.yaps.petstore.web.servlet.AbstractServlet;
 
@@ -10,6 +13,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.Collection;
+import java.util.Iterator;
 
 /**
  * This servlet browses the content of the shopping cart.
@@ -27,12 +31,22 @@ public class ViewCartServlet extends AbstractServlet {
         final Double total;
 
         try {
-            // Gets the content of the Shopping Cart and
-        	ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId());
-            cartItemsDTO = shoppingCartDelegate.getItems();
+            if (ShoppingCartCookie.isEnabled()) {
+                // Gets the items of the Shopping Cart held by the client and adds up their costs
+                cartItemsDTO = CatalogDelegate.findShoppingCartItems(ShoppingCartCookie.read(request));
+                double sum = 0.0;
+                for (Iterator iterator = cartItemsDTO.iterator(); iterator.hasNext();) {
+                    sum += ((ShoppingCartItemDTO) iterator.next()).getTotalCost();
+                }
+                total = new Double(sum);
+            } else {
+                // Gets the content of the Shopping Cart and
+                ShoppingCartDelegate shoppingCartDelegate = new ShoppingCartDelegate(request.getSession().getId(), CartIdCookie.get(request, response));
+                cartItemsDTO = shoppingCartDelegate.getItems();
 
-            // ... the total of the shopping cart and
-            total = shoppingCartDelegate.getTotal();
+                // ... the total of the shopping cart and
+                total = shoppingCartDelegate.getTotal();
+            }
 
             // ... puts all the data into the request
             request.setAttribute("cartItemsDTO", cartItemsDTO);
@@ -44,6 +58,9 @@ public class ViewCartServlet extends AbstractServlet {
         } catch (RemoteException e) {
             Trace.throwing(getCname(), mname, e);
             getServletContext().getRequestDispatcher("/error.jsp?exception=Cannot view the shopping cart").forward(request, response);
+        } catch (CheckException e) {
+            Trace.throwing(getCname(), mname, e);
+            getServletContext().getRequestDispatcher("/error.jsp?exception=Cannot view the shopping cart").forward(request, response);
         }
     }
 }
@@ -3,15 +3,26 @@ import com.barkbank.verifier.VerifyCreditCardServletTest;
 import com.yaps.petstore.common.delegate.CatalogDelegateTest;
 import com.yaps.petstore.common.delegate.CustomerDelegateTest;
 import com.yaps.petstore.common.delegate.OrderDelegateTest;
+import com.yaps.petstore.common.delegate.ShoppingCartRegistryTest;
+import com.yaps.petstore.common.dto.ShoppingCartDTOTest;
 import com.yaps.petstore.server.domain.*;
 import com.yaps.petstore.server.service.CatalogServiceTest;
 import com.yaps.petstore.server.service.CustomerServiceTest;
 import com.yaps.petstore.server.service.OrderServiceTest;
+import com.yaps.petstore.server.util.persistence.QueryResultCacheTest;
+import com.yaps.petstore.server.util.search.CatalogIndexTest;
+import com.yaps.petstore.server.util.search.FacetIndexTest;
+import com.yaps.petstore.server.util.search.SearchResultCacheTest;
+import com.yaps.petstore.server.util.search.PrefixSuggesterTest;
+import com.yaps.petstore.server.util.search.TrigramIndexTest;
+import com.yaps.petstore.server.util.uidgen.TimeOrderedIdGeneratorTest;
 import com.yaps.petstore.server.util.uidgen.UniqueIdGeneratorTest;
+import com.yaps.petstore.server.cart.CartJournalTest;
 import com.yaps.petstore.server.cart.ShoppingCartTest;
 import com.yaps.petstore.web.VisualiseCatalogTest;
 import com.yaps.petstore.web.WebTest;
 import com.yaps.petstore.web.servlet.CreateCustomerServletTest;
+import com.yaps.petstore.web.servlet.cart.ShoppingCartCookieTest;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
@@ -50,9 +61,20 @@ public final class AllExceptDomainTests extends TestCase {
         suite.addTest(CatalogDelegateTest.suite());
         suite.addTest(CustomerDelegateTest.suite());
         suite.addTest(OrderDelegateTest.suite());
+        suite.addTest(ShoppingCartRegistryTest.suite());
 
         // Util
         suite.addTest(UniqueIdGeneratorTest.suite());
+        suite.addTest(QueryResultCacheTest.suite());
+        suite.addTest(TimeOrderedIdGeneratorTest.suite());
+        suite.addTest(CatalogIndexTest.suite());
+        suite.addTest(PrefixSuggesterTest.suite());
+        suite.addTest(TrigramIndexTest.suite());
+        suite.addTest(FacetIndexTest.suite());
+        suite.addTest(SearchResultCacheTest.suite());
+        suite.addTest(ShoppingCartDTOTest.suite());
+        suite.addTest(ShoppingCartCookieTest.suite());
+        suite.addTest(CartJournalTest.suite());
 
         // Web
         suite.addTest(WebTest.suite());
@@ -3,6 +3,7 @@ import com.barkbank.verifier.VerifyCreditCardServletTest;
 import com.yaps.petstore.common.delegate.CatalogDelegateTest;
 import com.yaps.petstore.common.delegate.CustomerDelegateTest;
 import com.yaps.petstore.common.delegate.OrderDelegateTest;
+import com.yaps.petstore.common.delegate.ShoppingCartRegistryTest;
 import com.yaps.petstore.server.domain.*;
 import com.yaps.petstore.server.service.CatalogServiceTest;
 import com.yaps.petstore.server.service.CustomerServiceTest;
@@ -51,6 +52,7 @@ public final class AllTests extends TestCase {
         suite.addTest(CatalogDelegateTest.suite());
         suite.addTest(CustomerDelegateTest.suite());
         suite.addTest(OrderDelegateTest.suite());
+        suite.addTest(ShoppingCartRegistryTest.suite());
 
         // Util
         suite.addTest(UniqueIdGeneratorTest.suite());
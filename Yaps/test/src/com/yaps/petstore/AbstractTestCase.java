@@ -2,6 +2,10 @@ package com.yaps.petstore;
 
 import junit.framework.TestCase;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public abstract class AbstractTestCase extends TestCase {
 
     protected AbstractTestCase() {
@@ -20,4 +24,40 @@ public abstract class AbstractTestCase extends TestCase {
         return "" + id;
     }
 
+    /**
+     * This method ensures that threads taking ids at the same time never get
+     * the same one.
+     *
+     * @param ids          where the threads take their ids from
+     * @param threadCount  number of threads
+     * @param idsPerThread number of ids taken by each thread
+     */
+    protected void assertUniqueIds(final IdSource ids, final int threadCount, final int idsPerThread) throws InterruptedException {
+        final Set<String> taken = Collections.synchronizedSet(new HashSet<String>());
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < idsPerThread; j++) {
+                        taken.add(ids.nextId());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+
+        assertEquals("All the ids must be different", threadCount * idsPerThread, taken.size());
+    }
+
+    /**
+     * Gives the ids checked by assertUniqueIds.
+     */
+    protected interface IdSource {
+
+        String nextId();
+    }
+
 }
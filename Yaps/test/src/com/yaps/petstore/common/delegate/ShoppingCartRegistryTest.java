@@ -0,0 +1,183 @@
+package com.yaps.petstore.common.delegate;
+
+import com.yaps.petstore.AbstractTestCase;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import com.yaps.petstore.server.cart.ShoppingCart;
+import junit.framework.TestSuite;
+
+import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * This class tests the ShoppingCartRegistry class, with shopping carts that
+ * don't need an EJB container.
+ */
+public final class ShoppingCartRegistryTest extends AbstractTestCase {
+
+    // Runs the sweeps straight away, so that they are over when get returns
+    private static final Executor SAME_THREAD = new Executor() {
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final ShoppingCartRegistry.CartFactory FACTORY = new ShoppingCartRegistry.CartFactory() {
+        public ShoppingCart create() {
+            return new FakeShoppingCart();
+        }
+    };
+
+    public ShoppingCartRegistryTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(ShoppingCartRegistryTest.class);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that, over the maximum, the least recently used carts
+     * are released first, down to 90% of the maximum.
+     */
+    public void testDelegateEvictLeastRecentlyUsed() throws Exception {
+        final ShoppingCartRegistry registry = new ShoppingCartRegistry(3600000L, 10, 3600000L, SAME_THREAD);
+        final FakeShoppingCart[] shoppingCarts = new FakeShoppingCart[11];
+        for (int i = 0; i < 10; i++) {
+            shoppingCarts[i] = get(registry, i);
+            Thread.sleep(2);
+        }
+        // The first session is used again, the second one is now the least recently used
+        assertSame("Same cart", shoppingCarts[0], get(registry, 0));
+        Thread.sleep(2);
+        assertEquals("No cart released yet", 10, registry.size());
+
+        shoppingCarts[10] = get(registry, 10);
+
+        assertEquals("Carts left", 9, registry.size());
+        assertFalse("Recently used", shoppingCarts[0].isRemoved());
+        assertTrue("Least recently used", shoppingCarts[1].isRemoved());
+        assertTrue("Least recently used", shoppingCarts[2].isRemoved());
+        for (int i = 3; i < 11; i++) {
+            assertFalse("Recently used " + i, shoppingCarts[i].isRemoved());
+        }
+        assertNotSame("A released cart is replaced", shoppingCarts[1], get(registry, 1));
+    }
+
+    /**
+     * This test ensures that the idle carts are released by a sweep, and that
+     * a cart used since the sweep read its last access is not.
+     */
+    public void testDelegateEvictIdle() throws Exception {
+        final ShoppingCartRegistry registry = new ShoppingCartRegistry(1000L, 10, 3600000L, SAME_THREAD);
+        final FakeShoppingCart idle = get(registry, 0);
+        final FakeShoppingCart used = get(registry, 1);
+        Thread.sleep(5);
+        get(registry, 1);
+        final long lastAccess = registry.getEntry("session1").getLastAccess();
+
+        registry.sweep(lastAccess + 500L);
+        assertEquals("No cart idle yet", 2, registry.size());
+
+        // Only the first cart has not been used for more than a second
+        registry.sweep(lastAccess + 1000L);
+        assertEquals("Carts left", 1, registry.size());
+        assertTrue("Idle cart released", idle.isRemoved());
+        assertFalse("Used cart kept", used.isRemoved());
+    }
+
+    /**
+     * This test ensures that a cart released while a request of its session is
+     * getting it is never used : the request gets a new cart.
+     */
+    public void testDelegateReleasedCartNotUsed() throws Exception {
+        final ShoppingCartRegistry registry = new ShoppingCartRegistry(3600000L, 10, 3600000L, SAME_THREAD);
+        final FakeShoppingCart released = get(registry, 0);
+
+        // A sweep has expired the cart, and not removed it from the registry yet
+        final ShoppingCartRegistry.CartEntry entry = registry.getEntry("session0");
+        assertTrue("Expired", entry.expire(entry.getLastAccess()));
+        assertFalse("An expired cart can't be touched", entry.touch());
+
+        final FakeShoppingCart shoppingCart = get(registry, 0);
+        assertNotSame("New cart", released, shoppingCart);
+        assertEquals("Cart id loaded", "cart0", shoppingCart.getCartId());
+        assertEquals("One cart", 1, registry.size());
+
+        // A sweep that read the last access before the cart was used doesn't release it
+        final ShoppingCartRegistry.CartEntry newEntry = registry.getEntry("session0");
+        final long lastAccess = newEntry.getLastAccess();
+        get(registry, 0);
+        assertFalse("Used since", newEntry.expire(lastAccess));
+        assertSame("Same cart", shoppingCart, get(registry, 0));
+    }
+
+    //==================================
+    //=         Private Methods        =
+    //==================================
+    private FakeShoppingCart get(final ShoppingCartRegistry registry, final int session) throws RemoteException {
+        return (FakeShoppingCart) registry.get("session" + session, "cart" + session, FACTORY);
+    }
+
+    //==================================
+    //=          Inner classes         =
+    //==================================
+    private static final class FakeShoppingCart implements ShoppingCart {
+
+        private final ShoppingCartDTO _shoppingCart = new ShoppingCartDTO();
+        private String _cartId;
+        private boolean _removed = false;
+
+        public void load(final String cartId) {
+            _cartId = cartId;
+        }
+
+        public Map getCart() {
+            return _shoppingCart.toMap();
+        }
+
+        public ShoppingCartDTO getCartDTO() {
+            return new ShoppingCartDTO(_shoppingCart);
+        }
+
+        public Collection getItems() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void addItem(final String itemId) {
+            _shoppingCart.setQuantity(itemId, 1);
+        }
+
+        public void removeItem(final String itemId) {
+            _shoppingCart.remove(itemId);
+        }
+
+        public void updateItemQuantity(final String itemId, final int newQty) {
+            _shoppingCart.setQuantity(itemId, newQty);
+        }
+
+        public Double getTotal() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void empty() {
+            _shoppingCart.clear();
+        }
+
+        public void remove() {
+            _removed = true;
+        }
+
+        private String getCartId() {
+            return _cartId;
+        }
+
+        private boolean isRemoved() {
+            return _removed;
+        }
+    }
+}
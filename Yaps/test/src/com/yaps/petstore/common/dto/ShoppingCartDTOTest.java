@@ -0,0 +1,98 @@
+package com.yaps.petstore.common.dto;
+
+import com.yaps.petstore.AbstractTestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class tests the ShoppingCartDTO class
+ */
+public final class ShoppingCartDTOTest extends AbstractTestCase {
+
+    public ShoppingCartDTOTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(ShoppingCartDTOTest.class);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that the lines keep the order of the items added.
+     */
+    public void testDTOSetQuantity() throws Exception {
+        final ShoppingCartDTO shoppingCart = new ShoppingCartDTO();
+        for (int i = 1; i <= 6; i++) {
+            shoppingCart.setQuantity("item" + i, i);
+        }
+        assertEquals("size", 6, shoppingCart.size());
+        assertEquals("quantity", 3, shoppingCart.getQuantity("item3"));
+        assertEquals("unknown item", 0, shoppingCart.getQuantity("item9"));
+
+        shoppingCart.setQuantity("item2", 10);
+        shoppingCart.remove("item1");
+        shoppingCart.setQuantity("item4", 0);
+        assertEquals("cart", "ShoppingCartDTO{item2=10,item3=3,item5=5,item6=6}", shoppingCart.toString());
+        assertEquals("first line", "item2", shoppingCart.getItemIdAt(0));
+        assertEquals("first quantity", 10, shoppingCart.getQuantityAt(0));
+        assertEquals("ids", "[item2, item3, item5, item6]", shoppingCart.getItemIds().toString());
+
+        try {
+            shoppingCart.getItemIdAt(4);
+            fail("There are only four lines");
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+        shoppingCart.clear();
+        assertTrue("empty", shoppingCart.isEmpty());
+    }
+
+    /**
+     * This test ensures that the Map representation of a cart gives the same cart.
+     */
+    public void testDTOMap() throws Exception {
+        final Map map = new HashMap();
+        map.put("item1", new Integer(2));
+        map.put("item2", new Integer(1));
+
+        final ShoppingCartDTO shoppingCart = ShoppingCartDTO.fromMap(map);
+        assertEquals("size", 2, shoppingCart.size());
+        assertEquals("quantity", 2, shoppingCart.getQuantity("item1"));
+        assertEquals("map", map, shoppingCart.toMap());
+
+        // The copy does not share the lines
+        final ShoppingCartDTO copy = new ShoppingCartDTO(shoppingCart);
+        copy.setQuantity("item3", 1);
+        assertEquals("size", 2, shoppingCart.size());
+        assertEquals("copy size", 3, copy.size());
+    }
+
+    /**
+     * This test ensures that a cart is the same once serialized and read again.
+     */
+    public void testDTOSerialize() throws Exception {
+        final ShoppingCartDTO shoppingCart = new ShoppingCartDTO();
+        shoppingCart.setQuantity("item1", 2);
+        shoppingCart.setQuantity("item2", 7);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(shoppingCart);
+        out.close();
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final ShoppingCartDTO result = (ShoppingCartDTO) in.readObject();
+
+        assertEquals("cart", shoppingCart.toString(), result.toString());
+        result.setQuantity("item3", 1);
+        assertEquals("size", 3, result.size());
+    }
+}
@@ -0,0 +1,172 @@
+package com.yaps.petstore.server.cart;
+
+import com.yaps.petstore.AbstractTestCase;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * This class tests the CartJournal class
+ */
+public final class CartJournalTest extends AbstractTestCase {
+
+    private File _directory;
+
+    public CartJournalTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(CartJournalTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        _directory = File.createTempFile("carts", "");
+        _directory.delete();
+    }
+
+    protected void tearDown() throws Exception {
+        final File[] files = _directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _directory.delete();
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that the carts are read back after a restart.
+     */
+    public void testServiceLoadCarts() throws Exception {
+        CartJournal journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        assertNull("No cart yet", journal.load("session1"));
+        journal.setQuantity("session1", "EST-1", 1);
+        journal.setQuantity("session1", "EST-2", 1);
+        journal.setQuantity("session1", "EST-1", 3);
+        journal.setQuantity("session1", "EST-2", 0);
+        journal.setQuantity("session2", "EST-6", 1);
+        journal.empty("session2");
+        journal.close();
+
+        journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        assertEquals("Empty carts are not read back", 1, journal.getSize());
+        assertEquals("cart", "ShoppingCartDTO{EST-1=3}", journal.load("session1").toString());
+        assertNull("Emptied cart", journal.load("session2"));
+        assertNull("Unknown cart", journal.load("session3"));
+        journal.close();
+
+        // Loading a cart writes nothing
+        journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        assertEquals("carts", 1, journal.getSize());
+        journal.close();
+    }
+
+    /**
+     * This test ensures that the next session of a browser reloads its cart,
+     * and that the cart still survives a restart.
+     */
+    public void testServiceReloadCart() throws Exception {
+        CartJournal journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        assertNull("No cart yet", journal.load("cartX"));
+        journal.setQuantity("cartX", "EST-1", 2);
+
+        // The next session of the same browser
+        assertEquals("cart", "ShoppingCartDTO{EST-1=2}", journal.load("cartX").toString());
+        journal.setQuantity("cartX", "EST-2", 1);
+        assertEquals("cart", "ShoppingCartDTO{EST-1=2,EST-2=1}", journal.load("cartX").toString());
+        journal.close();
+
+        journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        assertEquals("cart", "ShoppingCartDTO{EST-1=2,EST-2=1}", journal.load("cartX").toString());
+        assertEquals("cart", "ShoppingCartDTO{EST-1=2,EST-2=1}", journal.load("cartX").toString());
+        journal.close();
+    }
+
+    /**
+     * This test ensures that a record torn by a crash is cut off.
+     */
+    public void testServiceCutTornRecord() throws Exception {
+        CartJournal journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        journal.setQuantity("session1", "EST-1", 2);
+        journal.setQuantity("session1", "EST-2", 5);
+        journal.close();
+
+        // The last record is only half written
+        final RandomAccessFile file = new RandomAccessFile(new File(_directory, "carts.journal"), "rw");
+        final long length = file.length();
+        file.setLength(length - 5);
+        file.close();
+
+        journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        final ShoppingCartDTO shoppingCart = journal.load("session1");
+        assertEquals("cart", "ShoppingCartDTO{EST-1=2}", shoppingCart.toString());
+        journal.setQuantity("session1", "EST-3", 1);
+        journal.close();
+
+        journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        assertEquals("cart", "ShoppingCartDTO{EST-1=2,EST-3=1}", journal.load("session1").toString());
+        journal.close();
+    }
+
+    /**
+     * This test ensures that the journal is folded into a snapshot when it grows too large.
+     */
+    public void testServiceCompact() throws Exception {
+        CartJournal journal = open(1024);
+        for (int i = 0; i < 100; i++) {
+            journal.setQuantity("session" + (i % 10), "EST-" + i, i + 1);
+        }
+        journal.empty("session9");
+        journal.flush();
+        journal.close();
+        assertTrue("Snapshot written", new File(_directory, "carts.snapshot").exists());
+        assertTrue("Journal compacted", new File(_directory, "carts.journal").length() < 1024);
+
+        journal = open(1024);
+        assertEquals("carts", 9, journal.getSize());
+        ShoppingCartDTO shoppingCart = journal.load("session3");
+        assertEquals("lines", 10, shoppingCart.size());
+        assertEquals("quantity", 94, shoppingCart.getQuantity("EST-93"));
+
+        // Read from the snapshot and the journal written since
+        journal.setQuantity("session3", "EST-3", 0);
+        journal.setQuantity("session3", "EST-100", 1);
+        shoppingCart = journal.load("session3");
+        assertEquals("lines", 10, shoppingCart.size());
+        assertEquals("quantity", 0, shoppingCart.getQuantity("EST-3"));
+        assertEquals("quantity", 1, shoppingCart.getQuantity("EST-100"));
+        assertNull("Emptied cart", journal.load("session9"));
+        journal.close();
+    }
+
+    /**
+     * This test ensures that close writes every change queued before it, and
+     * ignores the ones recorded after it.
+     */
+    public void testServiceCloseWritesQueued() throws Exception {
+        CartJournal journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        for (int i = 0; i < 1000; i++) {
+            journal.setQuantity("cart1", "EST-" + (i % 20), i + 1);
+        }
+        journal.close();
+        journal.setQuantity("cart1", "EST-0", 1);
+        journal.close();
+
+        journal = open(CartJournal.DEFAULT_COMPACT_SIZE);
+        final ShoppingCartDTO shoppingCart = journal.load("cart1");
+        assertEquals("lines", 20, shoppingCart.size());
+        assertEquals("quantity", 981, shoppingCart.getQuantity("EST-0"));
+        journal.close();
+    }
+
+    //==================================
+    //=         Private Methods        =
+    //==================================
+    private CartJournal open(final long compactSize) throws Exception {
+        return new CartJournal(_directory, compactSize, CartJournal.DEFAULT_MAX_AGE);
+    }
+}
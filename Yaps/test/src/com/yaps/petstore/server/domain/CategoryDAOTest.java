@@ -4,6 +4,8 @@ import com.yaps.petstore.AbstractTestCase;
 import com.yaps.petstore.server.domain.category.Category;
 import com.yaps.petstore.server.domain.category.CategoryDAO;
 import com.yaps.petstore.server.domain.item.ItemDAO;
+import com.yaps.petstore.server.util.persistence.CacheStatistics;
+import com.yaps.petstore.server.util.persistence.EntityHandler;
 import com.yaps.petstore.common.exception.*;
 
 import junit.framework.TestSuite;
@@ -12,6 +14,8 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * This class tests the CategoryDAO class
@@ -264,6 +268,161 @@ public final class CategoryDAOTest extends AbstractTestCase {
 
     }
 
+    /**
+     * This test makes sure that updating an object that has been deleted in the
+     * meantime fails, although the object is not read before being updated.
+     */
+    public void testDomainUpdateDeletedCategory() throws Exception {
+        final String id = getUniqueId();
+
+        // Creates an object
+        createCategory(id);
+
+        // Ensures that the object exists
+        Category category = null;
+        try {
+            category = findCategory(id);
+        } catch (ObjectNotFoundException e) {
+            fail("Object has been created it should be found");
+        }
+
+        // Deletes the object
+        removeCategory(id);
+
+        // Updates the deleted object. An exception has to be thrown
+        try {
+            updateCategory(category, id + 1);
+            fail("Updating a deleted object should break");
+        } catch (ObjectNotFoundException e) {
+        }
+    }
+
+    /**
+     * This test ensures that several objects can be inserted in one batch. The
+     * batch size is smaller than the number of objects so that the persistence
+     * context is flushed in the middle of the batch.
+     */
+    public void testDomainInsertAllCategories() throws Exception {
+        final String[] ids = {getUniqueId(), getUniqueId(), getUniqueId()};
+
+        // First findAll
+        final int firstSize = findAllCategories();
+
+        // Creates the objects in one batch
+        final Collection<Category> categories = new ArrayList<Category>();
+        for (int i = 0; i < ids.length; i++) {
+            categories.add(new Category(ids[i], "name" + ids[i], "description" + ids[i]));
+        }
+        _dao.insertAll(categories, 2);
+
+        // Ensures that the objects exist
+        for (int i = 0; i < ids.length; i++) {
+            try {
+                checkCategory(findCategory(ids[i]), ids[i]);
+            } catch (ObjectNotFoundException e) {
+                fail("Object has been created it should be found");
+            }
+        }
+
+        // Checks that the collection size has increase of three
+        if (firstSize + ids.length != findAllCategories()) fail("The collection size should have increased by 3");
+
+        // Cleans the test environment
+        for (int i = 0; i < ids.length; i++) {
+            removeCategory(ids[i]);
+        }
+    }
+
+    /**
+     * This test ensures that walking the pages one after the other returns every
+     * object once, in identifier order.
+     */
+    public void testDomainFindPageCategories() throws Exception {
+        final String[] ids = {getUniqueId(), getUniqueId(), getUniqueId()};
+        for (int i = 0; i < ids.length; i++) {
+            createCategory(ids[i]);
+        }
+
+        // Walks through all the pages, two objects at a time
+        final int size = findAllCategories();
+        int found = 0;
+        String afterId = null;
+        Collection<Category> page = _dao.findPage(afterId, 2);
+        while (!page.isEmpty()) {
+            if (page.size() > 2) fail("A page should not be bigger than the limit");
+            for (Category category : page) {
+                if (afterId != null && category.getId().compareTo(afterId) <= 0) fail("Pages should be ordered by id");
+                afterId = category.getId();
+                found++;
+            }
+            page = _dao.findPage(afterId, 2);
+        }
+
+        // Checks that every object has been found
+        if (size != found) fail("Every object should have been found once");
+
+        // Cleans the test environment
+        for (int i = 0; i < ids.length; i++) {
+            removeCategory(ids[i]);
+        }
+    }
+
+    /**
+     * This test ensures that streaming the whole table hands every object once
+     * to the handler, even though the persistence context is cleared on the way.
+     */
+    public void testDomainExportAllCategories() throws Exception {
+        final String[] ids = {getUniqueId(), getUniqueId(), getUniqueId()};
+        for (int i = 0; i < ids.length; i++) {
+            createCategory(ids[i]);
+        }
+
+        // Streams all the objects, two at a time
+        final Collection<String> exported = new ArrayList<String>();
+        final int count = _dao.exportAll(new EntityHandler<Category>() {
+            public void handle(final Category category) {
+                exported.add(category.getId());
+            }
+        }, 2);
+
+        // Checks that every object has been handled
+        assertEquals("count", findAllCategories(), count);
+        assertEquals("handled", count, exported.size());
+        for (int i = 0; i < ids.length; i++) {
+            if (!exported.contains(ids[i])) fail("Object has been created it should be exported");
+        }
+
+        // Cleans the test environment
+        for (int i = 0; i < ids.length; i++) {
+            removeCategory(ids[i]);
+        }
+    }
+
+    /**
+     * This test ensures that a created category is put in the shared cache, and
+     * that it is no longer found there once it has been evicted.
+     */
+    public void testDomainCachedCategory() throws Exception {
+        final String id = getUniqueId();
+        final long hits = CacheStatistics.getHits("Category");
+        final long misses = CacheStatistics.getMisses("Category");
+
+        // The created object is in the cache when it is looked up
+        createCategory(id);
+        checkCategory(findCategory(id), id);
+        assertEquals("hits", hits + 1, CacheStatistics.getHits("Category"));
+        assertEquals("misses", misses, CacheStatistics.getMisses("Category"));
+
+        // Once evicted, it is no longer in the cache
+        _dao.evict(id);
+        checkCategory(findCategory(id), id);
+        assertEquals("hits", hits + 1, CacheStatistics.getHits("Category"));
+        assertEquals("misses", misses + 1, CacheStatistics.getMisses("Category"));
+
+        // Cleans the test environment
+        removeCategory(id);
+    }
+
     //==================================
     //=         Private Methods        =
     //==================================
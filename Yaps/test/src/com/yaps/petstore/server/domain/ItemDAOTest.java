@@ -7,6 +7,7 @@ import com.yaps.petstore.server.domain.item.Item;
 import com.yaps.petstore.server.domain.item.ItemDAO;
 import com.yaps.petstore.server.domain.product.Product;
 import com.yaps.petstore.server.domain.product.ProductDAO;
+import com.yaps.petstore.common.dto.ItemDTO;
 import com.yaps.petstore.common.exception.*;
 
 import junit.framework.TestSuite;
@@ -15,6 +16,9 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 
 /**
  * This class tests the ItemDAO class
@@ -190,6 +194,71 @@ public final class ItemDAOTest extends AbstractTestCase {
         }
     }
 
+    /**
+     * This test ensures that the listing queries fill the DTOs, including the
+     * data of the linked product, without loading the entities.
+     */
+    public void testDomainFindAllItemDTOsForAProduct() throws Exception {
+
+    	Product newProduct = createNewProduct();
+    	final String productId = newProduct.getId();
+
+        // Create an object
+        Item item = createItemForProduct(newProduct);
+
+        // Reads the DTOs of the product
+        final Collection dtos = _dao.findAllDTOsInProduct(productId);
+        assertEquals("size", 1, dtos.size());
+
+        // Checks that the DTO has been filled
+        final ItemDTO itemDTO = (ItemDTO) dtos.iterator().next();
+        assertEquals("id", item.getId(), itemDTO.getId());
+        assertEquals("name", item.getName(), itemDTO.getName());
+        assertEquals("unitCost", new Double(_defaultUnitCost), new Double(itemDTO.getUnitCost()));
+        assertEquals("imagePath", item.getImagePath(), itemDTO.getImagePath());
+        assertEquals("productId", productId, itemDTO.getProductId());
+        assertEquals("productName", newProduct.getName(), itemDTO.getProductName());
+        assertEquals("productDescription", newProduct.getDescription(), itemDTO.getProductDescription());
+
+        // Cleans the test environment
+        _dao.remove(item.getId());
+        removeProduct(newProduct);
+    }
+
+    /**
+     * This test ensures that the items of a list of ids are found with their
+     * product, the unknown ids being ignored.
+     */
+    public void testDomainFindItemsByIds() throws Exception {
+
+    	Product newProduct = createNewProduct();
+
+        // Create two objects
+        Item item1 = createItemForProduct(newProduct);
+        Item item2 = createItemForProduct(newProduct);
+
+        // Reads them with an unknown id
+        final Collection<String> ids = new ArrayList<String>();
+        ids.add(item1.getId());
+        ids.add(item2.getId());
+        ids.add(getUniqueId());
+        final Collection<Item> items = _dao.findByIds(ids);
+        assertEquals("size", 2, items.size());
+        for (Iterator<Item> iterator = items.iterator(); iterator.hasNext();) {
+            final Item item = iterator.next();
+            assertTrue("id", item.getId().equals(item1.getId()) || item.getId().equals(item2.getId()));
+            assertEquals("productDescription", newProduct.getDescription(), item.getProduct().getDescription());
+        }
+
+        // No id, no item
+        assertTrue("empty", _dao.findByIds(new ArrayList<String>()).isEmpty());
+
+        // Cleans the test environment
+        _dao.remove(item1.getId());
+        _dao.remove(item2.getId());
+        removeProduct(newProduct);
+    }
+
     /**
      * This method ensures that creating an object works. It first finds the object,
      * makes sure it doesn't exist, creates it and checks it then exists.
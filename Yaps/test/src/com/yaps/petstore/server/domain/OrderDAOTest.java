@@ -1,15 +1,34 @@
 package com.yaps.petstore.server.domain;
 
 import com.yaps.petstore.AbstractTestCase;
+import com.yaps.petstore.server.domain.category.Category;
+import com.yaps.petstore.server.domain.category.CategoryDAO;
 import com.yaps.petstore.server.domain.customer.Customer;
 import com.yaps.petstore.server.domain.customer.CustomerDAO;
+import com.yaps.petstore.server.domain.item.Item;
+import com.yaps.petstore.server.domain.item.ItemDAO;
 import com.yaps.petstore.server.domain.order.Order;
 import com.yaps.petstore.server.domain.order.OrderDAO;
+import com.yaps.petstore.server.domain.orderline.OrderLine;
+import com.yaps.petstore.server.domain.orderline.OrderLineDAO;
+import com.yaps.petstore.server.domain.product.Product;
+import com.yaps.petstore.server.domain.product.ProductDAO;
+import com.yaps.petstore.server.util.persistence.EntityManagerFactoryRegistry;
 import com.yaps.petstore.common.exception.*;
+import com.yaps.petstore.common.logging.Trace;
 
 import junit.framework.TestSuite;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
 
 /**
  * This class tests the OrderDAO class
@@ -17,6 +36,16 @@ import java.util.Date;
 public final class OrderDAOTest extends AbstractTestCase {
     private final OrderDAO _orderDAO = new OrderDAO();
     private final CustomerDAO _customerDAO = new CustomerDAO();
+    private final OrderLineDAO _orderLineDAO = new OrderLineDAO();
+    private final CategoryDAO _categoryDAO = new CategoryDAO();
+    private final ProductDAO _productDAO = new ProductDAO();
+    private final ItemDAO _itemDAO = new ItemDAO();
+
+    // Number of times an order is read to count the selects
+    private static final int READS = 20;
+
+    // Used for logging
+    private static final String _cname = OrderDAOTest.class.getName();
 
     public OrderDAOTest(final String s) {
         super(s);
@@ -125,6 +154,107 @@ public final class OrderDAOTest extends AbstractTestCase {
 
     }
 
+    /**
+     * This test ensures that the fetch plan of an order loads its customer, its
+     * lines and their items, which can still be used once the EntityManager is
+     * closed, and fails like a lookup by primary key for an unknown order.
+     */
+    public void testDomainFindOrderWithLines() throws Exception {
+        final String id = getUniqueId();
+
+        // Creates an object with two lines
+        final String orderId = createOrder(id);
+        final Order created = (Order) _orderDAO.findByPrimaryKey(orderId);
+        final Item item = createItem(id);
+        final OrderLine firstLine = new OrderLine(2, 10.0, created, item);
+        _orderLineDAO.insert(firstLine);
+        final OrderLine secondLine = new OrderLine(3, 10.0, created, item);
+        _orderLineDAO.insert(secondLine);
+
+        // Finds it with its graph in an EntityManager closed straight after
+        final EntityManager em = EntityManagerFactoryRegistry.createEntityManager("petstorePU");
+        final OrderDAO orderDAO = new OrderDAO();
+        orderDAO.setEntityManager(em);
+        final Order order;
+        try {
+            order = orderDAO.findOrderWithLines(orderId);
+        } finally {
+            em.close();
+        }
+
+        // The lines and their items have been loaded with the order
+        checkOrder(order, id);
+        assertEquals("Order lines", 2, order.getOrderLines().size());
+        for (Iterator iterator = order.getOrderLines().iterator(); iterator.hasNext();) {
+            final OrderLine orderLine = (OrderLine) iterator.next();
+            assertEquals("Item name", "name" + id, orderLine.getItem().getName());
+        }
+
+        // Cleans the test environment
+        _orderLineDAO.remove(firstLine.getId());
+        _orderLineDAO.remove(secondLine.getId());
+        removeOrder(id, orderId);
+        removeItem(item);
+
+        try {
+            _orderDAO.findOrderWithLines(orderId);
+            fail("Object has been deleted it shouldn't be found");
+        } catch (ObjectNotFoundException e) {
+        }
+    }
+
+    /**
+     * This test ensures that the fetch plan reads an order, its customer, its
+     * lines and their items in one select, where the three lookups findOrder
+     * used to do need more. The selects are counted by the MySQL server (the
+     * Com_select status), so no other client should use the database meanwhile.
+     */
+    public void testDomainFindOrderWithLinesInOneSelect() throws Exception {
+        final String mname = "testDomainFindOrderWithLinesInOneSelect";
+        final String id = getUniqueId();
+
+        // Creates an object with two lines
+        final String orderId = createOrder(id);
+        final Order created = (Order) _orderDAO.findByPrimaryKey(orderId);
+        final Item item = createItem(id);
+        final OrderLine firstLine = new OrderLine(2, 10.0, created, item);
+        _orderLineDAO.insert(firstLine);
+        final OrderLine secondLine = new OrderLine(3, 10.0, created, item);
+        _orderLineDAO.insert(secondLine);
+
+        final Connection connection = getConnection();
+        try {
+            // Warms up the shared cache and the query parsing of both paths
+            findOrderWithLookups(orderId);
+            findOrderWithFetchPlan(orderId);
+
+            long selects = getSelectCount(connection);
+            for (int i = 0; i < READS; i++) {
+                findOrderWithLookups(orderId);
+            }
+            final long lookupSelects = getSelectCount(connection) - selects;
+
+            selects = getSelectCount(connection);
+            for (int i = 0; i < READS; i++) {
+                findOrderWithFetchPlan(orderId);
+            }
+            final long fetchPlanSelects = getSelectCount(connection) - selects;
+
+            Trace.info(_cname, mname, "Selects per order : " + ((double) lookupSelects / READS) + " with three lookups, "
+                    + ((double) fetchPlanSelects / READS) + " with the fetch plan");
+            assertEquals("One select per order with the fetch plan", READS, fetchPlanSelects);
+            assertTrue("More selects with three lookups", lookupSelects > fetchPlanSelects);
+        } finally {
+            connection.close();
+        }
+
+        // Cleans the test environment
+        _orderLineDAO.remove(firstLine.getId());
+        _orderLineDAO.remove(secondLine.getId());
+        removeOrder(id, orderId);
+        removeItem(item);
+    }
+
     /**
      * This test tries to create an object with a invalid values.
      */
@@ -281,6 +411,23 @@ public final class OrderDAOTest extends AbstractTestCase {
         return order.getId();
     }
 
+    // Creates a category first, then a product linked to this category and an item linked to the product
+    private Item createItem(final String id) throws CreateException, CheckException {
+        final Category category = new Category("cat" + id, "name" + id, "description" + id);
+        _categoryDAO.insert(category);
+        final Product product = new Product("prod" + id, "name" + id, "description" + id, category);
+        _productDAO.insert(product);
+        final Item item = new Item("item" + id, "name" + id, 1, product);
+        _itemDAO.insert(item);
+        return item;
+    }
+
+    private void removeItem(final Item item) throws ObjectNotFoundException {
+        _itemDAO.remove(item.getId());
+        _productDAO.remove(item.getProduct().getId());
+        _categoryDAO.remove(item.getProduct().getCategory().getId());
+    }
+
     // Creates a customer and updates the order with this new customer
     private void updateOrder(final Order order, final String id) throws UpdateException, CreateException, ObjectNotFoundException {
     	String oldCustomerId = order.getCustomer().getId();
@@ -329,6 +476,64 @@ public final class OrderDAOTest extends AbstractTestCase {
         assertNotNull("Customer", order.getCustomer());
     }
 
+    // Reads an order, its customer and its lines the way findOrder used to, in an empty persistence context
+    private void findOrderWithLookups(final String orderId) throws FinderException {
+        final EntityManager em = EntityManagerFactoryRegistry.createEntityManager("petstorePU");
+        try {
+            final OrderDAO orderDAO = new OrderDAO();
+            orderDAO.setEntityManager(em);
+            final CustomerDAO customerDAO = new CustomerDAO();
+            customerDAO.setEntityManager(em);
+            final OrderLineDAO orderLineDAO = new OrderLineDAO();
+            orderLineDAO.setEntityManager(em);
+
+            final Order order = (Order) orderDAO.findByPrimaryKey(orderId);
+            order.setCustomer((Customer) customerDAO.findByPrimaryKey(order.getCustomer().getId()));
+            order.setOrderLines(orderLineDAO.findAllInOrder(orderId));
+            readGraph(order);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Reads an order with its fetch plan, in an empty persistence context
+    private void findOrderWithFetchPlan(final String orderId) throws FinderException {
+        final EntityManager em = EntityManagerFactoryRegistry.createEntityManager("petstorePU");
+        try {
+            final OrderDAO orderDAO = new OrderDAO();
+            orderDAO.setEntityManager(em);
+            readGraph(orderDAO.findOrderWithLines(orderId));
+        } finally {
+            em.close();
+        }
+    }
+
+    // Reads what OrderServiceBean.transformOrder2DTO reads
+    private void readGraph(final Order order) {
+        assertNotNull("Customer", order.getCustomer().getFirstname());
+        for (Iterator iterator = order.getOrderLines().iterator(); iterator.hasNext();) {
+            assertNotNull("Item name", ((OrderLine) iterator.next()).getItem().getName());
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        final Map<String, Object> properties = EntityManagerFactoryRegistry.getEntityManagerFactory("petstorePU").getProperties();
+        return DriverManager.getConnection((String) properties.get("javax.persistence.jdbc.url"),
+                (String) properties.get("javax.persistence.jdbc.user"), (String) properties.get("javax.persistence.jdbc.password"));
+    }
+
+    // Returns the number of selects the MySQL server has run, SHOW statements being counted apart
+    private long getSelectCount(final Connection connection) throws SQLException {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet resultSet = statement.executeQuery("SHOW GLOBAL STATUS LIKE 'Com_select'");
+            resultSet.next();
+            return resultSet.getLong(2);
+        } finally {
+            statement.close();
+        }
+    }
+
     protected String getUniqueId() {
     	String id = _orderDAO.getUniqueId();
     	return id;
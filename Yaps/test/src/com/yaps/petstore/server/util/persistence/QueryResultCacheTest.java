@@ -0,0 +1,109 @@
+package com.yaps.petstore.server.util.persistence;
+
+import com.yaps.petstore.AbstractTestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class tests the QueryResultCache class
+ */
+public final class QueryResultCacheTest extends AbstractTestCase {
+
+    public QueryResultCacheTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(QueryResultCacheTest.class);
+    }
+
+    protected void tearDown() throws Exception {
+        QueryResultCache.invalidateAll();
+        QueryResultCache.setMaxSize(QueryResultCache.DEFAULT_MAX_SIZE);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that a result put in the cache is found again with the
+     * same query and parameter only.
+     */
+    public void testUtilGetResult() throws Exception {
+        QueryResultCache.put("Item", "Item.findAllInProduct", "prod1", QueryResultCache.getGeneration("Item"), getIds(3));
+
+        assertEquals("ids", getIds(3), QueryResultCache.get("Item", "Item.findAllInProduct", "prod1"));
+        assertNull("Another parameter should not be found", QueryResultCache.get("Item", "Item.findAllInProduct", "prod2"));
+        assertNull("Another query should not be found", QueryResultCache.get("Item", "Item.findAll", "prod1"));
+
+        // The cached result cannot be modified by the caller
+        QueryResultCache.get("Item", "Item.findAllInProduct", "prod1").clear();
+        assertEquals("ids", getIds(3), QueryResultCache.get("Item", "Item.findAllInProduct", "prod1"));
+    }
+
+    /**
+     * This test ensures that invalidating an entity only removes the results of
+     * this entity.
+     */
+    public void testUtilInvalidate() throws Exception {
+        QueryResultCache.put("Item", "Item.findAllInProduct", "prod1", QueryResultCache.getGeneration("Item"), getIds(3));
+        QueryResultCache.put("Product", "Product.findAllInCategory", "cat1", QueryResultCache.getGeneration("Product"), getIds(2));
+
+        QueryResultCache.invalidate("Item");
+
+        assertNull("Item results should have been invalidated", QueryResultCache.get("Item", "Item.findAllInProduct", "prod1"));
+        assertEquals("ids", getIds(2), QueryResultCache.get("Product", "Product.findAllInCategory", "cat1"));
+    }
+
+    /**
+     * This test ensures that a result read before an invalidation is not put
+     * in the cache.
+     */
+    public void testUtilDropStaleResult() throws Exception {
+        final long itemGeneration = QueryResultCache.getGeneration("Item");
+        final long productGeneration = QueryResultCache.getGeneration("Product");
+
+        // An item is written while the queries run
+        QueryResultCache.invalidate("Item");
+
+        assertFalse("Stale result should be dropped", QueryResultCache.put("Item", "Item.findAllInProduct", "prod1", itemGeneration, getIds(3)));
+        assertNull("Stale result should not be found", QueryResultCache.get("Item", "Item.findAllInProduct", "prod1"));
+        assertTrue("Result of another entity", QueryResultCache.put("Product", "Product.findAllInCategory", "cat1", productGeneration, getIds(2)));
+
+        // Emptying the cache makes all the results read before stale
+        QueryResultCache.invalidateAll();
+        assertFalse("Stale result should be dropped", QueryResultCache.put("Product", "Product.findAllInCategory", "cat1", productGeneration, getIds(2)));
+    }
+
+    /**
+     * This test ensures that the least recently used result is evicted when the
+     * cache is full.
+     */
+    public void testUtilEvictLeastRecentlyUsed() throws Exception {
+        QueryResultCache.setMaxSize(2);
+        QueryResultCache.put("Item", "Item.findAllInProduct", "prod1", QueryResultCache.getGeneration("Item"), getIds(1));
+        QueryResultCache.put("Item", "Item.findAllInProduct", "prod2", QueryResultCache.getGeneration("Item"), getIds(2));
+
+        // Uses the first result so that the second one becomes the eldest
+        QueryResultCache.get("Item", "Item.findAllInProduct", "prod1");
+        QueryResultCache.put("Item", "Item.findAllInProduct", "prod3", QueryResultCache.getGeneration("Item"), getIds(3));
+
+        assertEquals("size", 2, QueryResultCache.getSize());
+        assertNotNull("prod1", QueryResultCache.get("Item", "Item.findAllInProduct", "prod1"));
+        assertNull("prod2 should have been evicted", QueryResultCache.get("Item", "Item.findAllInProduct", "prod2"));
+        assertNotNull("prod3", QueryResultCache.get("Item", "Item.findAllInProduct", "prod3"));
+    }
+
+    //==================================
+    //=         Private Methods        =
+    //==================================
+    private List getIds(final int count) {
+        final List ids = new ArrayList();
+        for (int i = 0; i < count; i++) {
+            ids.add("id" + i);
+        }
+        return ids;
+    }
+}
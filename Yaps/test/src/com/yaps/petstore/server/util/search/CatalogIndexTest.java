@@ -0,0 +1,191 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.AbstractTestCase;
+import com.yaps.petstore.common.dto.ItemDTO;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class tests the CatalogIndex class
+ */
+public final class CatalogIndexTest extends AbstractTestCase {
+
+    public CatalogIndexTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(CatalogIndexTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(getRow("item1", "Large Poodle", "prod1", "Poodle", "Caniche fris\u00e9", "cat1", "Dogs"));
+        rows.add(getRow("item2", "Small Poodle", "prod1", "Poodle", "Caniche fris\u00e9", "cat1", "Dogs"));
+        rows.add(getRow("item3", "Spotted Koi", "prod2", "Koi", "Japanese fish", "cat2", "Fish"));
+        CatalogIndex.clear();
+        assertTrue("The index should be built", CatalogIndex.build(rows, CatalogIndex.getModCount()));
+    }
+
+    protected void tearDown() throws Exception {
+        CatalogIndex.clear();
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that the words are found whatever their case and
+     * accents, in the item, product and category texts.
+     */
+    public void testUtilSearchFoldsText() throws Exception {
+        assertEquals("poodle", "item1 item2", getIds(CatalogIndex.search("poodle")));
+        assertEquals("FRISE", "item1 item2", getIds(CatalogIndex.search("FRISE")));
+        assertEquals("dogs", "item1 item2", getIds(CatalogIndex.search("dogs")));
+        assertEquals("item3", "item3", getIds(CatalogIndex.search("item3")));
+        assertEquals("unknown", "", getIds(CatalogIndex.search("cat")));
+        assertEquals("empty", "", getIds(CatalogIndex.search(" ")));
+    }
+
+    /**
+     * This test ensures that the words of a group are all needed and that the
+     * groups are alternatives.
+     */
+    public void testUtilSearchAndOr() throws Exception {
+        assertEquals("AND", "item2", getIds(CatalogIndex.search("small poodle")));
+        assertEquals("AND", "", getIds(CatalogIndex.search("small koi")));
+        assertEquals("OR", "item2 item3", getIds(CatalogIndex.search("small poodle OR koi")));
+        assertEquals("|", "item1 item3", getIds(CatalogIndex.search("large | fish")));
+    }
+
+    /**
+     * This test ensures that the items are ranked by relevance, a word in the
+     * item name weighing more than the same word in the product description.
+     */
+    public void testUtilSearchRanking() throws Exception {
+        CatalogIndex.put(new ItemDTO("item4", "Goldfish", 10, null, "prod3", "Goldfish", "Fish from Japanese ponds"), "cat2", "Fish");
+        CatalogIndex.put(new ItemDTO("item5", "Japanese Bobtail", 10, null, "prod4", "Bobtail", "Cat"), "cat3", "Cats");
+
+        // item5 has the word in its name, item3 and item4 in their product description only
+        assertEquals("japanese", "item5 item3 item4", getIds(CatalogIndex.search("japanese")));
+        // The shorter description weighs more
+        assertEquals("japanese fish", "item3 item4", getIds(CatalogIndex.search("japanese fish")));
+    }
+
+    /**
+     * This test ensures that a page of the ranking is returned.
+     */
+    public void testUtilSearchPage() throws Exception {
+        CatalogIndex.put(new ItemDTO("item4", "Tiger Koi", 10, null, "prod2", "Koi", "Japanese fish"), "cat2", "Fish");
+        CatalogIndex.put(new ItemDTO("item5", "Koi Koi", 10, null, "prod2", "Koi", "Japanese fish"), "cat2", "Fish");
+
+        assertEquals("All", "item5 item3 item4", getIds(CatalogIndex.search("koi")));
+        assertEquals("First page", "item5 item3", getIds(CatalogIndex.search("koi", 0, 2)));
+        assertEquals("Second page", "item4", getIds(CatalogIndex.search("koi", 2, 2)));
+        assertEquals("After the last page", "", getIds(CatalogIndex.search("koi", 4, 2)));
+    }
+
+    /**
+     * This test ensures that the words of the names are suggested and follow
+     * the changes of the catalog.
+     */
+    public void testUtilSuggest() throws Exception {
+        assertEquals("po", "[poodle]", CatalogIndex.suggest("po", 5).toString());
+        // The product description is not used
+        assertEquals("ca", "[]", CatalogIndex.suggest("ca", 5).toString());
+
+        CatalogIndex.put(new ItemDTO("item4", "Ponies", 10, null, "prod3", "Pony", "Small horse"), "cat3", "Horses");
+        assertEquals("po", "[poodle, ponies, pony]", CatalogIndex.suggest("po", 5).toString());
+    }
+
+    /**
+     * This test ensures that misspelled words are corrected when nothing is
+     * found, and only then.
+     */
+    public void testUtilSearchFuzzy() throws Exception {
+        assertEquals("pooddle", "item1 item2", getIds(CatalogIndex.search("pooddle")));
+        assertEquals("smal poodle", "item2", getIds(CatalogIndex.search("smal poodle")));
+        assertEquals("spoted OR larg", "item1 item3", getIds(CatalogIndex.search("spoted OR larg")));
+        // Short words are not corrected
+        assertEquals("ko", "", getIds(CatalogIndex.search("ko")));
+        // Known words are not corrected
+        assertEquals("small koi", "", getIds(CatalogIndex.search("small koi")));
+    }
+
+    /**
+     * This test ensures that the index follows the changes of the catalog.
+     */
+    public void testUtilUpdateIndex() throws Exception {
+        CatalogIndex.put(new ItemDTO("item4", "Tiger Koi", 10, null, "prod2", "Koi", "Japanese fish"), "cat2", "Fish");
+        assertEquals("New item", "item3 item4", getIds(CatalogIndex.search("koi")));
+
+        CatalogIndex.removeItem("item3");
+        assertEquals("Removed item", "item4", getIds(CatalogIndex.search("koi")));
+
+        CatalogIndex.updateProduct("prod1", "Toy Poodle", "Caniche", "cat1", "Dogs");
+        assertEquals("Updated product", "item1 item2", getIds(CatalogIndex.search("toy")));
+        assertEquals("Updated product description", "", getIds(CatalogIndex.search("frise")));
+
+        CatalogIndex.updateCategory("cat2", "Koi carps");
+        assertEquals("Updated category", "item4", getIds(CatalogIndex.search("carps")));
+
+        CatalogIndex.removeCategory("cat1");
+        assertEquals("Removed category", "", getIds(CatalogIndex.search("poodle")));
+        assertEquals("size", 1, CatalogIndex.getSize());
+    }
+
+    /**
+     * This test ensures that rows read before a change are not used.
+     */
+    public void testUtilBuildOutOfDate() throws Exception {
+        CatalogIndex.clear();
+        final long modCount = CatalogIndex.getModCount();
+        CatalogIndex.removeItem("item1");
+
+        assertFalse("The rows are out of date", CatalogIndex.build(new ArrayList<Object[]>(), modCount));
+        assertFalse(CatalogIndex.isBuilt());
+    }
+
+    /**
+     * This test ensures that the index built holding off the changes uses the
+     * rows it reads, whatever the changes made before.
+     */
+    public void testUtilBuildFromSource() throws Exception {
+        CatalogIndex.clear();
+        CatalogIndex.removeItem("item1");
+
+        CatalogIndex.build(new CatalogIndex.RowSource() {
+            public Collection<Object[]> getRows() {
+                final List<Object[]> rows = new ArrayList<Object[]>();
+                rows.add(getRow("item3", "Spotted Koi", "prod2", "Koi", "Japanese fish", "cat2", "Fish"));
+                return rows;
+            }
+        });
+        assertTrue(CatalogIndex.isBuilt());
+        assertEquals("koi", "item3", getIds(CatalogIndex.search("koi")));
+    }
+
+    //==================================
+    //=         Private Methods        =
+    //==================================
+    private Object[] getRow(final String itemId, final String itemName, final String productId, final String productName,
+                            final String productDescription, final String categoryId, final String categoryName) {
+        final ItemDTO itemDTO = new ItemDTO(itemId, itemName, 10, null, productId, productName, productDescription);
+        return new Object[]{itemDTO, categoryId, categoryName};
+    }
+
+    private String getIds(final List<ItemDTO> itemsDTO) {
+        final StringBuffer ids = new StringBuffer();
+        for (Iterator<ItemDTO> iterator = itemsDTO.iterator(); iterator.hasNext();) {
+            if (ids.length() > 0) {
+                ids.append(' ');
+            }
+            ids.append(iterator.next().getId());
+        }
+        return ids.toString();
+    }
+}
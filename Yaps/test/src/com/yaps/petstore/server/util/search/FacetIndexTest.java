@@ -0,0 +1,112 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.AbstractTestCase;
+import com.yaps.petstore.common.dto.FacetFilterDTO;
+import com.yaps.petstore.common.dto.FacetResultDTO;
+import com.yaps.petstore.common.dto.ItemDTO;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class tests the FacetIndex class
+ */
+public final class FacetIndexTest extends AbstractTestCase {
+
+    private FacetIndex _index;
+
+    public FacetIndexTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(FacetIndexTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        final List<ItemDTO> items = new ArrayList<ItemDTO>();
+        final Map<String, String> categoryIds = new HashMap<String, String>();
+        addItem(items, categoryIds, "item1", 5, "prod1", "cat1");
+        addItem(items, categoryIds, "item2", 60, "prod1", "cat1");
+        addItem(items, categoryIds, "item3", 50, "prod2", "cat1");
+        addItem(items, categoryIds, "item4", 700, "prod3", "cat2");
+        addItem(items, categoryIds, "item5", 10, "prod3", "cat2");
+        _index = new FacetIndex(items, categoryIds);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that a browse without filter returns all the items and counts.
+     */
+    public void testUtilBrowseAll() throws Exception {
+        final FacetResultDTO result = _index.browse(new FacetFilterDTO());
+
+        assertEquals("total", 5, result.getTotal());
+        assertEquals("items", "item1 item2 item3 item4 item5", getIds(result));
+        assertEquals("categories", "{cat1=3, cat2=2}", result.getCategoryCounts().toString());
+        assertEquals("products", "{prod1=2, prod2=1, prod3=2}", result.getProductCounts().toString());
+        assertEquals("unit costs", "{0-10=1, 10-50=1, 50-100=2, 500+=1}", result.getUnitCostCounts().toString());
+    }
+
+    /**
+     * This test ensures that the filters are combined and the counts follow them.
+     */
+    public void testUtilBrowseFilters() throws Exception {
+        FacetResultDTO result = _index.browse(new FacetFilterDTO("cat1", null, null, null));
+        assertEquals("category", "item1 item2 item3", getIds(result));
+        assertEquals("products of the category", "{prod1=2, prod2=1}", result.getProductCounts().toString());
+
+        result = _index.browse(new FacetFilterDTO("cat1", null, new Double(10), new Double(100)));
+        assertEquals("category and unit cost", "item2 item3", getIds(result));
+        assertEquals("unit costs", "{50-100=2}", result.getUnitCostCounts().toString());
+
+        result = _index.browse(new FacetFilterDTO(null, "prod3", new Double(10), null));
+        assertEquals("product and lower bound", "item4 item5", getIds(result));
+
+        result = _index.browse(new FacetFilterDTO(null, null, null, new Double(10)));
+        assertEquals("upper bound excluded", "item1", getIds(result));
+
+        result = _index.browse(new FacetFilterDTO("cat3", null, null, null));
+        assertEquals("unknown category", 0, result.getTotal());
+        assertTrue("no counts", result.getCategoryCounts().isEmpty());
+    }
+
+    /**
+     * This test ensures that a page of the result is returned with the total.
+     */
+    public void testUtilBrowsePage() throws Exception {
+        final FacetFilterDTO filter = new FacetFilterDTO();
+        filter.setOffset(1);
+        filter.setLimit(2);
+        final FacetResultDTO result = _index.browse(filter);
+
+        assertEquals("total", 5, result.getTotal());
+        assertEquals("page", "item2 item3", getIds(result));
+    }
+
+    //==================================
+    //=         Private Methods        =
+    //==================================
+    private void addItem(final List<ItemDTO> items, final Map<String, String> categoryIds, final String itemId,
+                         final double unitCost, final String productId, final String categoryId) {
+        items.add(new ItemDTO(itemId, "name", unitCost, null, productId, "product", "description"));
+        categoryIds.put(itemId, categoryId);
+    }
+
+    private String getIds(final FacetResultDTO result) {
+        final StringBuffer ids = new StringBuffer();
+        for (Iterator iterator = result.getItemsDTO().iterator(); iterator.hasNext();) {
+            if (ids.length() > 0) {
+                ids.append(' ');
+            }
+            ids.append(((ItemDTO) iterator.next()).getId());
+        }
+        return ids.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.AbstractTestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class tests the PrefixSuggester class
+ */
+public final class PrefixSuggesterTest extends AbstractTestCase {
+
+    public PrefixSuggesterTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(PrefixSuggesterTest.class);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that the most frequent terms are suggested first.
+     */
+    public void testUtilSuggest() throws Exception {
+        final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        frequencies.put("poodle", new Integer(3));
+        frequencies.put("persian", new Integer(5));
+        frequencies.put("parrot", new Integer(3));
+        frequencies.put("koi", new Integer(1));
+        final PrefixSuggester suggester = new PrefixSuggester(frequencies, 2);
+
+        assertEquals("p", "[persian, parrot]", suggester.suggest("p", 10).toString());
+        assertEquals("po", "[poodle]", suggester.suggest("po", 10).toString());
+        assertEquals("limit", "[persian]", suggester.suggest("p", 1).toString());
+        assertEquals("Whole term", "[koi]", suggester.suggest("koi", 10).toString());
+        assertEquals("Unknown", "[]", suggester.suggest("cat", 10).toString());
+        assertEquals("Empty", "[]", suggester.suggest("", 10).toString());
+        assertEquals("null", "[]", suggester.suggest(null, 10).toString());
+    }
+
+    /**
+     * This test ensures that the prefix is folded like the terms.
+     */
+    public void testUtilSuggestFoldsPrefix() throws Exception {
+        final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        frequencies.put("eleve", new Integer(1));
+        final PrefixSuggester suggester = new PrefixSuggester(frequencies, 5);
+
+        assertEquals("Accents and case", "[eleve]", suggester.suggest(" \u00c9l\u00e8", 5).toString());
+    }
+}
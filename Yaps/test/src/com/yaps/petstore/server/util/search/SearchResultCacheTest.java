@@ -0,0 +1,195 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.AbstractTestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class tests the SearchResultCache class
+ */
+public final class SearchResultCacheTest extends AbstractTestCase {
+
+    public SearchResultCacheTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(SearchResultCacheTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        SearchResultCache.invalidateAll();
+        SearchResultCache.resetStatistics();
+    }
+
+    protected void tearDown() throws Exception {
+        SearchResultCache.invalidateAll();
+        SearchResultCache.setMaxSize(SearchResultCache.DEFAULT_MAX_SIZE);
+        SearchResultCache.setTimeToLive(SearchResultCache.DEFAULT_TIME_TO_LIVE);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that a search is only run once for the same key and version.
+     */
+    public void testUtilGetResult() throws Exception {
+        final CountingSearch search = new CountingSearch(getIds(3));
+
+        assertEquals("ids", getIds(3), SearchResultCache.get("dog:0:20", 1, search));
+        assertEquals("ids", getIds(3), SearchResultCache.get("dog:0:20", 1, search));
+        assertEquals("Search should have run once", 1, search.getCalls());
+        assertEquals("hits", 1, SearchResultCache.getHits());
+        assertEquals("misses", 1, SearchResultCache.getMisses());
+        assertEquals("hit rate", 50, SearchResultCache.getHitRate());
+
+        // Another page is another result
+        SearchResultCache.get("dog:20:20", 1, search);
+        assertEquals("Search should have run again", 2, search.getCalls());
+
+        // The cached result cannot be modified by the caller
+        SearchResultCache.get("dog:0:20", 1, search).clear();
+        assertEquals("ids", getIds(3), SearchResultCache.get("dog:0:20", 1, search));
+    }
+
+    /**
+     * This test ensures that a newer version of the catalog flushes the cache.
+     */
+    public void testUtilNewVersion() throws Exception {
+        final CountingSearch search = new CountingSearch(getIds(2));
+        SearchResultCache.get("dog:0:20", 1, search);
+        SearchResultCache.get("cat:0:20", 1, search);
+
+        SearchResultCache.get("dog:0:20", 2, search);
+        assertEquals("Search should have run again", 3, search.getCalls());
+        assertEquals("Older results should have been flushed", 1, SearchResultCache.getSize());
+
+        // A search on an older version is not kept
+        SearchResultCache.get("cat:0:20", 1, search);
+        SearchResultCache.get("cat:0:20", 1, search);
+        assertEquals("Search should not have been cached", 5, search.getCalls());
+    }
+
+    /**
+     * This test ensures that the cache is bounded and forgets the results after their time to live.
+     */
+    public void testUtilEviction() throws Exception {
+        final CountingSearch search = new CountingSearch(getIds(1));
+        SearchResultCache.setMaxSize(2);
+        SearchResultCache.get("a", 1, search);
+        SearchResultCache.get("b", 1, search);
+        SearchResultCache.get("a", 1, search);
+        SearchResultCache.get("c", 1, search);
+        assertEquals("size", 2, SearchResultCache.getSize());
+
+        // b was the least recently used
+        SearchResultCache.get("a", 1, search);
+        assertEquals("a should still be cached", 3, search.getCalls());
+        SearchResultCache.get("b", 1, search);
+        assertEquals("b should have been evicted", 4, search.getCalls());
+
+        SearchResultCache.setTimeToLive(1);
+        SearchResultCache.get("d", 1, search);
+        Thread.sleep(10);
+        SearchResultCache.get("d", 1, search);
+        assertEquals("d should have expired", 6, search.getCalls());
+    }
+
+    /**
+     * This test ensures that identical searches running at the same time are run once.
+     */
+    public void testUtilCoalesce() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<List> search = new Callable<List>() {
+            public List call() throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return getIds(4);
+            }
+        };
+
+        final List[] results = new List[3];
+        final Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    results[index] = SearchResultCache.get("dog:0:20", 1, search);
+                }
+            };
+        }
+        threads[0].start();
+        assertTrue("The first search should have started", started.await(10, TimeUnit.SECONDS));
+        threads[1].start();
+        threads[2].start();
+        while (SearchResultCache.getCoalesced() < 2) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertEquals("ids", getIds(4), results[i]);
+        }
+
+        assertEquals("Search should have run once", 1, calls.get());
+        assertEquals("coalesced", 2, SearchResultCache.getCoalesced());
+    }
+
+    /**
+     * This test ensures that an exception of the search is thrown to the caller and not cached.
+     */
+    public void testUtilSearchFails() throws Exception {
+        final Callable<List> search = new Callable<List>() {
+            public List call() {
+                throw new IllegalStateException("index");
+            }
+        };
+        try {
+            SearchResultCache.get("dog:0:20", 1, search);
+            fail("The exception should have been thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("message", "index", e.getMessage());
+        }
+        assertEquals("size", 0, SearchResultCache.getSize());
+    }
+
+    //==================================
+    //=         Private Methods        =
+    //==================================
+    private static List getIds(final int count) {
+        final List ids = new ArrayList();
+        for (int i = 1; i <= count; i++) {
+            ids.add("item" + i);
+        }
+        return ids;
+    }
+
+    private static final class CountingSearch implements Callable<List> {
+
+        private final List _rows;
+        private int _calls = 0;
+
+        private CountingSearch(final List rows) {
+            _rows = rows;
+        }
+
+        public List call() {
+            _calls++;
+            return _rows;
+        }
+
+        private int getCalls() {
+            return _calls;
+        }
+    }
+}
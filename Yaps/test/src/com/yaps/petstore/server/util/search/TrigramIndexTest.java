@@ -0,0 +1,64 @@
+package com.yaps.petstore.server.util.search;
+
+import com.yaps.petstore.AbstractTestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+/**
+ * This class tests the TrigramIndex class
+ */
+public final class TrigramIndexTest extends AbstractTestCase {
+
+    public TrigramIndexTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(TrigramIndexTest.class);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that the edit distance counts insertions, deletions,
+     * substitutions and transpositions, and stops beyond the maximum.
+     */
+    public void testUtilEditDistance() throws Exception {
+        assertEquals("Same", 0, TrigramIndex.getEditDistance("poodle", "poodle", 2));
+        assertEquals("Deletion", 1, TrigramIndex.getEditDistance("goldfsh", "goldfish", 2));
+        assertEquals("Substitution", 1, TrigramIndex.getEditDistance("dalmation", "dalmatian", 2));
+        assertEquals("Transposition", 1, TrigramIndex.getEditDistance("podole", "poodle", 2));
+        assertEquals("Two edits", 2, TrigramIndex.getEditDistance("dalmasion", "dalmatian", 2));
+        assertEquals("Too far", 3, TrigramIndex.getEditDistance("koi", "poodle", 2));
+        assertEquals("Too far", 2, TrigramIndex.getEditDistance("persian", "parrot", 1));
+        assertEquals("Empty", 2, TrigramIndex.getEditDistance("", "ab", 2));
+    }
+
+    /**
+     * This test ensures that the closest terms are found.
+     */
+    public void testUtilFindClosest() throws Exception {
+        final TrigramIndex index = new TrigramIndex(Arrays.asList(new String[]{"dalmatian", "goldfish", "poodle", "poodles", "koi"}));
+        final long deadline = System.nanoTime() + 1000000000L;
+
+        assertEquals("dalmation", "[dalmatian]", index.findClosest("dalmation", 2, deadline).toString());
+        assertEquals("goldfsh", "[goldfish]", index.findClosest("goldfsh", 1, deadline).toString());
+        assertEquals("Nearest only", "[poodle]", index.findClosest("podle", 2, deadline).toString());
+        assertEquals("Too far", "[]", index.findClosest("persian", 2, deadline).toString());
+        assertEquals("Budget spent", "[]", index.findClosest("dalmation", 2, System.nanoTime()).toString());
+    }
+
+    /**
+     * This test ensures that a transposition, which changes four trigrams,
+     * is found at distance 1.
+     */
+    public void testUtilFindClosestTransposition() throws Exception {
+        final TrigramIndex index = new TrigramIndex(Arrays.asList(new String[]{"persian", "poodle", "parrot"}));
+        final long deadline = System.nanoTime() + 1000000000L;
+
+        assertEquals("persain", "[persian]", index.findClosest("persain", 1, deadline).toString());
+        assertEquals("podole", "[poodle]", index.findClosest("podole", 1, deadline).toString());
+    }
+}
@@ -0,0 +1,78 @@
+package com.yaps.petstore.server.util.uidgen;
+
+import com.yaps.petstore.AbstractTestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class tests the TimeOrderedIdGenerator class
+ */
+public final class TimeOrderedIdGeneratorTest extends AbstractTestCase {
+
+    public TimeOrderedIdGeneratorTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(TimeOrderedIdGeneratorTest.class);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that the ids fit the id columns and sort by creation time.
+     */
+    public void testUtilIdsAreOrdered() throws Exception {
+        final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(3);
+        final long before = System.currentTimeMillis();
+
+        String previous = generator.nextId();
+        for (int i = 0; i < 1000; i++) {
+            final String id = generator.nextId();
+            assertEquals("Length of " + id, 10, id.length());
+            assertTrue(id + " should follow " + previous, id.compareTo(previous) > 0);
+            previous = id;
+        }
+
+        assertTrue("Time of the id", TimeOrderedIdGenerator.getTime(previous) >= before);
+        assertEquals("Decoded id", previous, TimeOrderedIdGenerator.encode(TimeOrderedIdGenerator.decode(previous)));
+    }
+
+    /**
+     * This test ensures that threads never get the same id, even beyond the
+     * number of ids per millisecond.
+     */
+    public void testUtilIdsAreUniqueConcurrently() throws Exception {
+        final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0);
+
+        assertUniqueIds(new IdSource() {
+            public String nextId() {
+                return generator.nextId();
+            }
+        }, 4, 5000);
+    }
+
+    /**
+     * This test ensures that two nodes never give the same id.
+     */
+    public void testUtilNodesAreDisjoint() throws Exception {
+        final TimeOrderedIdGenerator node0 = new TimeOrderedIdGenerator(0);
+        final TimeOrderedIdGenerator node1 = new TimeOrderedIdGenerator(1);
+
+        final Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(node0.nextId());
+            ids.add(node1.nextId());
+        }
+        assertEquals("All the ids must be different", 2000, ids.size());
+
+        try {
+            new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODES);
+            fail("The node number is too big");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
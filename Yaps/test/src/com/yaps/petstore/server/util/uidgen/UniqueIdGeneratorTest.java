@@ -58,6 +58,74 @@ public final class UniqueIdGeneratorTest extends AbstractTestCase {
         }
     }
 
+    /**
+     * This test ensures that threads sharing small blocks never get the same id.
+     */
+    public void testUtilUniqueIdConcurrently() throws Exception {
+        final String name = "name" + getUniqueId();
+        UniqueIdGenerator.getInstance().setBlockSize(name, 7);
+
+        assertUniqueIds(getIdSource(name), 4, 25);
+
+        deleteName(name);
+    }
+
+    /**
+     * This test ensures that the stripes of a counter hand out disjoint ids.
+     */
+    public void testUtilStripedUniqueId() throws Exception {
+        final String name = "name" + getUniqueId();
+        final int stripes = 4;
+        System.setProperty("petstore.uidgen.stripes." + name, String.valueOf(stripes));
+        try {
+            UniqueIdGenerator.getInstance().setBlockSize(name, 5);
+
+            assertUniqueIds(getIdSource(name), stripes * 2, 20);
+
+            // Only the stripe rows are used
+            try {
+                findName(name);
+                fail();
+            } catch (ObjectNotFoundException e) {
+            }
+            for (int i = 0; i < stripes; i++) {
+                try {
+                    deleteName(UniqueIdGeneratorDAO.getStripeName(name, i));
+                } catch (ObjectNotFoundException e) {
+                    // No thread has used this stripe
+                }
+            }
+        } finally {
+            // The property must not leak into the other tests
+            System.getProperties().remove("petstore.uidgen.stripes." + name);
+        }
+    }
+
+    /**
+     * This test ensures that a time generator that restarts never gives the
+     * ids it has given in advance of the clock again.
+     */
+    public void testUtilTimeLeaseSurvivesRestart() throws Exception {
+        final int node = TimeOrderedIdGenerator.MAX_NODES - 1;
+        try {
+            // Gives more ids than the clock allows, i.e. in advance of it
+            String last = null;
+            final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(node, new UniqueIdGeneratorDAO());
+            for (int i = 0; i < 10000; i++) {
+                last = generator.nextId();
+            }
+
+            final TimeOrderedIdGenerator restarted = new TimeOrderedIdGenerator(node, new UniqueIdGeneratorDAO());
+            final String first = restarted.nextId();
+            assertTrue(first + " should follow " + last, first.compareTo(last) > 0);
+        } finally {
+            try {
+                deleteName("time." + node);
+            } catch (ObjectNotFoundException e) {
+            }
+        }
+    }
+
     //==================================
     //=         Private Methods        =
     //==================================
@@ -67,6 +135,14 @@ public final class UniqueIdGeneratorTest extends AbstractTestCase {
         return value;
     }
     
+    private IdSource getIdSource(final String name) {
+        return new IdSource() {
+            public String nextId() {
+                return getUniqueId(name);
+            }
+        };
+    }
+
     private int getUniqueId() {
         return (int) (Math.random() * 100000);
     }
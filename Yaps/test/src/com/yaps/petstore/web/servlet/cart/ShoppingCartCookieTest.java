@@ -0,0 +1,55 @@
+package com.yaps.petstore.web.servlet.cart;
+
+import com.yaps.petstore.AbstractTestCase;
+import com.yaps.petstore.common.dto.ShoppingCartDTO;
+import junit.framework.TestSuite;
+
+/**
+ * This class tests the ShoppingCartCookie class
+ */
+public final class ShoppingCartCookieTest extends AbstractTestCase {
+
+    public ShoppingCartCookieTest(final String s) {
+        super(s);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(ShoppingCartCookieTest.class);
+    }
+
+    //==================================
+    //=            Test cases          =
+    //==================================
+    /**
+     * This test ensures that an encoded cart is decoded into the same cart.
+     */
+    public void testWebEncodeCart() throws Exception {
+        final ShoppingCartDTO shoppingCart = new ShoppingCartDTO();
+        shoppingCart.setQuantity("EST-1", 2);
+        shoppingCart.setQuantity("a&b=c!d", 1);
+
+        final String value = ShoppingCartCookie.encode(shoppingCart);
+        assertTrue("Only hexadecimal digits and a dot in " + value, value.matches("[0-9a-f]+\\.[0-9a-f]{64}"));
+        assertEquals("cart", shoppingCart.toString(), ShoppingCartCookie.decode(value).toString());
+
+        assertTrue("empty cart", ShoppingCartCookie.decode(ShoppingCartCookie.encode(new ShoppingCartDTO())).isEmpty());
+    }
+
+    /**
+     * This test ensures that a cart changed by the client is refused.
+     */
+    public void testWebTamperedCart() throws Exception {
+        final ShoppingCartDTO shoppingCart = new ShoppingCartDTO();
+        shoppingCart.setQuantity("EST-1", 2);
+        final String value = ShoppingCartCookie.encode(shoppingCart);
+        final int separator = value.indexOf('.');
+
+        shoppingCart.setQuantity("EST-1", 9);
+        final String changed = ShoppingCartCookie.encode(shoppingCart);
+        assertNull("quantity changed", ShoppingCartCookie.decode(changed.substring(0, changed.indexOf('.')) + value.substring(separator)));
+        final String signature = value.substring(separator + 1);
+        assertNull("signature changed", ShoppingCartCookie.decode(value.substring(0, separator + 1) + (signature.startsWith("0") ? "1" : "0") + signature.substring(1)));
+        assertNull("no signature", ShoppingCartCookie.decode(value.substring(0, separator)));
+        assertNull("null", ShoppingCartCookie.decode(null));
+    }
+}